@@ -14,50 +14,43 @@ package de.marw.cdt.cmake.core.cmakecache;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.LineNumberReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A simple parser for CMake cache files ({@code CMakeCache.txt}). This
- * implementation extracts only key-value-pairs corresponding to an entry. It
- * does not extract any help texts nor entry types.
+ * implementation extracts only the key, type and value of an entry. It does not
+ * extract any help texts.
  *
  * @author Martin Weber
  */
 public class CMakeCacheFileParser {
 
-  // input line is: key:type=value
-  private static final Pattern reg = Pattern
-      .compile("([^=:]*):([^=]*)=(.*[^\t ]|[\t ]*)[\t ]*");
-  // input line is: "key":type=value
-  private static final Pattern regQuoted = Pattern
-      .compile("\"([^=:]*)\":([^=]*)=(.*[^\t ]|[\t ]*)[\t ]*");
-  // input line is: key=value
-  private static final Pattern regNoType = Pattern
-      .compile("([^=]*)=(.*[^\t ]|[\t ]*)[\t ]*");
-  // input line is: "key"=value
-  private static final Pattern regQuotedNoType = Pattern
-      .compile("\"([^=]*)\"=(.*[^\t ]|[\t ]*)[\t ]*");
-
   /**
    * Parses the content of the specified input stream as a CMake cache file
-   * content. <br>
+   * content. The content is decoded as UTF-8, the encoding CMake writes. <br>
    * This implementation is inspired by <a href=
    * "https://github.com/Kitware/CMake/blob/master/Source/cmCacheManager.cxx"
    * >cmCacheManager.cxx</a>.
+   * <p>
+   * An entry line is of the form {@code key:type=value} or {@code key=value}.
+   * The key ends at the first colon that precedes the first equal sign, else
+   * at the first equal sign. Trailing spaces and tabs are removed from the
+   * value, unless it consists of spaces and tabs only.
+   * </p>
    *
    * @param is
    *        the input stream that serves the content of the CMake cache file
    * @param filter
    *        an optional filter for CMake cache file entries or {@code null} if
-   *        all entries are of interest
+   *        all entries are of interest.
    * @param parsedEntries
    *        receives the parsed cache file entries. Specify {@code null}, if you
    *        want to verify the correct syntax of the cache file only. Specify an
@@ -67,8 +60,7 @@ public class CMakeCacheFileParser {
    * @param errorLog
    *        receives messages concerning parse errors. Specify {@code null}, if
    *        you are not interested in error messages.
-   * @return {@code true} if the file could be parsed without errors, otherwise
-   *         {@code false}
+   * @return {@code true} if the file has errors, otherwise {@code false}
    * @throws IOException
    *         if an operation on the input stream failed
    */
@@ -76,8 +68,8 @@ public class CMakeCacheFileParser {
       Collection<SimpleCMakeCacheEntry> parsedEntries, List<String> errorLog)
       throws IOException {
 
-    final LineNumberReader reader = new LineNumberReader(new InputStreamReader(
-        is));
+    final LineScanner scanner = new LineScanner(new InputStreamReader(is,
+        StandardCharsets.UTF_8));
     boolean hasErrors = false;
 
     Map<String, SimpleCMakeCacheEntry> uniqueMap = null;
@@ -86,86 +78,107 @@ public class CMakeCacheFileParser {
       uniqueMap = new HashMap<String, SimpleCMakeCacheEntry>();
     }
 
-    for (String line; null != (line = reader.readLine());) {
-      int idx = 0;
+    while (scanner.nextLine()) {
+      final char[] buf = scanner.buf;
+      final int end = scanner.end;
+      int idx = scanner.start;
       // skip leading whitespaces...
-      for (; idx < line.length(); idx++) {
-        final char c = line.charAt(idx);
-        if (!Character.isWhitespace(c))
-          break;
+      while (idx < end && Character.isWhitespace(buf[idx])) {
+        idx++;
       }
-      if (!(idx < line.length()))
+      if (!(idx < end))
         continue; // skip blank lines
 
-      if (line.charAt(idx) == '#')
+      if (buf[idx] == '#')
         continue; // skip cmake comment lines
 
-      if (idx < line.length()) {
-        line = line.substring(idx);
-
-        if (line.startsWith("//"))
-          continue; // ignore help string
-
-        // parse cache entry...
-        String key = null;
-        String value = null;
-        Matcher matcher;
-
-        if ((matcher = reg.matcher(line)).matches()
-            || (matcher = regQuoted.matcher(line)).matches()) {
-          // input line is: key:type=value
-          // input line is: "key":type=value
-          key = matcher.group(1);
-          // we do not need the type from group(2)
-          value = matcher.group(3);
-        } else if ((matcher = regNoType.matcher(line)).matches()
-            || (matcher = regQuotedNoType.matcher(line)).matches()) {
-          // input line is: key=value
-          // input line is: "key"=value
-          key = matcher.group(1);
-          value = matcher.group(2);
-        } else {
-          hasErrors |= true;
-          // add error message
-          if (errorLog != null) {
-            final String msg = MessageFormat.format(
-                "Error: Line {0,number,integer}: Offending entry: {1}",
-                reader.getLineNumber(), line);
-            errorLog.add(msg);
-          }
-        }
+      if (buf[idx] == '/' && idx + 1 < end && buf[idx + 1] == '/')
+        continue; // ignore help string
 
-        if (filter != null && parsedEntries != null) {
-          // no need to call the filter if nothing is to be returned
-          if (!filter.accept(key))
-            continue; // uninteresting entry, get next line
+      // parse cache entry: key:type=value or key=value
+      int colon = -1;
+      int equal = -1;
+      for (int i = idx; i < end; i++) {
+        final char c = buf[i];
+        if (c == '=') {
+          equal = i;
+          break;
         }
-
-        // if value is enclosed in single quotes ('foo') then remove them
-        // it is used to enclose trailing space or tab
-        if (key != null && value != null && value.length() >= 2
-            && value.charAt(0) == '\''
-            && value.charAt(value.length() - 1) == '\'') {
-
-          value = value.substring(1, value.length());
+        if (c == ':' && colon == -1)
+          colon = i;
+      }
+      // value without trailing blanks, unless it is blank
+      int valueStart = equal + 1;
+      int valueEnd = end;
+      if (equal != -1) {
+        while (valueEnd > valueStart
+            && (buf[valueEnd - 1] == ' ' || buf[valueEnd - 1] == '\t')) {
+          valueEnd--;
         }
-
-        // store entry
-        if (parsedEntries != null) {
-          final SimpleCMakeCacheEntry entry = new SimpleCMakeCacheEntry(key,
-              value);
-          if (uniqueMap != null)
-            uniqueMap.put(key, entry);
-          else
-            parsedEntries.add(entry);
+      }
+      if (equal == -1 || hasLineTerminator(buf, valueStart, valueEnd - 1)) {
+        hasErrors |= true;
+        // add error message
+        if (errorLog != null) {
+          final String msg = MessageFormat.format(
+              "Error: Line {0,number,integer}: Offending entry: {1}",
+              scanner.lineNumber, new String(buf, idx, end - idx));
+          errorLog.add(msg);
         }
+        continue;
+      }
+      if (parsedEntries == null)
+        continue; // syntax check only
+
+      final String key = new String(buf, idx, (colon != -1 ? colon : equal)
+          - idx);
+      if (filter != null && !filter.accept(key))
+        continue; // uninteresting entry, get next line
+
+      if (valueEnd == valueStart)
+        valueEnd = end; // blank value
+      // if value is enclosed in single quotes ('foo') then remove them
+      // it is used to enclose trailing space or tab
+      if (valueEnd - valueStart >= 2 && buf[valueStart] == '\''
+          && buf[valueEnd - 1] == '\'') {
+        valueEnd--;
+        valueStart++;
       }
+      final String value = new String(buf, valueStart, valueEnd - valueStart);
+
+      if (key.isEmpty())
+        continue; // not a valid entry
+
+      final String type = colon != -1 ? new String(buf, colon + 1, equal
+          - colon - 1) : null;
+
+      // store entry
+      final SimpleCMakeCacheEntry entry = new SimpleCMakeCacheEntry(key, type,
+          value);
+      if (uniqueMap != null)
+        uniqueMap.put(key, entry);
+      else
+        parsedEntries.add(entry);
     }
     if (parsedEntries != null && uniqueMap != null)
       parsedEntries.addAll(uniqueMap.values());
     return hasErrors;
   }
 
+  /**
+   * Gets whether the specified range of characters contains a line terminator
+   * other than CR or LF. The last non-blank character of a value may be a line
+   * terminator, the characters before it not.
+   */
+  private static boolean hasLineTerminator(char[] buf, int start, int end) {
+    for (int i = start; i < end; i++) {
+      final char c = buf[i];
+      if (c == '\u0085' || c == '\u2028' || c == '\u2029')
+        return true;
+    }
+    return false;
+  }
+
   ////////////////////////////////////////////////////////////////////
   // inner classes
   ////////////////////////////////////////////////////////////////////
@@ -190,4 +203,103 @@ public class CMakeCacheFileParser {
      */
     boolean accept(String key);
   }
+
+  /**
+   * Reads lines into a reusable character buffer, so that skipped lines need
+   * not be copied into strings. A line is terminated by LF, CR or CR LF.
+   *
+   * @author Martin Weber
+   */
+  private static class LineScanner {
+    private final Reader reader;
+    /** holds the current line in the range [{@link #start}, {@link #end}) */
+    private char[] buf = new char[8192];
+    private int start;
+    private int end;
+    /** the number of the current line, 1-based */
+    private int lineNumber;
+    /** the index of the next unread character in {@link #buf} */
+    private int pos;
+    /** the number of valid characters in {@link #buf} */
+    private int limit;
+    /** whether a LF is to be skipped because the previous line ended with CR */
+    private boolean skipLF;
+    private boolean eof;
+
+    LineScanner(Reader reader) {
+      this.reader = reader;
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return {@code false} if there are no more lines
+     */
+    boolean nextLine() throws IOException {
+      int lineStart = pos;
+      int scan = pos;
+      for (;;) {
+        if (scan == limit) {
+          if (!eof) {
+            final boolean more = fill(lineStart);
+            // buffer compacted
+            scan -= lineStart;
+            lineStart = 0;
+            if (more)
+              continue;
+          }
+          // end of input
+          if (lineStart == limit)
+            return false;
+          start = lineStart;
+          end = limit;
+          pos = limit;
+          lineNumber++;
+          return true;
+        }
+        final char c = buf[scan];
+        if (skipLF) {
+          skipLF = false;
+          if (c == '\n') {
+            lineStart = ++scan;
+            continue;
+          }
+        }
+        if (c == '\n' || c == '\r') {
+          start = lineStart;
+          end = scan;
+          pos = scan + 1;
+          skipLF = c == '\r';
+          lineNumber++;
+          return true;
+        }
+        scan++;
+      }
+    }
+
+    /**
+     * Moves the characters from {@code lineStart} to the beginning of the
+     * buffer and reads more characters.
+     *
+     * @return {@code false} if the end of input was reached
+     */
+    private boolean fill(int lineStart) throws IOException {
+      final int len = limit - lineStart;
+      if (lineStart > 0) {
+        System.arraycopy(buf, lineStart, buf, 0, len);
+      } else if (len == buf.length) {
+        // line does not fit
+        buf = Arrays.copyOf(buf, buf.length * 2);
+      }
+      limit = len;
+      pos = 0;
+      final int n = reader.read(buf, limit, buf.length - limit);
+      if (n < 0) {
+        eof = true;
+        return false;
+      }
+      limit += n;
+      return true;
+    }
+  }
 }
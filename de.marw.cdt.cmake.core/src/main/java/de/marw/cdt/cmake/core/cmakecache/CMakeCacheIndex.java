@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+package de.marw.cdt.cmake.core.cmakecache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Holds the parsed content of the CMake cache files (CMakeCache.txt) of all
+ * build directories, so that the build runner, the build script generator and
+ * the UI share one parse per cache file change.<br>
+ * A cached content is dropped when the workspace reports a change of its file.
+ * Since cmake writes the file outside of the workspace, the time-stamp and size
+ * of the file are checked on each lookup, too.<br>
+ * Methods may be invoked by multiple threads concurrently.
+ *
+ * @author Martin Weber
+ */
+public class CMakeCacheIndex {
+  /** the name of the CMake cache file in a build directory */
+  public static final String CACHE_FILE_NAME = "CMakeCache.txt";
+
+  private static final CMakeCacheIndex INSTANCE = new CMakeCacheIndex();
+
+  /** the parsed cache files by absolute file system path */
+  private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+
+  private final IResourceChangeListener listener = new IResourceChangeListener() {
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+      final IResourceDelta delta = event.getDelta();
+      if (delta == null || snapshots.isEmpty())
+        return;
+      try {
+        delta.accept(new IResourceDeltaVisitor() {
+          @Override
+          public boolean visit(IResourceDelta delta) throws CoreException {
+            final IResource resource = delta.getResource();
+            if (resource.getType() == IResource.FILE) {
+              if (CACHE_FILE_NAME.equals(resource.getName())) {
+                final IPath location = resource.getLocation();
+                if (location != null)
+                  invalidate(location.toFile());
+              }
+              return false;
+            }
+            return true;
+          }
+        });
+      } catch (CoreException ignore) {
+        // the visitor does not throw
+      }
+    }
+  };
+
+  private CMakeCacheIndex() {
+  }
+
+  /**
+   * Gets the shared instance.
+   */
+  public static CMakeCacheIndex getDefault() {
+    return INSTANCE;
+  }
+
+  /**
+   * Starts to drop cached content when the workspace reports a change of a
+   * cache file. Called on plugin activation.
+   */
+  public void startListening(IWorkspace workspace) {
+    workspace.addResourceChangeListener(listener,
+        IResourceChangeEvent.POST_CHANGE);
+  }
+
+  /**
+   * Stops to listen for workspace changes and drops all cached content. Called
+   * on plugin de-activation.
+   */
+  public void stopListening(IWorkspace workspace) {
+    workspace.removeResourceChangeListener(listener);
+    snapshots.clear();
+  }
+
+  /**
+   * Gets the parsed content of the specified CMake cache file. Parses the file
+   * if it was not parsed yet or if it changed since.
+   *
+   * @param cacheFile
+   *        the CMakeCache.txt file
+   * @return the parsed content or {@code null} if the file does not exist
+   * @throws IOException
+   *         if the file could not be read
+   */
+  public SimpleCMakeCacheTxt get(File cacheFile) throws IOException {
+    final String key = cacheFile.getAbsolutePath();
+    final long lastModified = cacheFile.lastModified();
+    final long length = cacheFile.length();
+    if (lastModified == 0L && !cacheFile.isFile()) {
+      snapshots.remove(key);
+      return null;
+    }
+
+    Snapshot snapshot = snapshots.get(key);
+    if (snapshot != null && snapshot.isCurrent(lastModified, length))
+      return snapshot.content;
+    synchronized (this) {
+      // another thread may have parsed the file meanwhile
+      snapshot = snapshots.get(key);
+      if (snapshot != null && snapshot.isCurrent(lastModified, length))
+        return snapshot.content;
+      snapshot = new Snapshot(lastModified, length, new SimpleCMakeCacheTxt(
+          SimpleCMakeCacheTxt.parse(cacheFile)));
+      snapshots.put(key, snapshot);
+      return snapshot.content;
+    }
+  }
+
+  /**
+   * Gets the parsed content of the CMake cache file in the specified build
+   * directory.
+   *
+   * @param buildDir
+   *        the build directory that holds the CMakeCache.txt file
+   * @return the parsed content or {@code null} if the file does not exist
+   * @throws IOException
+   *         if the file could not be read
+   * @see #get(File)
+   */
+  public SimpleCMakeCacheTxt getForBuildDir(File buildDir) throws IOException {
+    return get(new File(buildDir, CACHE_FILE_NAME));
+  }
+
+  /**
+   * Drops the cached content of the specified CMake cache file, so that the
+   * next lookup parses the file again.
+   *
+   * @param cacheFile
+   *        the CMakeCache.txt file
+   */
+  public void invalidate(File cacheFile) {
+    snapshots.remove(cacheFile.getAbsolutePath());
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // inner classes
+  ////////////////////////////////////////////////////////////////////
+  /**
+   * The parsed content of a cache file together with the file attributes at
+   * parse time.
+   *
+   * @author Martin Weber
+   */
+  private static class Snapshot {
+    private final long lastModified;
+    private final long length;
+    private final SimpleCMakeCacheTxt content;
+
+    Snapshot(long lastModified, long length, SimpleCMakeCacheTxt content) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.content = content;
+    }
+
+    boolean isCurrent(long lastModified, long length) {
+      return this.lastModified == lastModified && this.length == length;
+    }
+  }
+}
@@ -12,22 +12,39 @@ package de.marw.cdt.cmake.core.cmakecache;
 
 /**
  * Represents an entry of a CMakeCache.txt file in a simple form: Holds only
- * key-value-pairs of an entry. It does not extract any help texts nor entry
- * types.
+ * the key, the type and the value of an entry. It does not extract any help
+ * texts.
  *
  * @author Martin Weber
  */
 public class SimpleCMakeCacheEntry {
   private final String key;
+  private final String type;
   private final String value;
 
   /**
+   * Creates an entry without a type.
+   *
    * @throws IllegalArgumentException
    *         if {@code key} is empty
    * @throws NullPointerException
    *         if {@code key} is {@code null} or if {@code value} is {@code null}
    */
   public SimpleCMakeCacheEntry(String key, String value) {
+    this(key, null, value);
+  }
+
+  /**
+   * @param type
+   *        the entry type (e.g. {@code FILEPATH}) or {@code null} if the entry
+   *        has no type
+
+   * @throws IllegalArgumentException
+   *         if {@code key} is empty
+   * @throws NullPointerException
+   *         if {@code key} is {@code null} or if {@code value} is {@code null}
+   */
+  public SimpleCMakeCacheEntry(String key, String type, String value) {
     if (key == null) {
       throw new NullPointerException("key");
     }
@@ -39,6 +56,7 @@ public class SimpleCMakeCacheEntry {
     }
 
     this.value = value;
+    this.type = type;
     this.key = key;
   }
 
@@ -51,6 +69,16 @@ public class SimpleCMakeCacheEntry {
     return this.key;
   }
 
+  /**
+   * Gets the type.
+   *
+   * @return the type, such as {@code STRING} or {@code BOOL}, or {@code null}
+   *         if the entry has no type
+   */
+  public String getType() {
+    return this.type;
+  }
+
   /**
    * Gets the value.
    *
@@ -15,25 +15,33 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Represents a simplistic subset of the parsed content of a CMake cache file
- * (CMakeCache.txt).
+ * (CMakeCache.txt). Instances are immutable.
  *
  * @author Martin Weber
+ * @see CMakeCacheIndex
  */
 public class SimpleCMakeCacheTxt {
 
-  private String buildTool;
-  private List<String> tools;
-  private List<String> commands;
+  private final Map<String, SimpleCMakeCacheEntry> entries;
+  private final String buildTool;
+  private final List<String> tools;
+  private final List<String> commands;
 
   /**
-   * Creates a new object by parsing the specified file.
+   * Creates a new object by parsing the specified file.<br>
+   * Consider to use {@link CMakeCacheIndex#get(File)}, which parses each file
+   * only once as long as it does not change.
    *
    * @param file
    *        the file to parse.
@@ -41,36 +49,58 @@ public class SimpleCMakeCacheTxt {
    *         if the file could not be read
    */
   public SimpleCMakeCacheTxt(File file) throws IOException {
+    this(parse(file));
+  }
+
+  /**
+   * Creates a new object from the specified parsed entries.
+   */
+  /* package */ SimpleCMakeCacheTxt(Collection<SimpleCMakeCacheEntry> parsed) {
     ArrayList<String> tools = new ArrayList<String>();
     ArrayList<String> commands = new ArrayList<String>();
+    Map<String, SimpleCMakeCacheEntry> entries = new HashMap<String, SimpleCMakeCacheEntry>(
+        parsed.size() * 4 / 3 + 1);
+    String buildTool = null;
 
-    // parse CMakeCache.txt...
+    for (SimpleCMakeCacheEntry entry : parsed) {
+      final String toolKey = entry.getKey();
+      final String tool = entry.getValue();
+      entries.put(toolKey, entry);
+      if ("CMAKE_MAKE_PROGRAM".equals(toolKey) ||
+          "CMAKE_BUILD_TOOL".equals(toolKey) // deprecated since cmake 3.0
+          ) {
+        buildTool = tool;
+      } else if ("CMAKE_COMMAND".equals(toolKey)) {
+        commands.add(tool);
+      } else if ("CMAKE_CPACK_COMMAND".equals(toolKey)) {
+        commands.add(tool);
+      } else if ("CMAKE_CTEST_COMMAND".equals(toolKey)) {
+        commands.add(tool);
+      } else if ("CMAKE_C_COMPILER".equals(toolKey)) {
+        tools.add(tool);
+      } else if ("CMAKE_CXX_COMPILER".equals(toolKey)) {
+        tools.add(tool);
+      }
+    }
+    this.entries = Collections.unmodifiableMap(entries);
+    this.buildTool = buildTool;
+    this.tools = Collections.unmodifiableList(tools);
+    this.commands = Collections.unmodifiableList(commands);
+  }
+
+  /**
+   * Parses the specified CMakeCache.txt file.
+   *
+   * @throws IOException
+   *         if the file could not be read
+   */
+  /* package */ static Set<SimpleCMakeCacheEntry> parse(File file)
+      throws IOException {
+    final Set<SimpleCMakeCacheEntry> entries = new HashSet<SimpleCMakeCacheEntry>();
     InputStream is = null;
     try {
       is = new FileInputStream(file);
-      final Set<SimpleCMakeCacheEntry> entries = new HashSet<SimpleCMakeCacheEntry>();
       new CMakeCacheFileParser().parse(is, null, entries, null);
-      for (SimpleCMakeCacheEntry entry : entries) {
-        final String toolKey = entry.getKey();
-        final String tool = entry.getValue();
-        if ("CMAKE_MAKE_PROGRAM".equals(toolKey) ||
-            "CMAKE_BUILD_TOOL".equals(toolKey) // deprecated since cmake 3.0
-            ) {
-          buildTool = tool;
-        } else if ("CMAKE_COMMAND".equals(toolKey)) {
-          commands.add(tool);
-        } else if ("CMAKE_CPACK_COMMAND".equals(toolKey)) {
-          commands.add(tool);
-        } else if ("CMAKE_CTEST_COMMAND".equals(toolKey)) {
-          commands.add(tool);
-        } else if ("CMAKE_C_COMPILER".equals(toolKey)) {
-          tools.add(tool);
-        } else if ("CMAKE_CXX_COMPILER".equals(toolKey)) {
-          tools.add(tool);
-        }
-      }
-      this.tools = Collections.unmodifiableList(tools);
-      this.commands = Collections.unmodifiableList(commands);
     } finally {
       if (is != null) {
         try {
@@ -79,6 +109,75 @@ public class SimpleCMakeCacheTxt {
         }
       }
     }
+    return entries;
+  }
+
+  /**
+   * Gets all entries of the cache file.
+   *
+   * @return an unmodifiable map of the entries by key
+   */
+  public Map<String, SimpleCMakeCacheEntry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Gets the entry of the specified key.
+   *
+   * @return the entry or {@code null} if the cache file has no entry for the
+   *         key
+   */
+  public SimpleCMakeCacheEntry getEntry(String key) {
+    return entries.get(key);
+  }
+
+  /**
+   * Gets the value of the entry of the specified key.
+   *
+   * @return the value or {@code null} if the cache file has no entry for the
+   *         key
+   */
+  public String getValue(String key) {
+    final SimpleCMakeCacheEntry entry = entries.get(key);
+    return entry == null ? null : entry.getValue();
+  }
+
+  /**
+   * Gets the type of the entry of the specified key.
+   *
+   * @return the type, such as {@code FILEPATH}, or {@code null} if the cache
+   *         file has no entry for the key or the entry has no type
+   */
+  public String getType(String key) {
+    final SimpleCMakeCacheEntry entry = entries.get(key);
+    return entry == null ? null : entry.getType();
+  }
+
+  /**
+   * Gets the value of the entry of the specified key as a boolean, following
+   * the rules of CMake's {@code if(<constant>)} command.
+   *
+   * @return {@code true} if the value is {@code 1}, {@code ON}, {@code YES},
+   *         {@code TRUE}, {@code Y} or a non-zero number, {@code false} if the
+   *         value is any other string or if the cache file has no entry for
+   *         the key
+   */
+  public boolean getBoolean(String key) {
+    final String value = getValue(key);
+    if (value == null)
+      return false;
+    final String upper = value.toUpperCase(Locale.ROOT);
+    if ("ON".equals(upper) || "YES".equals(upper) || "TRUE".equals(upper)
+        || "Y".equals(upper))
+      return true;
+    if (value.isEmpty()
+        || !Character.isDigit(value.charAt(value.length() - 1)))
+      return false; // neither a number nor a true constant (e.g. NaN, 1f)
+    try {
+      return Double.parseDouble(value) != 0.0;
+    } catch (NumberFormatException ex) {
+      return false;
+    }
   }
 
   /**
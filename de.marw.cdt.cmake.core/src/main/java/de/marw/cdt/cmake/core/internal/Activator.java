@@ -12,9 +12,12 @@ package de.marw.cdt.cmake.core.internal;
 
 import java.text.MessageFormat;
 
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
+import de.marw.cdt.cmake.core.cmakecache.CMakeCacheIndex;
+
 /**
  * @author Martin Weber
  */
@@ -43,12 +46,15 @@ public class Activator extends AbstractUIPlugin {
       throw new RuntimeException(
           "BUG: PLUGIN_ID does not match Bundle-SymbolicName");
     plugin = this;
+    CMakeCacheIndex.getDefault().startListening(
+        ResourcesPlugin.getWorkspace());
   }
 
   /**
    * This method is called when the plug-in is stopped
    */
   public void stop(BundleContext context) throws Exception {
+    CMakeCacheIndex.getDefault().stopListening(ResourcesPlugin.getWorkspace());
     super.stop(context);
     plugin = null;
   }
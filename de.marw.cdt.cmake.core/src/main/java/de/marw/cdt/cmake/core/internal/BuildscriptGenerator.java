@@ -214,24 +214,36 @@ public class BuildscriptGenerator implements IManagedBuilderMakefileGenerator2 {
     // See if the user has cancelled the build
     checkCancel();
 
-    boolean mustGenerate= false;
-
     final IFolder buildFolder = getBuildFolder();
     final File buildDir = buildFolder.getLocation().toFile();
     final File cacheFile = new File(buildDir, "CMakeCache.txt");
-    if ((isGeneratorChanged(prefs) || prefs.isClearCache()) && cacheFile.exists()) {
-      // The user changed the generator, remove cache file to avoid cmake's complaints..
+    final File makefile = new File(buildDir, getMakefileName());
+    // must check before buildCommandline() remembers the generator
+    final boolean generatorChanged = isGeneratorChanged(prefs);
+
+    // create makefile, assuming the first source directory contains a
+    // CMakeLists.txt
+    final ICSourceEntry srcEntry = srcEntries[0]; // project relative
+    final IPath srcPath = srcEntry.getFullPath();
+    IContainer srcDir = srcPath.isEmpty() ? project : project.getFolder(srcPath);
+    final List<String> argList = buildCommandline(srcDir.getLocation());
+    final String[] envp = getEnvironment();
+    final String envSetterScript = getEnvSetterScript();
+
+    // run cmake only if its invocation changed since it ran last time
+    final ConfigureFingerprint fingerprint = ConfigureFingerprint.compute(argList, envp, envSetterScript, buildDir);
+    final ConfigureFingerprint lastFingerprint = ConfigureFingerprint.load(buildDir);
+    final boolean changed = !fingerprint.matches(lastFingerprint);
+    if ((generatorChanged || fingerprint.needsClearCache(lastFingerprint) || changed && prefs.isClearCache())
+        && cacheFile.exists()) {
+      // The user changed the generator or a setting cmake reads only when it creates the cache, remove cache file to
+      // avoid cmake's complaints..
       cacheFile.delete();
 //      System.out.println("DEL "+cacheFile);
       // tell the workspace about file removal
       buildFolder.getFile("CMakeCache.txt").refreshLocal(IResource.DEPTH_ZERO, monitor);
     }
-    final File makefile = new File(buildDir, getMakefileName());
-    if (!buildDir.exists() || !cacheFile.exists() || !makefile.exists()) {
-      mustGenerate= true;
-    }
-
-    if( !mustGenerate){
+    if (!changed && buildDir.exists() && cacheFile.exists() && makefile.exists()) {
       return new MultiStatus(Activator.PLUGIN_ID, IStatus.OK, "", null);
     }
 
@@ -251,9 +263,6 @@ public class BuildscriptGenerator implements IManagedBuilderMakefileGenerator2 {
     final IConsole console = CCorePlugin.getDefault().getConsole(CMAKE_CONSOLE_ID);
     console.start(project);
 
-    // create makefile, assuming the first source directory contains a
-    // CMakeLists.txt
-    final ICSourceEntry srcEntry = srcEntries[0]; // project relative
     updateMonitor("Execute CMake for " + project.getName());
     try {
       final ConsoleOutputStream cis = console.getInfoStream();
@@ -267,11 +276,23 @@ public class BuildscriptGenerator implements IManagedBuilderMakefileGenerator2 {
       cis.write("\n".getBytes());
     } catch (IOException ignore) {
     }
-    final IPath srcPath = srcEntry.getFullPath();
-    IContainer srcDir = srcPath.isEmpty() ? project : project.getFolder(srcPath);
 
     checkCancel();
-    MultiStatus status = invokeCMake(srcDir, buildFolder, console);
+    final List<String> cmakeArgs = new ArrayList<>(argList);
+    if (cacheFile.exists()) {
+      // remove the entries of the defines removed since the last run, their values would stay in the cache otherwise
+      for (String name : fingerprint.getRemovedDefines(lastFingerprint)) {
+        cmakeArgs.add(cmakeArgs.size() - 1, "-U" + name);
+      }
+    }
+    // if cmake fails or gets canceled, run it again next time
+    try {
+      fingerprint.toPending(lastFingerprint).store(buildDir);
+    } catch (IOException ex) {
+      ConfigureFingerprint.delete(buildDir);
+    }
+    MultiStatus status = invokeCMake(srcDir, buildFolder, wrapArgsForEnvScript(cmakeArgs, envSetterScript), envp,
+        console);
     // NOTE: Commonbuilder reads getCode() to detect errors, not getSeverity()
     if (status.getCode() == IStatus.ERROR) {
       // failed to generate
@@ -280,6 +301,12 @@ public class BuildscriptGenerator implements IManagedBuilderMakefileGenerator2 {
       createErrorMarker(project, status.getMessage());
       return status;
     }
+    try {
+      fingerprint.store(buildDir);
+    } catch (IOException ex) {
+      // cmake will run again next time
+      log.log(new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Failed to store cmake invocation fingerprint", ex));
+    }
 
     return new MultiStatus(Activator.PLUGIN_ID, IStatus.OK, "", null);
   }
@@ -321,14 +348,17 @@ public class BuildscriptGenerator implements IManagedBuilderMakefileGenerator2 {
    * @param buildFolder
    *        abs. path
    * @param srcFolder
+   * @param argList
+   *        the cmake command-line, the first argument is the command
+   * @param envp
+   *        the environment to run cmake in
    * @return a MultiStatus object, where .getCode() return the severity
    * @throws CoreException
    */
-  private MultiStatus invokeCMake(IContainer srcFolder, IFolder buildFolder, IConsole console) throws CoreException {
+  private MultiStatus invokeCMake(IContainer srcFolder, IFolder buildFolder, List<String> argList, String[] envp,
+      IConsole console) throws CoreException {
 
     String errMsg;
-    List<String> argList = buildCommandline(srcFolder.getLocation());
-    argList = wrapArgsForEnvScript(argList);
     try {
       console.getErrorStream().write(("#### Arrays.toString(String[] args)="
           + Arrays.toString(argList.toArray())).getBytes());
@@ -338,16 +368,6 @@ public class BuildscriptGenerator implements IManagedBuilderMakefileGenerator2 {
 
     // extract cmake command
     final String cmd = argList.remove(0);
-    // Set the environment
-    IEnvironmentVariable[] variables = ManagedBuildManager.getEnvironmentVariableProvider().getVariables(config, true);
-    String[] envp = null;
-    ArrayList<String> envList = new ArrayList<>();
-    if (variables != null) {
-      for (int i = 0; i < variables.length; i++) {
-        envList.add(variables[i].getName() + "=" + variables[i].getValue()); //$NON-NLS-1$
-      }
-      envp = envList.toArray(new String[envList.size()]);
-    }
     // run cmake..
     final ICommandLauncher launcher = builder.getCommandLauncher();
     launcher.setProject(project); // 9.4++ versions of CDT require this for docker
@@ -388,25 +408,57 @@ public class BuildscriptGenerator implements IManagedBuilderMakefileGenerator2 {
   }
 
   /**
-   * Wraps the specified command line into a command line that runs cmake in a sub-shell with an environment-setter
-   * script. If no environment-setter script is configured, the passed-in commandline is returned unchanged..
+   * Gets the environment to run cmake in.
    *
-   * @param cmakeCommandline
-   *          the command-line to run cmake
+   * @return the environment variables, each of the form {@code name=value}, or {@code null}
+   */
+  private String[] getEnvironment() {
+    IEnvironmentVariable[] variables = ManagedBuildManager.getEnvironmentVariableProvider().getVariables(config, true);
+    String[] envp = null;
+    ArrayList<String> envList = new ArrayList<>();
+    if (variables != null) {
+      for (int i = 0; i < variables.length; i++) {
+        envList.add(variables[i].getName() + "=" + variables[i].getValue()); //$NON-NLS-1$
+      }
+      envp = envList.toArray(new String[envList.size()]);
+    }
+    return envp;
+  }
+
+  /**
+   * Gets the environment-setter script to run before cmake.
+   *
+   * @return the script with variables resolved or {@code null} if none is configured
    * @throws CoreException
    */
-  private List<String> wrapArgsForEnvScript(List<String> cmakeCommandline) throws CoreException {
+  private String getEnvSetterScript() throws CoreException {
     final ICConfigurationDescription cfgd = ManagedBuildManager.getDescriptionForConfiguration(config);
     final CMakePreferences prefs = ConfigurationManager.getInstance().getOrLoad(cfgd);
     AbstractOsPreferences osPreferences = AbstractOsPreferences.extractOsPreferences(prefs);
     String envSetterScript = osPreferences.getEnvSetterScript();
 //    envSetterScript = "path to/envs.bat";
     if (envSetterScript == null) {
-      return cmakeCommandline; // nothing to do
+      return null;
     }
 
     final ICdtVariableManager mngr = CCorePlugin.getDefault().getCdtVariableManager();
-    envSetterScript = mngr.resolveValue(envSetterScript, "", "", cfgd);
+    return mngr.resolveValue(envSetterScript, "", "", cfgd);
+  }
+
+  /**
+   * Wraps the specified command line into a command line that runs cmake in a sub-shell with an environment-setter
+   * script. If no environment-setter script is configured, the passed-in commandline is returned unchanged..
+   *
+   * @param cmakeCommandline
+   *          the command-line to run cmake
+   * @param envSetterScript
+   *          the environment-setter script with variables resolved or {@code null}
+   */
+  private static List<String> wrapArgsForEnvScript(List<String> cmakeCommandline, String envSetterScript) {
+    if (envSetterScript == null) {
+      return cmakeCommandline; // nothing to do
+    }
+
     if (/*true|| */System.getProperty("os.name").toLowerCase().startsWith("windows")) {
       // host OS is windows
 
@@ -11,14 +11,8 @@
 package de.marw.cdt.cmake.core.internal;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
-import java.util.WeakHashMap;
 
 import org.eclipse.cdt.core.ICommandLauncher;
 import org.eclipse.cdt.core.IMarkerGenerator;
@@ -52,9 +46,8 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.osgi.framework.Version;
 
-import de.marw.cdt.cmake.core.cmakecache.CMakeCacheFileParser;
-import de.marw.cdt.cmake.core.cmakecache.CMakeCacheFileParser.EntryFilter;
-import de.marw.cdt.cmake.core.cmakecache.SimpleCMakeCacheEntry;
+import de.marw.cdt.cmake.core.cmakecache.CMakeCacheIndex;
+import de.marw.cdt.cmake.core.cmakecache.SimpleCMakeCacheTxt;
 import de.marw.cdt.cmake.core.internal.settings.AbstractOsPreferences;
 import de.marw.cdt.cmake.core.internal.settings.CMakePreferences;
 import de.marw.cdt.cmake.core.internal.settings.ConfigurationManager;
@@ -71,10 +64,6 @@ public class CmakeBuildRunner extends ExternalBuildRunner {
   /** build runner error marker ID */
   private static final String MARKER_ID = Activator.PLUGIN_ID + ".BuildRunnerError";
 
-  /** caches CMakeCacheFileInfo by ICConfigurationDescription.ID */
-  private WeakHashMap<String, CMakeCacheFileInfo> map = new WeakHashMap<>(
-      2);
-
   /*-
    * @see org.eclipse.cdt.managedbuilder.core.ExternalBuildRunner#invokeBuild(int, org.eclipse.core.resources.IProject, org.eclipse.cdt.managedbuilder.core.IConfiguration, org.eclipse.cdt.managedbuilder.core.IBuilder, org.eclipse.cdt.core.resources.IConsole, org.eclipse.cdt.core.IMarkerGenerator, org.eclipse.core.resources.IncrementalProjectBuilder, org.eclipse.core.runtime.IProgressMonitor)
    */
@@ -128,8 +117,8 @@ public class CmakeBuildRunner extends ExternalBuildRunner {
   /**
    * Gets the {@code "CMAKE_BUILD_TOOL"} value from the parsed content of the
    * CMake cache file (CMakeCache.txt) corresponding to the specified
-   * configuration. If the cache for the parsed content is invalid, tries to
-   * parse the CMakeCache.txt file first and then caches the parsed content.
+   * configuration. The parsed content is shared through the
+   * {@link CMakeCacheIndex}, which parses the file only if it changed.
    *
    * @param cfgd
    *          configuration
@@ -145,14 +134,8 @@ public class CmakeBuildRunner extends ExternalBuildRunner {
    * @throws CoreException
    *           if an IOExceptions occurs when reading the cmake cache file
    */
-   private String getCommandFromCMakeCache(ICConfigurationDescription cfgd,
-       boolean forceParsing, IProject project, IMarkerGenerator markerGenerator) throws CoreException {
-     CMakeCacheFileInfo fi = map.get(cfgd.getId());
-     if (fi == null) {
-       fi = new CMakeCacheFileInfo();
-       map.put(cfgd.getId(), fi);
-     }
-
+  private String getCommandFromCMakeCache(ICConfigurationDescription cfgd,
+      boolean forceParsing, IProject project, IMarkerGenerator markerGenerator) throws CoreException {
     // If getBuilderCWD() returns a workspace relative path, it gets garbled by CDT.
     // If garbled, make sure de.marw.cdt.cmake.core.internal.BuildscriptGenerator.getBuildWorkingDir()
     // returns a full, absolute path relative to the workspace.
@@ -161,82 +144,48 @@ public class CmakeBuildRunner extends ExternalBuildRunner {
     IPath location = ResourcesPlugin.getWorkspace().getRoot().getFolder(builderCWD).getLocation();
     File file= null;
     if (location != null) {
-      file = location.append("CMakeCache.txt").toFile();
-    }
-
-    if (file != null && file.isFile()) {
-      final long lastModified = file.lastModified();
-      if (forceParsing || fi.cachedCmakeBuildTool == null || fi.cmCacheFileLastModified == 0
-          || lastModified > fi.cmCacheFileLastModified) {
-        // internally cached value is outdated, must parse CMakeCache.txt
-        fi.cmCacheFileLastModified = lastModified;
-        fi.cachedCmakeBuildTool = null; // invalidate cache
-
-        // parse CMakeCache.txt...
-        InputStream is = null;
-        try {
-          is = new FileInputStream(file);
-          final Set<SimpleCMakeCacheEntry> entries = new HashSet<>();
-          final EntryFilter filter = new EntryFilter() {
-            @Override
-            public boolean accept(String key) {
-              return "CMAKE_MAKE_PROGRAM".equals(key);
-            }
-          };
-          new CMakeCacheFileParser().parse(is, filter, entries, null);
-          final Iterator<SimpleCMakeCacheEntry> iter = entries.iterator();
-          if (iter.hasNext()) {
-            // got a CMAKE_BUILD_TOOL entry, update internally cached value
-            fi.cachedCmakeBuildTool = iter.next().getValue();
-          } else {
-              // actually this should not happen, since cmake will abort if it cannot determine
-              // the build tool,.. but the variable name might change in future
-              final ProblemMarkerInfo pmi = new ProblemMarkerInfo(
-                  ResourcesPlugin.getWorkspace().getRoot().getFolder(builderCWD), 0,
-                  "No CMAKE_MAKE_PROGRAM entry in file CMakeCache.txt, unable to build project",
-                  IMarkerGenerator.SEVERITY_ERROR_BUILD, null);
-              pmi.setType(MARKER_ID);
-              markerGenerator.addMarker(pmi);
-          }
-        } catch (IOException ex) {
-          throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID,
-              "Failed to parse file " + file, ex));
-        } finally {
-          if (is != null) {
-            try {
-              is.close();
-            } catch (IOException ignore) {
-            }
-          }
-        }
+      file = location.append(CMakeCacheIndex.CACHE_FILE_NAME).toFile();
+    }
+
+    SimpleCMakeCacheTxt cache = null;
+    if (file != null) {
+      final CMakeCacheIndex index = CMakeCacheIndex.getDefault();
+      if (forceParsing) {
+        index.invalidate(file);
+      }
+      try {
+        cache = index.get(file);
+      } catch (IOException ex) {
+        throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+            "Failed to parse file " + file, ex));
       }
-    } else {
+    }
+
+    if (cache == null) {
       // CMakeCache.txt does not exist
       final ProblemMarkerInfo pmi = new ProblemMarkerInfo(project, 0,
           "File CMakeCache.txt does not exist, unable to build project", IMarkerGenerator.SEVERITY_ERROR_BUILD, null);
       pmi.setType(MARKER_ID);
       markerGenerator.addMarker(pmi);
+      return null;
+    }
+    final String buildTool = cache.getValue("CMAKE_MAKE_PROGRAM");
+    if (buildTool == null) {
+      // actually this should not happen, since cmake will abort if it cannot determine
+      // the build tool,.. but the variable name might change in future
+      final ProblemMarkerInfo pmi = new ProblemMarkerInfo(
+          ResourcesPlugin.getWorkspace().getRoot().getFolder(builderCWD), 0,
+          "No CMAKE_MAKE_PROGRAM entry in file CMakeCache.txt, unable to build project",
+          IMarkerGenerator.SEVERITY_ERROR_BUILD, null);
+      pmi.setType(MARKER_ID);
+      markerGenerator.addMarker(pmi);
     }
-    return fi.cachedCmakeBuildTool;
+    return buildTool;
   }
 
-   ////////////////////////////////////////////////////////////////////
-   // inner classes
-   ////////////////////////////////////////////////////////////////////
-   /**
-    * Info about cached CMAKE_BUILD_TOOL entry parsed from from CMakeCache.txt
-    *
-    * @author Martin Weber
-    */
-   private static class CMakeCacheFileInfo {
-     /**
-      * cached CMAKE_BUILD_TOOL entry from CMakeCache.txt or {@code null} if
-      * CMakeCache.txt could not be parsed
-      */
-     private String cachedCmakeBuildTool;
-     private long cmCacheFileLastModified;
-   }
-
+  ////////////////////////////////////////////////////////////////////
+  // inner classes
+  ////////////////////////////////////////////////////////////////////
   /**
    * @author Martin Weber
    */
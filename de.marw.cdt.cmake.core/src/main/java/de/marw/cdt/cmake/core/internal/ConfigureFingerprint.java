@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+package de.marw.cdt.cmake.core.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A fingerprint of the effective cmake invocation for a build directory. It is stored in the build directory after
+ * cmake ran successfully, so that the next build can tell whether cmake must run again and whether the CMake cache
+ * must be deleted before.<br>
+ * CMake reads some settings (the generator, the compilers and the toolchain file) only when it creates the cache; a
+ * change of these settings requires to delete the cache. A define that was removed from the command-line keeps its
+ * value in the cache; it must be removed from the cache by an undefine (-U) on the next invocation.
+ *
+ * @author Martin Weber
+ */
+/* package */ class ConfigureFingerprint {
+  /** the name of the file in the build directory that holds the fingerprint */
+  static final String FILE_NAME = ".cmake4eclipse_configure";
+
+  private static final String VERSION = "1";
+  private static final String KEY_VERSION = "version";
+  private static final String KEY_COMMAND = "command";
+  private static final String KEY_CACHE = "cache";
+  private static final String KEY_DEFINES = "defines";
+
+  /** cache entries that cmake evaluates only when it creates the cache */
+  private static final Set<String> CACHE_DEFINES = new HashSet<>(Arrays.asList("CMAKE_TOOLCHAIN_FILE",
+      "CMAKE_C_COMPILER", "CMAKE_CXX_COMPILER", "CMAKE_GENERATOR_PLATFORM", "CMAKE_GENERATOR_TOOLSET"));
+  /** environment variables that cmake evaluates only when it creates the cache */
+  private static final List<String> CACHE_ENV_VARS = Arrays.asList("CC", "CXX", "FC", "ASM", "CUDACXX", "CFLAGS",
+      "CXXFLAGS", "FFLAGS", "CUDAFLAGS", "LDFLAGS", "CMAKE_TOOLCHAIN_FILE");
+
+  /** hash of the complete invocation */
+  private final String command;
+  /** hash of the parts of the invocation that require a fresh cache if changed */
+  private final String cache;
+  /** the names of the defines (-D) on the command-line */
+  private final Set<String> defines;
+
+  private ConfigureFingerprint(String command, String cache, Set<String> defines) {
+    this.command = command;
+    this.cache = cache;
+    this.defines = defines;
+  }
+
+  /**
+   * Computes the fingerprint of a cmake invocation.
+   *
+   * @param args
+   *          the cmake command-line, the first argument is the cmake command
+   * @param envp
+   *          the environment to run cmake in, each element of the form {@code name=value}, or {@code null}
+   * @param envSetterScript
+   *          the script that sets up the environment for cmake or {@code null}
+   * @param buildDir
+   *          the directory to run cmake in, used to resolve a relative initial cache file (-C)
+   */
+  public static ConfigureFingerprint compute(List<String> args, String[] envp, String envSetterScript,
+      File buildDir) {
+    final MessageDigest cacheMd = newDigest();
+    final Set<String> defines = new TreeSet<>();
+    for (int i = 0; i < args.size(); i++) {
+      final String arg = args.get(i);
+      if (arg.startsWith("-D")) {
+        final String name = getDefineName(arg);
+        defines.add(name);
+        if (CACHE_DEFINES.contains(name)) {
+          update(cacheMd, arg);
+        }
+      } else if ("-G".equals(arg) && i + 1 < args.size()) {
+        update(cacheMd, arg);
+        update(cacheMd, args.get(i + 1));
+      } else if ("-C".equals(arg) && i + 1 < args.size()) {
+        // the initial cache script populates the cache when cmake creates it
+        update(cacheMd, arg);
+        File initialCache = new File(args.get(i + 1));
+        if (!initialCache.isAbsolute()) {
+          initialCache = new File(buildDir, args.get(i + 1));
+        }
+        update(cacheMd, args.get(i + 1) + "@" + initialCache.lastModified());
+      }
+    }
+
+    final Map<String, String> env = new HashMap<>();
+    if (envp != null) {
+      for (String var : envp) {
+        final int idx = var.indexOf('=');
+        if (idx > 0) {
+          env.put(var.substring(0, idx), var.substring(idx + 1));
+        }
+      }
+    }
+    for (String name : CACHE_ENV_VARS) {
+      final String value = env.get(name);
+      if (value != null) {
+        update(cacheMd, name + "=" + value);
+      }
+    }
+    if (envSetterScript != null) {
+      update(cacheMd, envSetterScript + "@" + new File(envSetterScript).lastModified());
+    }
+    final String cache = toHex(cacheMd.digest());
+
+    final MessageDigest commandMd = newDigest();
+    for (String arg : args) {
+      update(commandMd, arg);
+    }
+    update(commandMd, cache);
+    return new ConfigureFingerprint(toHex(commandMd.digest()), cache, Collections.unmodifiableSet(defines));
+  }
+
+  /**
+   * Reads the fingerprint stored in the specified build directory.
+   *
+   * @return the fingerprint or {@code null} if none was stored or it is unreadable
+   */
+  public static ConfigureFingerprint load(File buildDir) {
+    final File file = new File(buildDir, FILE_NAME);
+    if (!file.isFile())
+      return null;
+    final Properties props = new Properties();
+    try (InputStream is = new FileInputStream(file)) {
+      props.load(is);
+    } catch (IOException ex) {
+      return null;
+    }
+    final String command = props.getProperty(KEY_COMMAND);
+    final String cache = props.getProperty(KEY_CACHE);
+    final String defines = props.getProperty(KEY_DEFINES);
+    if (!VERSION.equals(props.getProperty(KEY_VERSION)) || command == null || cache == null || defines == null)
+      return null;
+    final Set<String> names = new TreeSet<>();
+    for (String name : defines.split(";")) {
+      if (!name.isEmpty())
+        names.add(name);
+    }
+    return new ConfigureFingerprint(command, cache, Collections.unmodifiableSet(names));
+  }
+
+  /**
+   * Stores this fingerprint in the specified build directory.
+   *
+   * @throws IOException
+   *           if the file could not be written
+   */
+  public void store(File buildDir) throws IOException {
+    final Properties props = new Properties();
+    props.setProperty(KEY_VERSION, VERSION);
+    props.setProperty(KEY_COMMAND, command);
+    props.setProperty(KEY_CACHE, cache);
+    props.setProperty(KEY_DEFINES, String.join(";", defines));
+    try (OutputStream os = new FileOutputStream(new File(buildDir, FILE_NAME))) {
+      props.store(os, "cmake4eclipse: fingerprint of the last cmake invocation");
+    }
+  }
+
+  /**
+   * Deletes the fingerprint stored in the specified build directory, so that the next build runs cmake.
+   */
+  public static void delete(File buildDir) {
+    new File(buildDir, FILE_NAME).delete();
+  }
+
+  /**
+   * Gets whether the specified fingerprint of the last cmake invocation equals this one, so that cmake need not run.
+   *
+   * @param last
+   *          the fingerprint of the last invocation or {@code null} if unknown
+   */
+  public boolean matches(ConfigureFingerprint last) {
+    return last != null && !command.isEmpty() && command.equals(last.command) && cache.equals(last.cache);
+  }
+
+  /**
+   * Gets whether the CMake cache written by the last cmake invocation must be deleted, since it would retain settings
+   * that changed since.
+   *
+   * @param last
+   *          the fingerprint of the last invocation or {@code null} if unknown
+   * @return {@code true} if the generator, the compilers, the toolchain or the initial cache changed or a define of
+   *         these was removed, {@code false} if these are unchanged or unknown
+   */
+  public boolean needsClearCache(ConfigureFingerprint last) {
+    if (last == null)
+      return false;
+    if (!cache.equals(last.cache))
+      return true;
+    for (String name : getRemovedDefines(last)) {
+      if (CACHE_DEFINES.contains(name))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Gets the names of the defines that were passed to the last cmake invocation, but are not passed any longer. Their
+   * values stay in the cache unless cmake is told to remove them.
+   *
+   * @param last
+   *          the fingerprint of the last invocation or {@code null} if unknown
+   * @return the names, sorted
+   */
+  public Set<String> getRemovedDefines(ConfigureFingerprint last) {
+    if (last == null)
+      return Collections.emptySet();
+    final Set<String> removed = new TreeSet<>(last.defines);
+    removed.removeAll(defines);
+    return removed;
+  }
+
+  /**
+   * Gets the fingerprint to store before cmake runs. It never matches a computed fingerprint, so cmake runs again if
+   * this run fails or gets canceled, but it remembers the defines of the last successful invocation, so that the next
+   * run still removes the defines that were removed since.
+   *
+   * @param last
+   *          the fingerprint of the last invocation or {@code null} if unknown
+   */
+  public ConfigureFingerprint toPending(ConfigureFingerprint last) {
+    final Set<String> names = new TreeSet<>(defines);
+    if (last != null) {
+      names.addAll(last.defines);
+    }
+    return new ConfigureFingerprint("", cache, Collections.unmodifiableSet(names));
+  }
+
+  /**
+   * Gets the name of the variable of the specified define argument ({@code -DNAME:TYPE=value} or
+   * {@code -DNAME=value}).
+   */
+  private static String getDefineName(String arg) {
+    int end = arg.indexOf('=');
+    if (end == -1)
+      end = arg.length();
+    final int colon = arg.indexOf(':');
+    if (colon != -1 && colon < end)
+      end = colon;
+    return arg.substring(2, end);
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException ex) {
+      // every java platform supports SHA-1
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static void update(MessageDigest md, String value) {
+    md.update(value.getBytes(StandardCharsets.UTF_8));
+    md.update((byte) 0);
+  }
+
+  private static String toHex(byte[] bytes) {
+    final StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+}
@@ -16,6 +16,7 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -142,6 +143,48 @@ public class CMakeCacheFileParserTest {
         .getKey());
   }
 
+  @Test
+  public final void testParse_values() throws Exception {
+    String input = "CMAKE_CXX_FLAGS_DEBUG:STRING='-g '\r\n"
+        + "CMAKE_C_FLAGS:STRING=-O2 \t\r"
+        + "\"QUOTED KEY\":STRING=x\n"
+        + "EMPTY:STRING=\n"
+        + "BLANK=  \n"
+        + "UTF8:STRING=/home/j\u00fcrgen";
+    List<SimpleCMakeCacheEntry> entries = new ArrayList<SimpleCMakeCacheEntry>();
+    boolean errors = testee.parse(
+        new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), null,
+        entries, null);
+    assertFalse("has errors", errors);
+    assertEquals("entries", 6, entries.size());
+    assertEquals("CMAKE_CXX_FLAGS_DEBUG", entries.get(0).getKey());
+    assertEquals("-g ", entries.get(0).getValue());
+    assertEquals("CMAKE_C_FLAGS", entries.get(1).getKey());
+    assertEquals("-O2", entries.get(1).getValue());
+    assertEquals("\"QUOTED KEY\"", entries.get(2).getKey());
+    assertEquals("", entries.get(3).getValue());
+    assertEquals("BLANK", entries.get(4).getKey());
+    assertEquals("  ", entries.get(4).getValue());
+    assertEquals("/home/j\u00fcrgen", entries.get(5).getValue());
+    // types
+    assertEquals("STRING", entries.get(0).getType());
+    assertEquals("STRING", entries.get(3).getType());
+    assertEquals(null, entries.get(4).getType());
+  }
+
+  @Test
+  public final void testParse_ill_Lines_withEntries() throws Exception {
+    String input = "CMAKE_AR:FILEPATH=/usr/bin/ar\n" + "ill line\n"
+        + "CMAKE_BUILD_TYPE:STRING=Debug\n";
+    List<SimpleCMakeCacheEntry> entries = new ArrayList<SimpleCMakeCacheEntry>();
+    ArrayList<String> errLog = new ArrayList<String>();
+    boolean errors = testee.parse(new ByteArrayInputStream(input.getBytes()),
+        null, entries, errLog);
+    assertTrue("has errors", errors);
+    assertEquals("error msgs", 1, errLog.size());
+    assertEquals("entries", 2, entries.size());
+  }
+
   /**
    * Test method for
    * {@link de.marw.cdt.cmake.core.cmakecache.CMakeCacheFileParser#parse(java.io.InputStream, de.marw.cdt.cmake.core.cmakecache.CMakeCacheFileParser.EntryFilter, Collection, List)}
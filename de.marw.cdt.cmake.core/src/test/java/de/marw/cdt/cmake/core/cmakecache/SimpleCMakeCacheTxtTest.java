@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+package de.marw.cdt.cmake.core.cmakecache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SimpleCMakeCacheTxt}.
+ *
+ * @author Martin Weber
+ */
+public class SimpleCMakeCacheTxtTest {
+
+  @Test
+  public final void testLookups() {
+    SimpleCMakeCacheTxt testee = new SimpleCMakeCacheTxt(Arrays.asList(
+        new SimpleCMakeCacheEntry("CMAKE_MAKE_PROGRAM", "FILEPATH",
+            "/usr/bin/make"),
+        new SimpleCMakeCacheEntry("CMAKE_C_COMPILER", "FILEPATH",
+            "/usr/bin/cc"),
+        new SimpleCMakeCacheEntry("CMAKE_COMMAND", "INTERNAL",
+            "/usr/bin/cmake"),
+        new SimpleCMakeCacheEntry("UNTYPED", "value")));
+
+    assertEquals("/usr/bin/make", testee.getBuildTool());
+    assertEquals(Arrays.asList("/usr/bin/cc"), testee.getTools());
+    assertEquals(Arrays.asList("/usr/bin/cmake"), testee.getCmakeCommands());
+    assertEquals(4, testee.getEntries().size());
+    assertEquals("/usr/bin/make", testee.getValue("CMAKE_MAKE_PROGRAM"));
+    assertEquals("FILEPATH", testee.getType("CMAKE_MAKE_PROGRAM"));
+    assertEquals("value", testee.getValue("UNTYPED"));
+    assertNull(testee.getType("UNTYPED"));
+    assertNull(testee.getValue("MISSING"));
+    assertNull(testee.getEntry("MISSING"));
+  }
+
+  @Test
+  public final void testGetBoolean() {
+    String[] trueValues = { "ON", "on", "1", "YES", "True", "Y", "2", "-1.5" };
+    String[] falseValues = { "OFF", "0", "NO", "FALSE", "N", "", "IGNORE",
+        "NOTFOUND", "FOO-NOTFOUND", "0.0", "NaN", "1f" };
+    for (String value : trueValues) {
+      SimpleCMakeCacheTxt testee = new SimpleCMakeCacheTxt(Arrays.asList(
+          new SimpleCMakeCacheEntry("OPT", "BOOL", value)));
+      assertTrue(value, testee.getBoolean("OPT"));
+    }
+    for (String value : falseValues) {
+      SimpleCMakeCacheTxt testee = new SimpleCMakeCacheTxt(Arrays.asList(
+          new SimpleCMakeCacheEntry("OPT", "BOOL", value)));
+      assertFalse(value, testee.getBoolean("OPT"));
+    }
+    assertFalse(new SimpleCMakeCacheTxt(Arrays
+        .<SimpleCMakeCacheEntry> asList()).getBoolean("OPT"));
+  }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+package de.marw.cdt.cmake.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConfigureFingerprint}.
+ *
+ * @author Martin Weber
+ */
+public class ConfigureFingerprintTest {
+  private static final File BUILD_DIR = new File("build");
+  private static final String[] ENV = { "PATH=/usr/bin", "CC=gcc" };
+
+  private static ConfigureFingerprint compute(String... args) {
+    return ConfigureFingerprint.compute(Arrays.asList(args), ENV, null, BUILD_DIR);
+  }
+
+  @Test
+  public void testUnchanged() {
+    ConfigureFingerprint last = compute("cmake", "-DCMAKE_BUILD_TYPE:STRING=Debug", "-G", "Ninja", "/src");
+    ConfigureFingerprint testee = compute("cmake", "-DCMAKE_BUILD_TYPE:STRING=Debug", "-G", "Ninja", "/src");
+    assertTrue(testee.matches(last));
+    assertFalse(testee.needsClearCache(last));
+    // PATH is irrelevant
+    testee = ConfigureFingerprint.compute(Arrays.asList("cmake", "-DCMAKE_BUILD_TYPE:STRING=Debug", "-G", "Ninja",
+        "/src"), new String[] { "PATH=/bin", "CC=gcc" }, null, BUILD_DIR);
+    assertTrue(testee.matches(last));
+  }
+
+  @Test
+  public void testUnknown() {
+    ConfigureFingerprint testee = compute("cmake", "/src");
+    assertFalse(testee.matches(null));
+    assertFalse(testee.needsClearCache(null));
+  }
+
+  @Test
+  public void testReconfigure() {
+    ConfigureFingerprint last = compute("cmake", "-DFOO:BOOL=ON", "-G", "Ninja", "/src");
+    // value changed
+    ConfigureFingerprint testee = compute("cmake", "-DFOO:BOOL=OFF", "-G", "Ninja", "/src");
+    assertFalse(testee.matches(last));
+    assertFalse(testee.needsClearCache(last));
+    // define added
+    testee = compute("cmake", "-DFOO:BOOL=ON", "-DBAR=1", "-G", "Ninja", "/src");
+    assertFalse(testee.matches(last));
+    assertFalse(testee.needsClearCache(last));
+    // undefine added
+    testee = compute("cmake", "-DFOO:BOOL=ON", "-UBAR", "-G", "Ninja", "/src");
+    assertFalse(testee.matches(last));
+    assertFalse(testee.needsClearCache(last));
+  }
+
+  @Test
+  public void testClearCache() {
+    ConfigureFingerprint last = compute("cmake", "-DFOO:BOOL=ON", "-DCMAKE_TOOLCHAIN_FILE=tc.cmake", "-G", "Ninja",
+        "/src");
+    // toolchain define removed
+    ConfigureFingerprint testee = compute("cmake", "-DFOO:BOOL=ON", "-G", "Ninja", "/src");
+    assertFalse(testee.matches(last));
+    assertTrue(testee.needsClearCache(last));
+    last = compute("cmake", "-DFOO:BOOL=ON", "-G", "Ninja", "/src");
+    // generator changed
+    testee = compute("cmake", "-DFOO:BOOL=ON", "-G", "Unix Makefiles", "/src");
+    assertTrue(testee.needsClearCache(last));
+    // compiler changed
+    testee = compute("cmake", "-DFOO:BOOL=ON", "-DCMAKE_C_COMPILER:FILEPATH=clang", "-G", "Ninja", "/src");
+    assertTrue(testee.needsClearCache(last));
+    // compiler environment changed
+    testee = ConfigureFingerprint.compute(Arrays.asList("cmake", "-DFOO:BOOL=ON", "-G", "Ninja", "/src"),
+        new String[] { "PATH=/usr/bin", "CC=clang" }, null, BUILD_DIR);
+    assertTrue(testee.needsClearCache(last));
+  }
+
+  @Test
+  public void testRemovedDefines() {
+    ConfigureFingerprint last = compute("cmake", "-DFOO:BOOL=ON", "-DBAR=1", "-DBAZ=2", "-G", "Ninja", "/src");
+    ConfigureFingerprint testee = compute("cmake", "-DBAR=1", "-G", "Ninja", "/src");
+    assertFalse(testee.matches(last));
+    // removed defines get undefined, the cache is kept
+    assertFalse(testee.needsClearCache(last));
+    assertEquals(new TreeSet<>(Arrays.asList("BAZ", "FOO")), testee.getRemovedDefines(last));
+    assertTrue(testee.getRemovedDefines(null).isEmpty());
+    assertTrue(testee.getRemovedDefines(testee).isEmpty());
+  }
+
+  @Test
+  public void testPending() {
+    ConfigureFingerprint last = compute("cmake", "-DFOO:BOOL=ON", "-DBAR=1", "-G", "Ninja", "/src");
+    ConfigureFingerprint testee = compute("cmake", "-DBAR=1", "-G", "Ninja", "/src");
+    ConfigureFingerprint pending = testee.toPending(last);
+    // a failed run must run cmake again and still undefine what was removed before
+    assertFalse(testee.matches(pending));
+    assertFalse(pending.matches(pending));
+    assertFalse(testee.needsClearCache(pending));
+    assertEquals(Collections.singleton("FOO"), testee.getRemovedDefines(pending));
+  }
+
+  @Test
+  public void testStoreLoad() throws Exception {
+    File dir = Files.createTempDirectory("fingerprint").toFile();
+    try {
+      assertNull(ConfigureFingerprint.load(dir));
+      List<String> args = Arrays.asList("cmake", "-DFOO:BOOL=ON", "-DBAR=1", "-G", "Ninja", "/src");
+      ConfigureFingerprint testee = ConfigureFingerprint.compute(args, ENV, null, dir);
+      testee.store(dir);
+      ConfigureFingerprint loaded = ConfigureFingerprint.load(dir);
+      assertTrue(testee.matches(loaded));
+      assertFalse(testee.needsClearCache(loaded));
+      assertFalse(compute("cmake", "-DBAR=1", "-G", "Ninja", "/src").needsClearCache(loaded));
+      assertEquals(Collections.singleton("FOO"),
+          compute("cmake", "-DBAR=1", "-G", "Ninja", "/src").getRemovedDefines(loaded));
+
+      ConfigureFingerprint.delete(dir);
+      assertNull(ConfigureFingerprint.load(dir));
+    } finally {
+      new File(dir, ConfigureFingerprint.FILE_NAME).delete();
+      dir.delete();
+    }
+  }
+}
@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+package de.marw.cmake.cdt.language.settings.providers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.core.settings.model.ICSettingEntry;
+import org.eclipse.cdt.core.settings.model.util.CDataUtil;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.junit.Test;
+
+import de.marw.cmake.cdt.language.settings.providers.CompileCommandsJsonParser.EntryFingerprint;
+import de.marw.cmake.cdt.language.settings.providers.CompileCommandsJsonParser.ParseContext;
+import de.marw.cmake.cdt.language.settings.providers.CompileCommandsJsonParser.TimestampedLanguageSettingsStorage;
+import de.marw.cmake.cdt.language.settings.providers.builtins.BuiltinDetectionType;
+import de.marw.cmake.cdt.language.settings.providers.builtins.CompilerBuiltinsDetector;
+
+/**
+ * Tests for the internals of {@link CompileCommandsJsonParser}.
+ *
+ * @author Martin Weber
+ */
+public class CompileCommandsJsonParserTest {
+
+  private static final String LANG = "org.eclipse.cdt.core.gcc";
+  private static final String LANG_CXX = "org.eclipse.cdt.core.g++";
+  private static final IPath CWD = new org.eclipse.core.runtime.Path("/build");
+
+  private static final String ENTRIES = "[\n {\"directory\":\"/build\",\"command\":\"cc -c a.c\",\"file\":\"a.c\"},\n"
+      + " {\"directory\":\"/build\",\"command\":\"cc -c b.c\",\"file\":\"b.c\"}\n";
+
+  /** Parses the array elements of the specified content through a memory-mapped or buffered file source. */
+  private static void assertFileElements(String content, String... expectedFiles) throws IOException {
+    Path file = Files.createTempFile("compile_commands", ".json");
+    try {
+      Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        assertElements(new JSON().parseArrayElements(CompileCommandsJsonParser.createJsonSource(channel)),
+            expectedFiles);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Asserts that the specified iterator delivers elements with the specified file names, then ends or throws an
+   * {@link IllegalStateException} if {@code null} is given as the last file name.
+   */
+  private static void assertElements(Iterator<Object> elements, String... expectedFiles) {
+    for (String expected : expectedFiles) {
+      if (expected == null) {
+        try {
+          elements.hasNext();
+          fail("malformed tail not detected");
+        } catch (IllegalStateException expectedEx) {
+          return;
+        }
+      }
+      assertTrue(elements.hasNext());
+      assertEquals(expected, ((Map<?, ?>) elements.next()).get("file"));
+    }
+    assertFalse(elements.hasNext());
+  }
+
+  @Test
+  public void testParseArrayElements() throws IOException {
+    assertFileElements(ENTRIES + "]", "a.c", "b.c");
+    assertFileElements(" \n[]");
+    // elements are delivered one by one, those preceding a format error are not lost
+    assertFileElements(ENTRIES + ",,]", "a.c", "b.c", null);
+    assertFileElements(ENTRIES, "a.c", "b.c", null);
+    // the same through a reader
+    assertElements(new JSON().parseArrayElements(new JSON.ReaderSource(new StringReader(ENTRIES + "]"))), "a.c",
+        "b.c");
+    assertElements(new JSON().parseArrayElements(new JSON.ReaderSource(new StringReader(ENTRIES + ",,]"))), "a.c",
+        "b.c", null);
+  }
+
+  @Test
+  public void testParseArrayElements_noArray() throws IOException {
+    Path file = Files.createTempFile("compile_commands", ".json");
+    try {
+      Files.write(file, "{\"file\":\"a.c\"}".getBytes(StandardCharsets.UTF_8));
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        assertNull(new JSON().parseArrayElements(CompileCommandsJsonParser.createJsonSource(channel)));
+      }
+    } finally {
+      Files.delete(file);
+    }
+    assertNull(new JSON().parseArrayElements(new JSON.ReaderSource(new StringReader(""))));
+  }
+
+  private static ICLanguageSettingEntry include(String path) {
+    return CDataUtil.createCIncludePathEntry(path, 0);
+  }
+
+  /**
+   * Processes a compile_commands.json entry the way the parser does: if the entry changed, its settings entries are
+   * appended to those of the source file.
+   *
+   * @return whether the entry was unchanged
+   */
+  private static boolean process(ParseContext ctx, TimestampedLanguageSettingsStorage store, String rcPath, long hash,
+      ICLanguageSettingEntry... entries) {
+    if (ctx.isEntryUnchanged(rcPath, hash))
+      return true;
+    List<ICLanguageSettingEntry> list = new ArrayList<>();
+    List<ICLanguageSettingEntry> current = store.getSettingEntries(rcPath, LANG);
+    if (current != null)
+      list.addAll(current);
+    list.addAll(Arrays.asList(entries));
+    if (entries.length > 0)
+      store.setSettingEntries(rcPath, LANG, list);
+    ctx.addEntryFingerprint(rcPath, new EntryFingerprint(hash, LANG, entries.length));
+    return false;
+  }
+
+  @Test
+  public void testParseContext_retention() {
+    final ICLanguageSettingEntry a = include("/a");
+    final ICLanguageSettingEntry b = include("/b");
+    final ICLanguageSettingEntry m1 = include("/m1");
+    final ICLanguageSettingEntry m2 = include("/m2");
+    final ICLanguageSettingEntry m3 = include("/m3");
+    TimestampedLanguageSettingsStorage store = new TimestampedLanguageSettingsStorage();
+
+    // first parse: everything is new
+    ParseContext ctx = new ParseContext(null, store, true, null, null);
+    assertFalse(process(ctx, store, "a.c", 1, a));
+    assertFalse(process(ctx, store, "b.c", 2, b));
+    assertFalse(process(ctx, store, "m.c", 3, m1));
+    assertFalse(process(ctx, store, "m.c", 4, m2));
+    assertFalse(process(ctx, store, "d.c", 5, include("/d")));
+    ctx.finish(true);
+    assertEquals(new HashSet<>(Arrays.asList("a.c", "b.c", "m.c", "d.c")), ctx.modifiedFiles);
+    assertEquals(Arrays.asList(m1, m2), store.getSettingEntries("m.c", LANG));
+
+    // second parse: b.c changed without effect, the 2nd entry of m.c changed, d.c vanished
+    ctx = new ParseContext(null, store, true, null, null);
+    assertTrue(process(ctx, store, "a.c", 1, a));
+    assertFalse(process(ctx, store, "b.c", 6, b));
+    assertTrue(process(ctx, store, "m.c", 3, m1));
+    assertFalse(process(ctx, store, "m.c", 7, m3));
+    ctx.finish(true);
+    assertEquals(Collections.singletonList(a), store.getSettingEntries("a.c", LANG));
+    assertEquals(Collections.singletonList(b), store.getSettingEntries("b.c", LANG));
+    assertEquals(Arrays.asList(m1, m3), store.getSettingEntries("m.c", LANG));
+    assertNull(store.getSettingEntries("d.c", LANG));
+    assertEquals(new HashSet<>(Arrays.asList("m.c", "d.c")), ctx.modifiedFiles);
+
+    // incomplete parse: the files not reached keep their settings
+    ctx = new ParseContext(null, store, true, null, null);
+    assertTrue(process(ctx, store, "a.c", 1, a));
+    ctx.finish(false);
+    assertTrue(ctx.modifiedFiles.isEmpty());
+    assertEquals(Collections.singletonList(b), store.getSettingEntries("b.c", LANG));
+    assertEquals(Arrays.asList(m1, m3), store.getSettingEntries("m.c", LANG));
+
+    // complete parse: the trailing entry of m.c and b.c vanished
+    ctx = new ParseContext(null, store, true, null, null);
+    assertTrue(process(ctx, store, "a.c", 1, a));
+    assertTrue(process(ctx, store, "m.c", 3, m1));
+    ctx.finish(true);
+    assertEquals(Collections.singletonList(m1), store.getSettingEntries("m.c", LANG));
+    assertNull(store.getSettingEntries("b.c", LANG));
+    assertEquals(new HashSet<>(Arrays.asList("m.c", "b.c")), ctx.modifiedFiles);
+  }
+
+  @Test
+  public void testCompact() {
+    final List<ICLanguageSettingEntry> l1 = Arrays.asList(include("/inc1"), include("/inc2"));
+    final List<ICLanguageSettingEntry> l2 = Collections.singletonList(include("/inc3"));
+    final List<ICLanguageSettingEntry> l3 = Collections.singletonList(include("/inc4"));
+    TimestampedLanguageSettingsStorage store = new TimestampedLanguageSettingsStorage();
+    store.setSettingEntries("src/a.c", LANG, l1);
+    store.setSettingEntries("src/b.c", LANG, l1);
+    store.setSettingEntries("src/c.c", LANG, l2);
+    store.setSettingEntries("src/sub/d.c", LANG, l1);
+    store.setSettingEntries("src/sub/e.c", LANG, l3);
+    store.setSettingEntries("src/sub/f.c", LANG, l3);
+    store.setSettingEntries("src/deep/h.c", LANG, l1);
+    store.setSettingEntries("src/deep/i.c", LANG, l1);
+    store.setSettingEntries("lib/g.c", LANG, l1);
+    store.setSettingEntries("x.c", LANG, l1);
+    store.setSettingEntries("src/a.cpp", LANG_CXX, l1);
+    store.setSettingEntries(null, LANG, l2);
+
+    store.compact();
+    // the most common list of a folder is hoisted, unless inherited from the parent folder already
+    Map<String, List<ICLanguageSettingEntry>> folders = new HashMap<>();
+    folders.put("src", l1);
+    folders.put("src/sub", l3);
+    assertEquals(Collections.singletonMap(LANG, folders), store.copyFolderEntries());
+    assertCompacted(store, l1, l2, l3);
+
+    // inherited entries are resolved with the folders of the last compaction
+    store.compact();
+    assertEquals(Collections.singletonMap(LANG, folders), store.copyFolderEntries());
+    assertCompacted(store, l1, l2, l3);
+
+    // changed files move the shared list
+    store.setSettingEntries("src/a.c", LANG, l2);
+    store.setSettingEntries("src/b.c", LANG, null);
+    store.compact();
+    folders.put("src", l2);
+    folders.put("src/deep", l1);
+    assertEquals(Collections.singletonMap(LANG, folders), store.copyFolderEntries());
+    assertEquals(l2, store.getSettingEntries("src/a.c", LANG));
+    assertNull(store.getSettingEntries("src/b.c", LANG));
+    assertEquals(l1, store.getSettingEntries("src/deep/h.c", LANG));
+    assertEquals(l1, store.getSettingEntries("src/sub/d.c", LANG));
+    assertEquals(l3, store.getSettingEntries("src/sub/e.c", LANG));
+  }
+
+  /** Asserts that compaction did not change the effective entries of the files set up by {@link #testCompact}. */
+  private static void assertCompacted(TimestampedLanguageSettingsStorage store, List<ICLanguageSettingEntry> l1,
+      List<ICLanguageSettingEntry> l2, List<ICLanguageSettingEntry> l3) {
+    for (String rcPath : Arrays.asList("src/a.c", "src/b.c", "src/sub/d.c", "src/deep/h.c", "src/deep/i.c", "lib/g.c",
+        "x.c")) {
+      assertEquals(rcPath, l1, store.getSettingEntries(rcPath, LANG));
+    }
+    assertEquals(l2, store.getSettingEntries("src/c.c", LANG));
+    assertEquals(l3, store.getSettingEntries("src/sub/e.c", LANG));
+    assertEquals(l3, store.getSettingEntries("src/sub/f.c", LANG));
+    assertEquals(l1, store.getSettingEntries("src/a.cpp", LANG_CXX));
+    assertNull(store.getSettingEntries("src/a.cpp", LANG));
+    // project-level entries are never hoisted
+    assertEquals(l2, store.getSettingEntries(null, LANG));
+  }
+
+  /** Creates a configuration description that knows its id only, which is all a built-ins detector asks for here. */
+  private static ICConfigurationDescription createCfgDescription(String id) {
+    return (ICConfigurationDescription) Proxy.newProxyInstance(CompileCommandsJsonParserTest.class.getClassLoader(),
+        new Class<?>[] { ICConfigurationDescription.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+          case "getId":
+            return id;
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          default:
+            return null;
+          }
+        });
+  }
+
+  @Test
+  public void testSnapshotRoundTrip() throws IOException {
+    final ICConfigurationDescription cfgDescription = createCfgDescription("cfg.id");
+    final ICLanguageSettingEntry inc = include("/home/j\u00fcrgen/inc");
+    final ICLanguageSettingEntry builtin = CDataUtil.createCIncludePathEntry("/usr/include",
+        ICSettingEntry.BUILTIN | ICSettingEntry.READONLY);
+    final ICLanguageSettingEntry macro = CDataUtil.createCMacroEntry("FOO", "1", 0);
+    final ICLanguageSettingEntry emptyMacro = CDataUtil.createCMacroEntry("BAR", "", 0);
+    TimestampedLanguageSettingsStorage store = new TimestampedLanguageSettingsStorage();
+    ParseContext ctx = new ParseContext(null, store, true, null, null);
+    process(ctx, store, "src/a.c", 1, inc, macro);
+    process(ctx, store, "src/b.c", 2, inc, macro);
+    process(ctx, store, "src/c.c", 3, builtin, emptyMacro);
+    // an entry that contributed no settings
+    process(ctx, store, "src/c.c", 4);
+    ctx.finish(true);
+    store.setSettingEntries(null, LANG, Collections.singletonList(inc));
+    store.compact();
+    CompilerBuiltinsDetector detector = new CompilerBuiltinsDetector(cfgDescription, LANG, BuiltinDetectionType.GCC,
+        "/usr/bin/cc", Arrays.asList("-std=c11", "-m32"));
+    store.addBuiltinsDetector(detector, "src/a.c");
+    store.addBuiltinsDetector(detector, "src/b.c");
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      store.writeEntries(out);
+    }
+    TimestampedLanguageSettingsStorage restored = new TimestampedLanguageSettingsStorage();
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      restored.readEntries(in, cfgDescription);
+      assertEquals(-1, in.read());
+    }
+    // includes the folder entries and the files inheriting these
+    assertFalse(restored.copyFolderEntries().isEmpty());
+    assertEquals(store, restored);
+    for (String rcPath : Arrays.asList("src/a.c", "src/b.c", "src/c.c", null)) {
+      assertEquals(store.getSettingEntries(rcPath, LANG), restored.getSettingEntries(rcPath, LANG));
+    }
+    assertEquals(ICSettingEntry.BUILTIN | ICSettingEntry.READONLY,
+        restored.getSettingEntries("src/c.c", LANG).get(0).getFlags());
+    assertEquals(store.getBuiltinsDetectors(), restored.getBuiltinsDetectors());
+
+    // the fingerprints are restored, unchanged entries need not be parsed again
+    ctx = new ParseContext(null, restored, true, null, null);
+    assertTrue(process(ctx, restored, "src/a.c", 1));
+    assertTrue(process(ctx, restored, "src/c.c", 3));
+    assertTrue(process(ctx, restored, "src/c.c", 4));
+    assertFalse(process(ctx, restored, "src/b.c", 5, inc));
+
+    // a truncated snapshot is rejected
+    byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(truncated))) {
+      new TimestampedLanguageSettingsStorage().readEntries(in, cfgDescription);
+      fail("truncated snapshot not detected");
+    } catch (IOException expected) {
+    }
+  }
+
+  private static String key(String line, String sourceFile) {
+    return CompileCommandsJsonParser.getCommandLineKey(CWD, line, sourceFile);
+  }
+
+  @Test
+  public void testGetCommandLineKey() {
+    // output files, dependency files and the source file do not matter
+    String k = key("cc -DFOO -I/inc -o a.o -MF a.d -MT a.o -MQ a.o -c /src/a.c", "/src/a.c");
+    assertNotNull(k);
+    assertEquals(k, key("cc -DFOO -I/inc -o b.o -MF b.d -MT b.o -MQ b.o -c /src/b.c", "/src/b.c"));
+    assertEquals(k, key("cc -c -DFOO -I/inc /src/sub/c.c -o c.o", "/src/sub/c.c"));
+    assertEquals(key("cc -DFOO -MFa.d -c a.c", "a.c"), key("cc -DFOO -MFb.d -c b.c", "b.c"));
+    assertEquals(key("cl /DFOO /Foa.obj /c C:\\src\\a.c", "C:\\src\\a.c"),
+        key("cl /DFOO -Fob.obj /c C:\\src\\b.c", "C:\\src\\b.c"));
+    // runs of whitespace do not matter
+    assertEquals(k, key("cc  -DFOO\t-I/inc   -c /src/a.c", "/src/a.c"));
+
+    // options and their order matter
+    assertFalse(k.equals(key("cc -DBAR -I/inc -c /src/a.c", "/src/a.c")));
+    assertFalse(k.equals(key("cc -I/inc -DFOO -c /src/a.c", "/src/a.c")));
+    assertFalse(k.equals(key("c++ -DFOO -I/inc -c /src/a.c", "/src/a.c")));
+    // the working directory matters, relative paths depend on it
+    assertFalse(k.equals(CompileCommandsJsonParser.getCommandLineKey(new org.eclipse.core.runtime.Path("/other"),
+        "cc -DFOO -I/inc -c /src/a.c", "/src/a.c")));
+    // other file arguments matter
+    assertFalse(key("cc -c a.c b.o", "a.c").equals(key("cc -c a.c c.o", "a.c")));
+  }
+
+  @Test
+  public void testGetCommandLineKey_quoted() {
+    // tokenizing these would require the shell's rules
+    assertNull(key("cc \"-DFOO=a b\" -c a.c", "a.c"));
+    assertNull(key("cc '-DFOO=a b' -c a.c", "a.c"));
+    assertNull(key("cc -I/my\\ dir -c a.c", "a.c"));
+    // arguments from the json file are tokenized already
+    String k = CompileCommandsJsonParser.getCommandLineKey(CWD, Arrays.asList("cc", "-DFOO=\"a b\"", "-o", "a.o",
+        "-c", "a.c"), "a.c");
+    assertEquals(k, CompileCommandsJsonParser.getCommandLineKey(CWD, Arrays.asList("cc", "-DFOO=\"a b\"", "-o",
+        "b.o", "-c", "b.c"), "b.c"));
+    assertFalse(k.equals(CompileCommandsJsonParser.getCommandLineKey(CWD, Arrays.asList("cc", "-DFOO=a", "b", "-c",
+        "a.c"), "a.c")));
+  }
+
+  /**
+   * Rewrites a response file, with a time-stamp distinct from the last write regardless of the file system's time-stamp
+   * resolution.
+   */
+  private static void rewrite(Path file, String content, long lastModified) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+  }
+
+  /**
+   * Processes the specified command line in the specified parse, if its fingerprint changed.
+   *
+   * @return whether the entry was unchanged
+   */
+  private static boolean processCommandLine(ParseContext ctx, TimestampedLanguageSettingsStorage store, Path cwd,
+      String cmdLine) {
+    final ResponseFileCache responseFiles = new ResponseFileCache();
+    final long hash = CompileCommandsJsonParser.fingerprint(cwd.toString(), cmdLine, null, responseFiles);
+    final ParserDetection.ParserDetectionResult pdr = ParserDetection.determineDetector(cmdLine, null, true);
+    final List<ICLanguageSettingEntry> entries = pdr.getDetectorWithMethod().getDetector().getParser()
+        .processArgs(new org.eclipse.core.runtime.Path(cwd.toString()), pdr.getReducedCommandLine(), responseFiles);
+    return process(ctx, store, "a.c", hash, entries.toArray(new ICLanguageSettingEntry[entries.size()]));
+  }
+
+  /** Gets the names of the settings entries of the specified source file. */
+  private static List<String> names(TimestampedLanguageSettingsStorage store, String rcPath) {
+    List<String> names = new ArrayList<>();
+    for (ICLanguageSettingEntry entry : store.getSettingEntries(rcPath, LANG)) {
+      names.add(entry.getName());
+    }
+    return names;
+  }
+
+  @Test
+  public void testFingerprint_responseFile() throws IOException {
+    final Path dir = Files.createTempDirectory("rsp");
+    final Path rsp = dir.resolve("includes_C.rsp");
+    final Path nested = dir.resolve("defines_C.rsp");
+    final long now = System.currentTimeMillis() / 1000 * 1000;
+    try {
+      rewrite(rsp, "-I/inc1 @defines_C.rsp", now - 30000);
+      rewrite(nested, "-DFOO", now - 30000);
+      final String cmdLine = "/usr/bin/cc @includes_C.rsp -o a.o -c a.c";
+      TimestampedLanguageSettingsStorage store = new TimestampedLanguageSettingsStorage();
+      ParseContext ctx = new ParseContext(null, store, true, null, null);
+      assertFalse(processCommandLine(ctx, store, dir, cmdLine));
+      ctx.finish(true);
+      assertEquals(Arrays.asList("/inc1", "FOO"), names(store, "a.c"));
+
+      // unchanged response files
+      ctx = new ParseContext(null, store, true, null, null);
+      assertTrue(processCommandLine(ctx, store, dir, cmdLine));
+      ctx.finish(true);
+
+      // the build tool rewrote the response file only
+      rewrite(rsp, "-I/inc2 @defines_C.rsp", now - 20000);
+      ctx = new ParseContext(null, store, true, null, null);
+      assertFalse(processCommandLine(ctx, store, dir, cmdLine));
+      ctx.finish(true);
+      assertEquals(Arrays.asList("/inc2", "FOO"), names(store, "a.c"));
+      assertEquals(Collections.singleton("a.c"), ctx.modifiedFiles);
+
+      // a nested response file changed
+      rewrite(nested, "-DBAR", now - 10000);
+      ctx = new ParseContext(null, store, true, null, null);
+      assertFalse(processCommandLine(ctx, store, dir, cmdLine));
+      ctx.finish(true);
+      assertEquals(Arrays.asList("/inc2", "BAR"), names(store, "a.c"));
+
+      // a response file vanished
+      long hash = CompileCommandsJsonParser.fingerprint(dir.toString(), cmdLine, null, new ResponseFileCache());
+      Files.delete(nested);
+      assertFalse(hash == CompileCommandsJsonParser.fingerprint(dir.toString(), cmdLine, null,
+          new ResponseFileCache()));
+
+      // the arguments form
+      final List<String> args = Arrays.asList("/usr/bin/cc", "@includes_C.rsp", "-o", "a.o", "-c", "a.c");
+      hash = CompileCommandsJsonParser.fingerprint(dir.toString(), null, args, new ResponseFileCache());
+      assertEquals(hash, CompileCommandsJsonParser.fingerprint(dir.toString(), null, args, new ResponseFileCache()));
+      rewrite(rsp, "-I/inc3", now);
+      assertFalse(hash == CompileCommandsJsonParser.fingerprint(dir.toString(), null, args, new ResponseFileCache()));
+    } finally {
+      Files.deleteIfExists(rsp);
+      Files.deleteIfExists(nested);
+      Files.delete(dir);
+    }
+  }
+}
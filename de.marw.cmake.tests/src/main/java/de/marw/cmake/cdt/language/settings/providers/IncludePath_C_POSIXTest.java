@@ -195,4 +195,31 @@ public class IncludePath_C_POSIXTest {
     String absPath = cwd.append(name).toString();
     assertEquals("name", absPath, parsed.getName());
   }
+
+  /**
+   * Test method for
+   * {@link de.marw.cmake.cdt.language.settings.providers.ToolArgumentParsers.IncludePath_C_POSIX#processArgument(java.util.List, IPath, java.lang.CharSequence, int)}
+   * .
+   */
+  @Test
+  public final void testProcessArgument_Offset() {
+    final String head = "-g -MMD ";
+    final String more = " -o CMakeFiles/execut1.dir/util1.c.o -c /testprojects/C-subsrc/src/src-sub/main1.c";
+    List<ICLanguageSettingEntry> entries = new ArrayList<>();
+    ICLanguageSettingEntry parsed;
+
+    String name = "/an/Include/Path";
+    IPath cwd = new Path("");
+    // -I/an/Include/Path
+    assertEquals(2 + name.length(),
+        testee.processArgument(entries, cwd, head + "-I" + name + more, head.length()));
+    assertEquals("#entries", 1, entries.size());
+    parsed = entries.get(0);
+    assertEquals("kind", ICSettingEntry.INCLUDE_PATH, parsed.getKind());
+    assertEquals("name", name, parsed.getName());
+    // not an include path at the offset
+    entries.clear();
+    assertEquals(0, testee.processArgument(entries, cwd, head + "-I" + name + more, 0));
+    assertEquals("#entries", 0, entries.size());
+  }
 }
@@ -12,6 +12,10 @@ package de.marw.cmake.cdt.language.settings.providers;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -162,4 +166,48 @@ public class ParserDetectionTest {
     assertEquals("org.eclipse.cdt.core.g++", result.getDetectorWithMethod().getDetector().getParser().getLanguageId());
   }
 
+
+  /**
+   * Test method for
+   * {@link de.marw.cmake.cdt.language.settings.providers.ParserDetectionCache#determineDetector(String, String,boolean)}
+   * .
+   */
+  @Test
+  public void testDetermineParserForCommandline_cached() throws IOException {
+    // do not touch the cache file in the plugin state location
+    File cacheFile = File.createTempFile("parser_detection", ".bin");
+    cacheFile.delete();
+    ParserDetectionCache.setCacheFile(cacheFile);
+    try {
+      ParserDetection.ParserDetectionResult result = ParserDetectionCache
+          .determineDetector("/usr/bin/arm-none-eabi-g++ -C blah.c", null, false);
+      assertNotNull(result);
+      assertEquals("C++", "org.eclipse.cdt.core.g++", result.getDetectorWithMethod().getDetector().getParser().getLanguageId());
+      assertEquals("/usr/bin/arm-none-eabi-g++", result.getCommandLine().getCommand());
+      assertEquals(" -C blah.c", result.getCommandLine().getArguments());
+
+      // same executable, served from the cache
+      result = ParserDetectionCache.determineDetector("/usr/bin/arm-none-eabi-g++ -I/inc -C blah2.c", null, false);
+      assertNotNull(result);
+      assertEquals("C++", "org.eclipse.cdt.core.g++", result.getDetectorWithMethod().getDetector().getParser().getLanguageId());
+      assertEquals(" -I/inc -C blah2.c", result.getCommandLine().getArguments());
+
+      // other executable
+      result = ParserDetectionCache.determineDetector("/usr/bin/arm-none-eabi-gcc -C blah.c", null, false);
+      assertNotNull(result);
+      assertEquals("C", "org.eclipse.cdt.core.gcc", result.getDetectorWithMethod().getDetector().getParser().getLanguageId());
+
+      // persisted and read back
+      ParserDetectionCache.save();
+      assertTrue("cache file written", cacheFile.isFile());
+      ParserDetectionCache.setCacheFile(cacheFile);
+      result = ParserDetectionCache.determineDetector("/usr/bin/arm-none-eabi-g++ -C blah3.c", null, false);
+      assertNotNull(result);
+      assertEquals("C++", "org.eclipse.cdt.core.g++", result.getDetectorWithMethod().getDetector().getParser().getLanguageId());
+      assertEquals(" -C blah3.c", result.getCommandLine().getArguments());
+    } finally {
+      ParserDetectionCache.setCacheFile(null);
+      cacheFile.delete();
+    }
+  }
 }
@@ -17,6 +17,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
@@ -121,4 +122,139 @@ public class ToolCommandlineParserTest {
     assertEquals("kind", ICSettingEntry.INCLUDE_PATH, parsed.getKind());
     assertEquals("name", name, parsed.getName());
   }
+
+  /**
+   * Test for an already tokenized command-line, as in the 'arguments' form of compile_commands.json.
+   */
+  @Test
+  public final void testProcessArgs_tokenized() throws Exception {
+    ToolCommandlineParser testee = new ToolCommandlineParser("egal", new ResponseFileArgumentParsers.At(),
+        BuiltinDetectionType.NONE, new ToolArgumentParsers.IncludePath_C_POSIX(),
+        new ToolArgumentParsers.MacroDefine_C_POSIX(), new ToolArgumentParsers.MacroUndefine_C_POSIX());
+
+    final IPath cwd = new Path("/build");
+    final List<String> args = Arrays.asList("-I", "/an/Include Path", "-Irel/dir", "-DNAME=a \"quoted\" value",
+        "-D", "FUNC(a,b)=a+b", "-UUNDEF", "-g", "-o", "CMakeFiles/execut1.dir/main.c.o", "-c",
+        "/testprojects/src/main.c");
+    List<ICLanguageSettingEntry> entries = testee.processArgs(cwd, args);
+    assertEquals("#entries", 5, entries.size());
+    ICLanguageSettingEntry parsed = entries.get(0);
+    assertEquals("kind", ICSettingEntry.INCLUDE_PATH, parsed.getKind());
+    assertEquals("name", "/an/Include Path", parsed.getName());
+    parsed = entries.get(1);
+    assertEquals("kind", ICSettingEntry.INCLUDE_PATH, parsed.getKind());
+    assertEquals("name", cwd.append("rel/dir").toOSString(), parsed.getName());
+    parsed = entries.get(2);
+    assertEquals("kind", ICSettingEntry.MACRO, parsed.getKind());
+    assertEquals("name", "NAME", parsed.getName());
+    assertEquals("value", "a \"quoted\" value", parsed.getValue());
+    parsed = entries.get(3);
+    assertEquals("kind", ICSettingEntry.MACRO, parsed.getKind());
+    assertEquals("name", "FUNC", parsed.getName());
+    assertEquals("value", "a+b", parsed.getValue());
+    parsed = entries.get(4);
+    assertEquals("kind", ICSettingEntry.MACRO, parsed.getKind());
+    assertEquals("name", "UNDEF", parsed.getName());
+    assertEquals("flags", ICSettingEntry.UNDEFINED, (parsed.getFlags() & ICSettingEntry.UNDEFINED));
+
+    // response file
+    final java.nio.file.Path rspP = Files.createTempFile("rfpt", ".txt");
+    try (PrintWriter rspFilePw = new PrintWriter(
+        Files.newOutputStream(rspP, StandardOpenOption.WRITE, StandardOpenOption.CREATE));) {
+      rspFilePw.print(" -Ddef1=234 -I/an/include/dir");
+    }
+    entries = testee.processArgs(cwd, Arrays.asList("@" + rspP.toString(), "-DDEF_ON_COMMANDLINE"));
+    assertEquals("#entries", 3, entries.size());
+    assertEquals("name", "def1", entries.get(0).getName());
+    assertEquals("name", "/an/include/dir", entries.get(1).getName());
+    assertEquals("name", "DEF_ON_COMMANDLINE", entries.get(2).getName());
+    Files.delete(rspP);
+  }
+
+  /**
+   * Test for the dispatch of arguments to the parser with the longest matching option name.
+   */
+  @Test
+  public final void testProcessArgs_dispatch() throws Exception {
+    // registered in an order where the parser with the shorter option name comes first
+    ToolCommandlineParser testee = new ToolCommandlineParser("egal", null, BuiltinDetectionType.NONE,
+        new ToolArgumentParsers.SystemIncludePath_C(), new ToolArgumentParsers.SystemIncludePath_nvcc(),
+        new ToolArgumentParsers.IncludePath_C_POSIX());
+
+    final IPath cwd = new Path("");
+    List<ICLanguageSettingEntry> entries = testee.processArgs(cwd,
+        "-c -isystem=/an/nvcc/dir -Wall -isystem /a/sys/dir -fPIC -I/an/Include/Path main.cu");
+    assertEquals("#entries", 3, entries.size());
+    assertEquals("name", "/an/nvcc/dir", entries.get(0).getName());
+    assertEquals("name", "/a/sys/dir", entries.get(1).getName());
+    assertEquals("name", "/an/Include/Path", entries.get(2).getName());
+  }
+
+  /**
+   * Test for response files shared by several command-lines.
+   */
+  @Test
+  public final void testResponseFileArgumentParser_At_cached() throws Exception {
+    ToolCommandlineParser testee = new ToolCommandlineParser("egal", new ResponseFileArgumentParsers.At(),
+        BuiltinDetectionType.NONE, new ToolArgumentParsers.IncludePath_C_POSIX(),
+        new ToolArgumentParsers.MacroDefine_C_POSIX());
+    final ResponseFileCache cache = new ResponseFileCache();
+
+    final java.nio.file.Path rspP = Files.createTempFile("rfpt", ".rsp");
+    final IPath cwd = new Path(rspP.getParent().toString());
+    try (PrintWriter rspFilePw = new PrintWriter(
+        Files.newOutputStream(rspP, StandardOpenOption.WRITE, StandardOpenOption.CREATE));) {
+      rspFilePw.print(" -Ddef1=234 -I/an/include/dir");
+    }
+    final String args = "@" + rspP.getFileName() + " -c main.c";
+    List<ICLanguageSettingEntry> entries = testee.processArgs(cwd, args, cache);
+    assertEquals("#entries", 2, entries.size());
+    assertEquals("name", "def1", entries.get(0).getName());
+    assertEquals("name", "/an/include/dir", entries.get(1).getName());
+    // second command-line, entries from the cache
+    entries = testee.processArgs(cwd, "-DDEF_ON_COMMANDLINE " + args, cache);
+    assertEquals("#entries", 3, entries.size());
+    assertEquals("name", "DEF_ON_COMMANDLINE", entries.get(0).getName());
+    assertEquals("name", "def1", entries.get(1).getName());
+    assertEquals("name", "/an/include/dir", entries.get(2).getName());
+
+    // modified response file
+    try (PrintWriter rspFilePw = new PrintWriter(Files.newOutputStream(rspP, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING));) {
+      rspFilePw.print(" -Ddef2");
+    }
+    entries = testee.processArgs(cwd, args, cache);
+    assertEquals("#entries", 1, entries.size());
+    assertEquals("name", "def2", entries.get(0).getName());
+
+    // nested response file that references the outer file again
+    final java.nio.file.Path nestedP = Files.createTempFile(rspP.getParent(), "rfpt", ".rsp");
+    try (PrintWriter rspFilePw = new PrintWriter(Files.newOutputStream(nestedP, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING));) {
+      rspFilePw.print(" -Dnested @" + rspP.getFileName());
+    }
+    try (PrintWriter rspFilePw = new PrintWriter(Files.newOutputStream(rspP, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING));) {
+      rspFilePw.print(" -Ddef3 @" + nestedP.getFileName() + " -I/an/include/dir");
+    }
+    for (int i = 0; i < 2; i++) {
+      entries = testee.processArgs(cwd, args, cache);
+      assertEquals("#entries", 3, entries.size());
+      assertEquals("name", "def3", entries.get(0).getName());
+      assertEquals("name", "nested", entries.get(1).getName());
+      assertEquals("name", "/an/include/dir", entries.get(2).getName());
+    }
+    // the nested file on its own
+    entries = testee.processArgs(cwd, "@" + nestedP.getFileName(), cache);
+    assertEquals("#entries", 3, entries.size());
+    assertEquals("name", "nested", entries.get(0).getName());
+    assertEquals("name", "def3", entries.get(1).getName());
+    assertEquals("name", "/an/include/dir", entries.get(2).getName());
+    // without cache
+    entries = testee.processArgs(cwd, args, null);
+    assertEquals("#entries", 3, entries.size());
+    assertEquals("name", "nested", entries.get(1).getName());
+    Files.delete(nestedP);
+    Files.delete(rspP);
+  }
 }
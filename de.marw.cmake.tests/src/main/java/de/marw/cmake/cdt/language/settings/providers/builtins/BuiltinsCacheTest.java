@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package de.marw.cmake.cdt.language.settings.providers.builtins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.core.settings.model.ICSettingEntry;
+import org.eclipse.cdt.core.settings.model.util.CDataUtil;
+import org.junit.Test;
+
+/**
+ * @author Martin Weber
+ */
+public class BuiltinsCacheTest {
+
+  /**
+   * Test method for {@link BuiltinsCache#get(String)} and {@link BuiltinsCache#put(String, List)}.
+   */
+  @Test
+  public void testGetPut() throws IOException {
+    // do not touch the cache file in the plugin state location
+    File cacheFile = File.createTempFile("compiler_builtins", ".bin");
+    cacheFile.delete();
+    BuiltinsCache.setCacheFile(cacheFile);
+    try {
+      final List<ICLanguageSettingEntry> detected = Arrays.asList(
+          CDataUtil.createCIncludePathEntry("/usr/include", ICSettingEntry.BUILTIN | ICSettingEntry.READONLY),
+          CDataUtil.createCMacroEntry("__GNUC__", "7", ICSettingEntry.BUILTIN | ICSettingEntry.READONLY));
+      assertNull(BuiltinsCache.get("gcc"));
+      BuiltinsCache.put("gcc", detected);
+      BuiltinsCache.put("cc", Collections.emptyList());
+      assertEquals(detected, BuiltinsCache.get("gcc"));
+      assertTrue("silent failure", BuiltinsCache.get("cc").isEmpty());
+      assertNull(BuiltinsCache.get("g++"));
+
+      // persisted and read back
+      BuiltinsCache.save();
+      assertTrue("cache file written", cacheFile.isFile());
+      BuiltinsCache.setCacheFile(cacheFile);
+      assertEquals(detected, BuiltinsCache.get("gcc"));
+      final List<ICLanguageSettingEntry> empty = BuiltinsCache.get("cc");
+      assertNotNull(empty);
+      assertTrue("silent failure", empty.isEmpty());
+      assertNull(BuiltinsCache.get("g++"));
+    } finally {
+      BuiltinsCache.setCacheFile(null);
+      cacheFile.delete();
+    }
+  }
+
+  /**
+   * Test method for {@link CompilerBuiltinsDetector#getBinaryKey(String, String[])}.
+   */
+  @Test
+  public void testGetBinaryKey() throws IOException {
+    Path binary = Files.createTempFile("cc", ".bin");
+    try {
+      Files.write(binary, "compiler".getBytes(StandardCharsets.UTF_8));
+      binary.toFile().setLastModified(1000000000000L);
+      final String[] env = { "PATH=" + binary.getParent() };
+      final String key = CompilerBuiltinsDetector.getBinaryKey(binary.toString(), env);
+      assertNotNull(key);
+      assertEquals("unchanged", key, CompilerBuiltinsDetector.getBinaryKey(binary.toString(), env));
+      assertNotNull("found in PATH", CompilerBuiltinsDetector.getBinaryKey(binary.getFileName().toString(), env));
+
+      // same size, other time
+      binary.toFile().setLastModified(1000000002000L);
+      final String key2 = CompilerBuiltinsDetector.getBinaryKey(binary.toString(), env);
+      assertFalse("modified", key.equals(key2));
+
+      // other size, same time
+      Files.write(binary, "-v2".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+      binary.toFile().setLastModified(1000000002000L);
+      assertFalse("resized", key2.equals(CompilerBuiltinsDetector.getBinaryKey(binary.toString(), env)));
+
+      Files.delete(binary);
+      assertNull("missing", CompilerBuiltinsDetector.getBinaryKey(binary.toString(), env));
+    } finally {
+      Files.deleteIfExists(binary);
+    }
+  }
+
+  /**
+   * Test method for {@link CompilerBuiltinsDetector#getCacheKey(String, List, String[])}.
+   */
+  @Test
+  public void testGetCacheKey() {
+    final List<String> args = Arrays.asList("-E", "-P", "-dM", "-Wp,-v", "-std=c++11");
+    final String key = CompilerBuiltinsDetector.getCacheKey("gcc",
+        args, new String[] { "PATH=/usr/bin", "CPATH=/opt/inc", "HOME=/home/me" });
+
+    // environment order and irrelevant variables do not matter
+    assertEquals(key, CompilerBuiltinsDetector.getCacheKey("gcc", args,
+        new String[] { "LANG=C", "CPATH=/opt/inc", "PATH=/usr/bin", "HOME=/home/you" }));
+    // relevant variables do
+    assertFalse("CPATH", key.equals(CompilerBuiltinsDetector.getCacheKey("gcc", args,
+        new String[] { "PATH=/usr/bin", "CPATH=/opt/inc2", "HOME=/home/me" })));
+    assertFalse("C_INCLUDE_PATH", key.equals(CompilerBuiltinsDetector.getCacheKey("gcc", args,
+        new String[] { "PATH=/usr/bin", "CPATH=/opt/inc", "C_INCLUDE_PATH=/opt/c" })));
+    // so do the compiler and the arguments
+    assertFalse("compiler", key.equals(CompilerBuiltinsDetector.getCacheKey("clang", args,
+        new String[] { "PATH=/usr/bin", "CPATH=/opt/inc" })));
+    assertFalse("arguments", key.equals(CompilerBuiltinsDetector.getCacheKey("gcc",
+        Arrays.asList("-E", "-P", "-dM", "-Wp,-v", "-std=c++14"), new String[] { "PATH=/usr/bin", "CPATH=/opt/inc" })));
+  }
+}
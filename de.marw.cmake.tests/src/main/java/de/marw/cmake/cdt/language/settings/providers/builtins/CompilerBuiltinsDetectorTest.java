@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package de.marw.cmake.cdt.language.settings.providers.builtins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Martin Weber
+ *
+ */
+public class CompilerBuiltinsDetectorTest {
+
+  @Test
+  public void testGetSignatureFlags_gcc() {
+    List<String> args = Arrays.asList("/usr/bin/c++", "-DFOO", "-I/usr/include/bar", "-std=c++11", "-O2", "-m32",
+        "-march=native", "-fopenmp", "-target", "arm-none-eabi", "\"-stdlib=libc++\"", "-o", "a.o", "-c", "a.cpp");
+    List<String> flags = CompilerBuiltinsDetector.getSignatureFlags(BuiltinDetectionType.GCC, args);
+    assertEquals(Arrays.asList("-std=c++11", "-m32", "-march=native", "-fopenmp", "-target", "arm-none-eabi",
+        "-stdlib=libc++"), flags);
+
+    // no flags
+    flags = CompilerBuiltinsDetector.getSignatureFlags(BuiltinDetectionType.GCC_MAYBE,
+        Arrays.asList("cc", "-DFOO", "-c", "a.c"));
+    assertTrue(flags.isEmpty());
+  }
+
+  @Test
+  public void testGetSignatureFlags_nvcc() {
+    List<String> args = Arrays.asList("nvcc", "-std=c++14", "-m64", "-Xcompiler", "-fopenmp", "-c", "a.cu");
+    List<String> flags = CompilerBuiltinsDetector.getSignatureFlags(BuiltinDetectionType.NVCC, args);
+    assertEquals(Arrays.asList("-std=c++14", "-m64"), flags);
+  }
+
+  @Test
+  public void testGetSignatureFlags_unsupported() {
+    List<String> args = Arrays.asList("cl", "-std=c++14", "/c", "a.cpp");
+    assertTrue(CompilerBuiltinsDetector.getSignatureFlags(BuiltinDetectionType.CL, args).isEmpty());
+  }
+}
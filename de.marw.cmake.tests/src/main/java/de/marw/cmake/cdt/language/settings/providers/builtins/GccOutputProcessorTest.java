@@ -12,15 +12,18 @@
 package de.marw.cmake.cdt.language.settings.providers.builtins;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.core.settings.model.ICSettingEntry;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -84,4 +87,90 @@ public class GccOutputProcessorTest {
     assertEquals("# include paths", 5, inc);
     assertEquals("# macros", 238, macro);
   }
+
+  @Test
+  public void testProcessFile_bytewise() throws IOException {
+    // pass resource content byte-wise to the testee...
+    try (InputStream is = getClass().getResourceAsStream("cbd-gcc.output.txt");
+        OutputSniffer os = new OutputSniffer(testee, null)) {
+      int b;
+      while ((b = is.read()) != -1) {
+        os.write(b);
+      }
+    }
+
+    int inc = 0;
+    int macro = 0;
+    for (ICLanguageSettingEntry entry : entries) {
+      if (entry.getKind() == ICLanguageSettingEntry.INCLUDE_PATH) {
+        inc++;
+      } else if (entry.getKind() == ICLanguageSettingEntry.MACRO) {
+        macro++;
+        if ("__VERSION__".equals(entry.getName()))
+          assertEquals("value (" + entry.getName() + ")", "\"4.8.5\"", entry.getValue());
+      }
+    }
+    assertEquals("# include paths", 5, inc);
+    assertEquals("# macros", 238, macro);
+  }
+
+  /**
+   * Gets the entry of the specified kind and name.
+   */
+  private ICLanguageSettingEntry findEntry(int kind, String name) {
+    for (ICLanguageSettingEntry entry : entries) {
+      if (entry.getKind() == kind && name.equals(entry.getName()))
+        return entry;
+    }
+    return null;
+  }
+
+  @Test
+  public void testProcessFile_utf8Split() throws IOException {
+    final String output = "#include \"...\" search starts here:\r\n"
+        + " /home/j\u00fcrgen/inc\r\n"
+        + "#include <...> search starts here:\r\n"
+        + " /opt/\u4e16\u754c/include\r\n"
+        + " /usr/include\r\n"
+        + "End of search list.\r\n"
+        + "#define GREETING \"gr\u00fc\u00dfe \ud83d\ude00\"\r\n"
+        + "#define EMPTY\r\n"
+        + "#define LAST \u20ac";
+    final byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+    // split the multi-byte sequences at each possible position
+    for (int chunk = 1; chunk <= 5; chunk++) {
+      entries.clear();
+      testee = new GccOutputProcessor(entries);
+      try (OutputSniffer os = new OutputSniffer(testee, null)) {
+        for (int off = 0; off < bytes.length; off += chunk) {
+          os.write(bytes, off, Math.min(chunk, bytes.length - off));
+        }
+      }
+
+      final String msg = "chunk size " + chunk;
+      assertEquals(msg, 6, entries.size());
+      assertNotNull(msg, findEntry(ICSettingEntry.INCLUDE_PATH, "/home/j\u00fcrgen/inc"));
+      assertNotNull(msg, findEntry(ICSettingEntry.INCLUDE_PATH, "/opt/\u4e16\u754c/include"));
+      assertNotNull(msg, findEntry(ICSettingEntry.INCLUDE_PATH, "/usr/include"));
+      // CR of the line ends removed
+      assertEquals(msg, "\"gr\u00fc\u00dfe \ud83d\ude00\"", findEntry(ICSettingEntry.MACRO, "GREETING").getValue());
+      assertEquals(msg, "", findEntry(ICSettingEntry.MACRO, "EMPTY").getValue());
+      // last line without line end
+      assertEquals(msg, "\u20ac", findEntry(ICSettingEntry.MACRO, "LAST").getValue());
+    }
+  }
+
+  @Test
+  public void testProcessFile_incompleteAtClose() throws IOException {
+    final byte[] bytes = "#define A \u00e4\n#define B \u20ac".getBytes(StandardCharsets.UTF_8);
+    try (OutputSniffer os = new OutputSniffer(testee, null)) {
+      // omit the last byte of the euro sign
+      os.write(bytes, 0, bytes.length - 1);
+    }
+
+    assertEquals(2, entries.size());
+    assertEquals("\u00e4", findEntry(ICSettingEntry.MACRO, "A").getValue());
+    // the incomplete sequence is decoded as replacement character
+    assertEquals("\ufffd", findEntry(ICSettingEntry.MACRO, "B").getValue());
+  }
 }
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package org.eclipse.jetty.util.ajax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.eclipse.jetty.util.ajax.JSON.Utf8ByteBufferSource;
+import org.junit.Test;
+
+/**
+ * Tests for {@link JSON.Utf8ByteBufferSource}.
+ *
+ * @author Martin Weber
+ */
+public class Utf8ByteBufferSourceTest {
+
+  private static final String REPLACEMENT = "\ufffd";
+
+  private static Utf8ByteBufferSource source(int... bytes) {
+    byte[] buf = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      buf[i] = (byte) bytes[i];
+    }
+    return new Utf8ByteBufferSource(ByteBuffer.wrap(buf));
+  }
+
+  private static Utf8ByteBufferSource source(String s) {
+    return new Utf8ByteBufferSource(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /** Reads all characters from the specified source. */
+  private static String read(JSON.Source source) {
+    StringBuilder sb = new StringBuilder();
+    while (source.hasNext()) {
+      sb.append(source.next());
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testBom() {
+    assertEquals("a", read(source(0xEF, 0xBB, 0xBF, 'a')));
+    assertEquals("", read(source(0xEF, 0xBB, 0xBF)));
+    // only a leading BOM is skipped
+    assertEquals("a\ufeff", read(source('a', 0xEF, 0xBB, 0xBF)));
+    // an incomplete BOM is malformed input
+    assertEquals(REPLACEMENT, read(source(0xEF, 0xBB)));
+  }
+
+  @Test
+  public void testMultiByte() {
+    // 2-, 3- and 4-byte sequences
+    assertEquals("\u00e9", read(source(0xC3, 0xA9)));
+    assertEquals("\u20ac", read(source(0xE2, 0x82, 0xAC)));
+    assertEquals("\ud83d\ude00", read(source(0xF0, 0x9F, 0x98, 0x80)));
+    // boundaries of the ranges
+    String s = "\u007f\u0080\u07ff\u0800\uffff\ud800\udc00\udbff\udfff";
+    assertEquals(s, read(source(s)));
+    s = "/home/j\u00fcrgen/\u4e16\u754c/\ud83d\ude00.c";
+    assertEquals(s, read(source(s)));
+  }
+
+  @Test
+  public void testSurrogatePair() {
+    Utf8ByteBufferSource testee = source("\ud83d\ude00a");
+    assertTrue(testee.hasNext());
+    assertEquals('\ud83d', testee.peek());
+    assertEquals('\ud83d', testee.next());
+    // the low surrogate is pending, but not consumed by peek()
+    assertEquals('\ude00', testee.peek());
+    assertEquals('\ude00', testee.peek());
+    assertEquals('\ude00', testee.next());
+    assertEquals('a', testee.next());
+    assertFalse(testee.hasNext());
+  }
+
+  @Test
+  public void testMalformed() {
+    // overlong encodings
+    assertEquals(REPLACEMENT, read(source(0xC0, 0xAF)));
+    assertEquals(REPLACEMENT, read(source(0xE0, 0x80, 0xAF)));
+    assertEquals(REPLACEMENT, read(source(0xF0, 0x80, 0x80, 0xAF)));
+    // encoded surrogate
+    assertEquals(REPLACEMENT, read(source(0xED, 0xA0, 0x80)));
+    // beyond U+10FFFF
+    assertEquals(REPLACEMENT, read(source(0xF4, 0x90, 0x80, 0x80)));
+    // invalid lead bytes
+    assertEquals(REPLACEMENT + "a", read(source(0x80, 'a')));
+    assertEquals(REPLACEMENT + "a", read(source(0xFF, 'a')));
+    assertEquals(REPLACEMENT + "a", read(source(0xF8, 'a')));
+  }
+
+  @Test
+  public void testTruncated() {
+    // a truncated sequence does not swallow the next character
+    assertEquals(REPLACEMENT + "a", read(source(0xE2, 0x82, 'a')));
+    assertEquals(REPLACEMENT + "\u00e9", read(source(0xF0, 0x9F, 0xC3, 0xA9)));
+    // truncated at end of input
+    assertEquals("a" + REPLACEMENT, read(source('a', 0xE2, 0x82)));
+    assertEquals(REPLACEMENT, read(source(0xF0, 0x9F, 0x98)));
+    assertEquals(REPLACEMENT, read(source(0xC3)));
+  }
+
+  @Test
+  public void testPeekNext() {
+    Utf8ByteBufferSource testee = source("\u00e9\u20ac");
+    // peek() decodes the character, but does not advance
+    assertEquals('\u00e9', testee.peek());
+    assertEquals('\u00e9', testee.peek());
+    assertTrue(testee.hasNext());
+    assertEquals('\u00e9', testee.next());
+    assertEquals('\u20ac', testee.peek());
+    assertEquals('\u20ac', testee.next());
+    assertFalse(testee.hasNext());
+  }
+
+  @Test
+  public void testParse() {
+    // the parser peeks at the first character of a string value and the character following a number
+    String json = "{\"file\":\"/home/j\u00fcrgen/\u4e16\ud83d\ude00.c\",\"\u00e9\":1,\"x\":\"\u20ac\"}";
+    @SuppressWarnings("unchecked")
+    Map<String, Object> map = (Map<String, Object>) new JSON().parse(source(json));
+    assertEquals("/home/j\u00fcrgen/\u4e16\ud83d\ude00.c", map.get("file"));
+    assertEquals(1L, map.get("\u00e9"));
+    assertEquals("\u20ac", map.get("x"));
+  }
+}
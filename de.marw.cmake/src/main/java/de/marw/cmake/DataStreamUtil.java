@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+package de.marw.cmake;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Reads and writes the binary caches the plugin keeps in its state location.
+ *
+ * @author Martin Weber
+ */
+public final class DataStreamUtil {
+  /**
+   * the maximum length in bytes of a string to read. A larger length denotes a corrupt file and must not make the reader
+   * allocate a huge buffer
+   */
+  private static final int MAX_STRING_LENGTH = 1 << 24;
+
+  private DataStreamUtil() {
+  }
+
+  /**
+   * Writes a binary file that starts with the specified magic number and format version. The content is written to a
+   * temporary file first, which then replaces the file atomically, so that a reader never sees a partially written
+   * file.
+   *
+   * @param file
+   *          the file to write
+   * @param magic
+   *          the magic number that identifies the kind of file
+   * @param version
+   *          the version of the file format
+   * @param writer
+   *          writes the content following the header
+   * @throws IOException
+   *           if the file could not be written. The file is left unchanged then
+   */
+  public static void writeFile(File file, int magic, int version, ContentWriter writer) throws IOException {
+    final File tmpFile = new File(file.getPath() + ".tmp");
+    try {
+      file.getParentFile().mkdirs();
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+        out.writeInt(magic);
+        out.writeInt(version);
+        writer.write(out);
+      }
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ex) {
+      tmpFile.delete();
+      throw ex;
+    }
+  }
+
+  /**
+   * Reads a binary file written by {@link #writeFile}. The content is passed to the reader only if the file exists
+   * and starts with the specified magic number and format version.
+   *
+   * @param file
+   *          the file to read
+   * @param magic
+   *          the magic number that identifies the kind of file
+   * @param version
+   *          the version of the file format
+   * @param reader
+   *          reads the content following the header
+   * @return {@code true} if the content was read, {@code false} if the file does not exist or was written in a
+   *         different format
+   * @throws IOException
+   *           if the file could not be read or is corrupt
+   */
+  public static boolean readFile(File file, int magic, int version, ContentReader reader) throws IOException {
+    if (!file.isFile())
+      return false;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != magic || in.readInt() != version)
+        return false;
+      reader.read(in);
+      return true;
+    }
+  }
+
+  /**
+   * Writes a string as its UTF-8 length and bytes. Unlike {@link DataOutputStream#writeUTF}, this allows strings of up
+   * to 16 MiB.
+   *
+   * @throws IOException
+   *           if the stream could not be written or the string is too long
+   */
+  public static void writeString(DataOutputStream out, String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > MAX_STRING_LENGTH)
+      throw new IOException("String too long: " + bytes.length + " bytes");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Writes a string that may be {@code null}.
+   */
+  public static void writeNullableString(DataOutputStream out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null)
+      writeString(out, value);
+  }
+
+  /**
+   * Reads a string written by {@link #writeString}.
+   *
+   * @throws IOException
+   *           if the stream could not be read or the length of the string is invalid
+   */
+  public static String readString(DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0 || length > MAX_STRING_LENGTH)
+      throw new IOException("Invalid string length " + length);
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads a string written by {@link #writeNullableString}.
+   */
+  public static String readNullableString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? readString(in) : null;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  /**
+   * Writes the content of a file, see {@link DataStreamUtil#writeFile}.
+   */
+  @FunctionalInterface
+  public interface ContentWriter {
+    void write(DataOutputStream out) throws IOException;
+  } // ContentWriter
+
+  ////////////////////////////////////////////////////////////////////
+  /**
+   * Reads the content of a file, see {@link DataStreamUtil#readFile}.
+   */
+  @FunctionalInterface
+  public interface ContentReader {
+    void read(DataInputStream in) throws IOException;
+  } // ContentReader
+}
@@ -10,13 +10,25 @@
  *******************************************************************************/
 package de.marw.cmake.cdt.language.settings.providers;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.cdt.build.core.scannerconfig.ScannerConfigNature;
 import org.eclipse.cdt.core.CCorePlugin;
@@ -36,12 +48,15 @@ import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.w3c.dom.Element;
 
 import de.marw.cmake.CMakePlugin;
+import de.marw.cmake.cdt.language.settings.providers.builtins.BuiltinsCache;
 import de.marw.cmake.cdt.language.settings.providers.builtins.CompilerBuiltinsDetector;
 
 /**
@@ -62,22 +77,46 @@ public class BuiltinsCompileCommandsJsonParser extends LanguageSettingsSerializa
   /** storage key for with console */
   private static final String ATTR_WITH_CONSOLE = "console";
 
-  private ICConfigurationDescription currentCfgDescription;
+  /**
+   * the configuration being built, per build thread. Concurrent builds of different projects each run the
+   * {@link ICBuildOutputParser} protocol on their own thread, but share this provider instance.
+   */
+  private ThreadLocal<ICConfigurationDescription> currentCfgDescription = new ThreadLocal<>();
+
+  /**
+   * runs the compiler built-ins detectors. Bounded to the number of processors, since each detector starts a compiler
+   * process.
+   */
+  private static final ExecutorService detectorPool = createDetectorPool();
+
+  /**
+   * the source files that have entries attached, because they are compiled with other flags or compilers than most
+   * source files of their language. Key of the outer map is the configuration ID, key of the inner map is the language
+   * ID, value is the set of project-relative paths of the source files.
+   */
+  private Map<String, Map<String, Set<String>>> fileEntries = new HashMap<>();
 
   /**
    * Detects the compiler built-in include paths and symbols. Uses {@link CompileCommandsJsonParser} for parsing of the
    * json file and caching.
    *
+   * @param cfgDescription
+   *          the configuration to detect the built-ins for
    * @param initializingWorkbench
    *          {@code true} if the workbench is starting up. If {@code true}, this method will not trigger UI update to
    *          show newly detected include paths nor will it complain if a "compile_commands.json" file does not exist.
+   * @param monitor
+   *          the progress monitor to report progress to and to check for cancellation
    * @throws CoreException
+   * @throws OperationCanceledException
+   *           if the monitor was canceled
    */
-  private void detectBuiltins(boolean initializingWorkbench) throws CoreException {
-    if (currentCfgDescription instanceof ILanguageSettingsProvidersKeeper) {
-      Iterable<CompilerBuiltinsDetector> detectors;
+  private void detectBuiltins(ICConfigurationDescription cfgDescription, boolean initializingWorkbench,
+      IProgressMonitor monitor) throws CoreException {
+    if (cfgDescription instanceof ILanguageSettingsProvidersKeeper) {
+      Map<CompilerBuiltinsDetector, Set<String>> detectors;
 
-      final List<ILanguageSettingsProvider> lsps = ((ILanguageSettingsProvidersKeeper) currentCfgDescription)
+      final List<ILanguageSettingsProvider> lsps = ((ILanguageSettingsProvidersKeeper) cfgDescription)
           .getLanguageSettingProviders();
       // get the CompileCommandsJsonParser object, if the settings provider is enabled on the configuration
       final CompileCommandsJsonParser lsp;
@@ -86,39 +125,174 @@ public class BuiltinsCompileCommandsJsonParser extends LanguageSettingsSerializa
       if (lspO.isPresent()) {
         // CompileCommandsJsonParser is there, trigger it, regardless of provider order
         lsp = (CompileCommandsJsonParser) LanguageSettingsManager.getRawProvider(lspO.get());
-        detectors = lsp.determineBuiltinDetectors(currentCfgDescription, true, initializingWorkbench);
+        detectors = lsp.determineBuiltinDetectors(cfgDescription, true, initializingWorkbench, monitor);
       } else {
         // get a CompileCommandsJsonParser configured with the workspace default settings
         lsp = (CompileCommandsJsonParser) LanguageSettingsManager
             .getExtensionProviderCopy(CompileCommandsJsonParser.PROVIDER_ID, false);
-        detectors = lsp.determineBuiltinDetectors(currentCfgDescription, false, initializingWorkbench);
+        detectors = lsp.determineBuiltinDetectors(cfgDescription, false, initializingWorkbench, monitor);
       }
 
       if (initializingWorkbench && detectors == null) {
         // if initializing, always get the detectors
-        detectors = lsp.getBuiltinDetectors(currentCfgDescription);
+        detectors = lsp.getBuiltinDetectors(cfgDescription);
       }
       if (detectors != null) {
-        // run each detector and gather the entries per language
-        HashMap<String, Set<ICLanguageSettingEntry>> langMap = new HashMap<>(2, 1.0f);
-        for (CompilerBuiltinsDetector detector : detectors) {
-          final String languageId = detector.getLanguageId();
-          // entries per language
-          List<ICLanguageSettingEntry> entries = detector.run(new NullProgressMonitor(), isWithConsole());
-          // use a Set here to avoid duplicates by name and kind ..
-          Set<ICLanguageSettingEntry> allEntries = langMap.get(languageId);
-          if (allEntries == null) {
-            allEntries = new HashSet<>();
-            langMap.put(languageId, allEntries);
+        // run the detectors
+        final Map<CompilerBuiltinsDetector, List<ICLanguageSettingEntry>> results = new HashMap<>();
+        if (isWithConsole()) {
+          // run one after another, so the console shows the output of one compiler at a time
+          for (CompilerBuiltinsDetector detector : detectors.keySet()) {
+            if (monitor.isCanceled())
+              throw new OperationCanceledException();
+            results.put(detector, detector.run(monitor, true));
           }
-          allEntries.addAll(entries);
+        } else {
+          runDetectors(detectors.keySet(), results, monitor);
         }
-        // store the entries per language
-        for (Entry<String, Set<ICLanguageSettingEntry>> entry : langMap.entrySet()) {
-          super.setSettingEntries(currentCfgDescription, null, entry.getKey(),
-              Arrays.asList(entry.getValue().toArray(new ICLanguageSettingEntry[entry.getValue().size()])));
+        storeEntries(cfgDescription, detectors, results);
+        BuiltinsCache.save();
+      }
+    }
+  }
+
+  /**
+   * Runs the specified detectors concurrently on the {@link #detectorPool} and puts their entries into the specified
+   * map as they finish.
+   *
+   * @param results
+   *          the map to put the entries into. Key is the detector.
+   * @param monitor
+   *          the progress monitor to check for cancellation
+   * @throws CoreException
+   *           if a detector failed
+   * @throws OperationCanceledException
+   *           if the monitor was canceled
+   */
+  private static void runDetectors(Collection<CompilerBuiltinsDetector> detectors,
+      Map<CompilerBuiltinsDetector, List<ICLanguageSettingEntry>> results, IProgressMonitor monitor)
+      throws CoreException {
+    // progress monitors are not thread-safe, the detectors get one that just forwards cancellation
+    final IProgressMonitor cancelMonitor = new NullProgressMonitor() {
+      @Override
+      public boolean isCanceled() {
+        return super.isCanceled() || monitor.isCanceled();
+      }
+    };
+    final CompletionService<DetectorResult> completion = new ExecutorCompletionService<>(detectorPool);
+    final List<Future<DetectorResult>> futures = new ArrayList<>();
+    try {
+      for (CompilerBuiltinsDetector detector : detectors) {
+        futures.add(completion.submit(() -> new DetectorResult(detector, detector.run(cancelMonitor, false))));
+      }
+      for (int pending = futures.size(); pending > 0;) {
+        if (monitor.isCanceled())
+          throw new OperationCanceledException();
+        final Future<DetectorResult> done = completion.poll(100, TimeUnit.MILLISECONDS);
+        if (done != null) {
+          pending--;
+          final DetectorResult result = done.get();
+          results.put(result.detector, result.entries);
         }
       }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new OperationCanceledException();
+    } catch (ExecutionException ex) {
+      final Throwable cause = ex.getCause();
+      if (cause instanceof CoreException)
+        throw (CoreException) cause;
+      if (cause instanceof OperationCanceledException)
+        throw (OperationCanceledException) cause;
+      throw new CoreException(
+          new Status(IStatus.ERROR, CMakePlugin.PLUGIN_ID, "Failed to detect compiler built-ins", cause));
+    } finally {
+      // stop the compiler processes of detectors still running
+      cancelMonitor.setCanceled(true);
+      for (Future<DetectorResult> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Compares two detectors of the same language as candidates for the detector whose entries are stored for the whole
+   * configuration. The detector that applies to more source files wins. Ties are broken by the compiler command and
+   * then by the flags, so that the choice does not depend on the iteration order of a hash map.
+   *
+   * @return a negative number if {@code a} is the better candidate, a positive number if {@code b} is
+   */
+  private static int compareDefaultCandidates(CompilerBuiltinsDetector a, int aFiles, CompilerBuiltinsDetector b,
+      int bFiles) {
+    int result = Integer.compare(bFiles, aFiles);
+    if (result == 0) {
+      result = a.getCommand().compareTo(b.getCommand());
+    }
+    final List<String> aFlags = a.getFlags();
+    final List<String> bFlags = b.getFlags();
+    for (int i = 0; result == 0 && i < Math.min(aFlags.size(), bFlags.size()); i++) {
+      result = aFlags.get(i).compareTo(bFlags.get(i));
+    }
+    if (result == 0) {
+      result = Integer.compare(aFlags.size(), bFlags.size());
+    }
+    return result;
+  }
+
+  /**
+   * Stores the entries found by the detectors. Per language, the entries of the detector that applies to the most
+   * source files are stored for the whole configuration. The source files compiled with other flags or compilers get
+   * the entries of their detector attached.
+   *
+   * @param detectors
+   *          the detectors, each with the project-relative paths of the source files it applies to
+   * @param results
+   *          the entries found by each detector
+   */
+  private void storeEntries(ICConfigurationDescription cfgDescription,
+      Map<CompilerBuiltinsDetector, Set<String>> detectors,
+      Map<CompilerBuiltinsDetector, List<ICLanguageSettingEntry>> results) {
+    // determine the detector that applies to the most files, per language
+    final Map<String, CompilerBuiltinsDetector> defaults = new HashMap<>(2, 1.0f);
+    for (Entry<CompilerBuiltinsDetector, Set<String>> entry : detectors.entrySet()) {
+      final CompilerBuiltinsDetector detector = entry.getKey();
+      final CompilerBuiltinsDetector dflt = defaults.get(detector.getLanguageId());
+      if (dflt == null || compareDefaultCandidates(detector, entry.getValue().size(), dflt,
+          detectors.get(dflt).size()) < 0) {
+        defaults.put(detector.getLanguageId(), detector);
+      }
+    }
+
+    final IProject project = cfgDescription.getProjectDescription().getProject();
+    final Map<String, Set<String>> fileLangs = new HashMap<>();
+    synchronized (fileEntries) {
+      // remove the entries attached to files last time
+      final Map<String, Set<String>> last = fileEntries.remove(cfgDescription.getId());
+      if (last != null) {
+        for (Entry<String, Set<String>> entry : last.entrySet()) {
+          for (String rcPath : entry.getValue()) {
+            super.setSettingEntries(cfgDescription, project.getFile(rcPath), entry.getKey(), null);
+          }
+        }
+      }
+      for (Entry<CompilerBuiltinsDetector, List<ICLanguageSettingEntry>> result : results.entrySet()) {
+        final CompilerBuiltinsDetector detector = result.getKey();
+        final String languageId = detector.getLanguageId();
+        // use a Set here to avoid duplicates by name and kind ..
+        final List<ICLanguageSettingEntry> entries = new ArrayList<>(new LinkedHashSet<>(result.getValue()));
+        if (detector.equals(defaults.get(languageId))) {
+          super.setSettingEntries(cfgDescription, null, languageId, entries);
+        } else {
+          final Set<String> rcPaths = detectors.get(detector);
+          for (String rcPath : rcPaths) {
+            super.setSettingEntries(cfgDescription, project.getFile(rcPath), languageId, entries);
+          }
+          fileLangs.computeIfAbsent(languageId, k -> new HashSet<>()).addAll(rcPaths);
+        }
+      }
+      if (!fileLangs.isEmpty()) {
+        fileEntries.put(cfgDescription.getId(), fileLangs);
+      }
     }
   }
 
@@ -128,7 +302,7 @@ public class BuiltinsCompileCommandsJsonParser extends LanguageSettingsSerializa
   @Override
   public void startup(ICConfigurationDescription cfgDescription, IWorkingDirectoryTracker cwdTracker)
       throws CoreException {
-    currentCfgDescription = cfgDescription;
+    currentCfgDescription.set(cfgDescription);
   }
 
   /**
@@ -146,23 +320,42 @@ public class BuiltinsCompileCommandsJsonParser extends LanguageSettingsSerializa
    */
   @Override
   public void shutdown() {
-    try {
-      detectBuiltins(false);
-    } catch (CoreException ex) {
-      log.log(new Status(IStatus.ERROR, CMakePlugin.PLUGIN_ID, "shutdown()", ex));
+    final ICConfigurationDescription cfgDescription = currentCfgDescription.get();
+    if (cfgDescription != null) {
+      // detect in the background, do not keep the build waiting
+      ConfigurationJob.schedule(PROVIDER_ID,
+          "Detecting compiler built-ins of " + cfgDescription.getProjectDescription().getProject().getName(),
+          cfgDescription, (cfg, monitor) -> detectBuiltins(cfg, false, monitor));
     }
     // release resources for garbage collector
-    currentCfgDescription = null;
+    currentCfgDescription.remove();
   }
 
   @Override
   public BuiltinsCompileCommandsJsonParser clone() throws CloneNotSupportedException {
-    return (BuiltinsCompileCommandsJsonParser) super.clone();
+    BuiltinsCompileCommandsJsonParser clone = (BuiltinsCompileCommandsJsonParser) super.clone();
+    clone.currentCfgDescription = new ThreadLocal<>();
+    // the clone has the per-file entries, too, and must be able to remove them
+    final Map<String, Map<String, Set<String>>> copy = new HashMap<>();
+    synchronized (fileEntries) {
+      for (Entry<String, Map<String, Set<String>>> cfgEntry : fileEntries.entrySet()) {
+        final Map<String, Set<String>> langs = new HashMap<>();
+        for (Entry<String, Set<String>> langEntry : cfgEntry.getValue().entrySet()) {
+          langs.put(langEntry.getKey(), new HashSet<>(langEntry.getValue()));
+        }
+        copy.put(cfgEntry.getKey(), langs);
+      }
+    }
+    clone.fileEntries = copy;
+    return clone;
   }
 
   @Override
   public BuiltinsCompileCommandsJsonParser cloneShallow() throws CloneNotSupportedException {
-    return (BuiltinsCompileCommandsJsonParser) super.cloneShallow();
+    BuiltinsCompileCommandsJsonParser clone = (BuiltinsCompileCommandsJsonParser) super.cloneShallow();
+    clone.currentCfgDescription = new ThreadLocal<>();
+    clone.fileEntries = new HashMap<>();
+    return clone;
   }
 
   /**
@@ -173,9 +366,8 @@ public class BuiltinsCompileCommandsJsonParser extends LanguageSettingsSerializa
   public void registerListener(ICConfigurationDescription cfgDescription) {
     if (cfgDescription != null) {
       // per-project or null if the user just added this provider on the provider tab
-      currentCfgDescription = cfgDescription;
       try {
-        detectBuiltins(true);
+        detectBuiltins(cfgDescription, true, new NullProgressMonitor());
       } catch (CoreException ex) {
         log.log(new Status(IStatus.ERROR, CMakePlugin.PLUGIN_ID, "registerListener()", ex));
       }
@@ -196,8 +388,7 @@ public class BuiltinsCompileCommandsJsonParser extends LanguageSettingsSerializa
                     .getLanguageSettingProviders();
                 for (ILanguageSettingsProvider lsp : lsps) {
                   if (PROVIDER_ID.equals(lsp.getId())) {
-                    currentCfgDescription = activeConfiguration;
-                    detectBuiltins(true);
+                    detectBuiltins(activeConfiguration, true, new NullProgressMonitor());
                     break;
                   }
                 }
@@ -209,8 +400,6 @@ public class BuiltinsCompileCommandsJsonParser extends LanguageSettingsSerializa
         }
       }
     }
-    // release resources for garbage collector
-    currentCfgDescription = null;
   }
 
   /*-
@@ -242,4 +431,35 @@ public class BuiltinsCompileCommandsJsonParser extends LanguageSettingsSerializa
     // no language setting entries to serialize, since entries come from the compile_commands.json file
   }
 
+  /**
+   * Creates the thread pool to run the compiler built-ins detectors. Threads are daemons and terminate when idle.
+   */
+  private static ExecutorService createDetectorPool() {
+    final int nThreads = Runtime.getRuntime().availableProcessors();
+    final AtomicInteger threadNum = new AtomicInteger();
+    final ThreadPoolExecutor pool = new ThreadPoolExecutor(nThreads, nThreads, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), r -> {
+          final Thread thread = new Thread(r, "Compiler built-ins detector-" + threadNum.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // inner classes
+  ////////////////////////////////////////////////////////////////////
+  /**
+   * The entries a detector found.
+   */
+  private static class DetectorResult {
+    private final CompilerBuiltinsDetector detector;
+    private final List<ICLanguageSettingEntry> entries;
+
+    DetectorResult(CompilerBuiltinsDetector detector, List<ICLanguageSettingEntry> entries) {
+      this.detector = detector;
+      this.entries = entries;
+    }
+  } // DetectorResult
 }
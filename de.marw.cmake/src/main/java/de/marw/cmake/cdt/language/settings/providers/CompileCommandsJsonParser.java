@@ -10,24 +10,45 @@
  *******************************************************************************/
 package de.marw.cmake.cdt.language.settings.providers;
 
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 import org.eclipse.cdt.build.core.scannerconfig.ScannerConfigNature;
 import org.eclipse.cdt.core.CCorePlugin;
-import org.eclipse.cdt.core.index.IIndexManager;
 import org.eclipse.cdt.core.language.settings.providers.ICBuildOutputParser;
 import org.eclipse.cdt.core.language.settings.providers.ICListenerAgent;
 import org.eclipse.cdt.core.language.settings.providers.ILanguageSettingsEditableProvider;
@@ -37,29 +58,36 @@ import org.eclipse.cdt.core.language.settings.providers.IWorkingDirectoryTracker
 import org.eclipse.cdt.core.language.settings.providers.LanguageSettingsSerializableProvider;
 import org.eclipse.cdt.core.language.settings.providers.LanguageSettingsStorage;
 import org.eclipse.cdt.core.model.CoreModel;
-import org.eclipse.cdt.core.model.ICElement;
+import org.eclipse.cdt.core.settings.model.CProjectDescriptionEvent;
 import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
 import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
 import org.eclipse.cdt.core.settings.model.ICProjectDescription;
 import org.eclipse.cdt.core.settings.model.ICSettingEntry;
+import org.eclipse.cdt.core.settings.model.util.CDataUtil;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jetty.util.ajax.JSON;
 import org.w3c.dom.Element;
 
 import de.marw.cmake.CMakePlugin;
+import de.marw.cmake.DataStreamUtil;
 import de.marw.cmake.cdt.language.settings.providers.ParserDetection.MarchResult;
+import de.marw.cmake.cdt.language.settings.providers.builtins.BuiltinDetectionType;
 import de.marw.cmake.cdt.language.settings.providers.builtins.CompilerBuiltinsDetector;
 
 /**
@@ -90,22 +118,36 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
   private static final String ATTR_PATTERN = "vPattern";
   /** storage key for version pattern enabled */
   private static final String ATTR_PATTERN_ENABLED = "vPatternEnabled";
+  /** storage key for parallel processing of entries */
+  private static final String ATTR_PARALLEL = "parallel";
 
   private static final String WORKBENCH_WILL_NOT_KNOW_ALL_MSG = "Your workbench will not know all include paths and preprocessor defines.";
 
   private static final String MARKER_ID = CMakePlugin.PLUGIN_ID + ".CompileCommandsJsonParserMarker";
 
+  /**
+   * folder in the plugin state location that holds the snapshots of the settings storages, one sub-folder per project
+   */
+  private static final String SNAPSHOT_FOLDER = "compile_commands";
+  /** whether the listeners that delete the snapshots of removed projects and configurations are registered */
+  private static final AtomicBoolean snapshotCleanupRegistered = new AtomicBoolean();
+  /** magic number and version of the settings storage snapshot format */
+  private static final int SNAPSHOT_MAGIC = 0x43434a53;
+  private static final int SNAPSHOT_VERSION = 3;
+
+  /** splits a command-line into arguments to detect the flags that affect the compiler built-ins */
+  private static final Pattern WS_PATTERN = Pattern.compile("\\s+");
+
   /**
    * Storage to keep settings entries
    */
   private PerConfigLanguageSettingsStorage storage = new PerConfigLanguageSettingsStorage();
 
-  private ICConfigurationDescription currentCfgDescription;
-
   /**
-   * last known working tool detector and its tool option parsers or {@code null}, if unknown (to speed up parsing)
+   * The configuration being built, between {@link #startup} and {@link #shutdown}. Kept per thread, since a provider
+   * that is shared between projects may take part in concurrent builds.
    */
-  private ParserDetection.DetectorWithMethod lastDetector;
+  private ThreadLocal<ICConfigurationDescription> currentCfgDescription = new ThreadLocal<>();
 
   public CompileCommandsJsonParser() {
   }
@@ -158,6 +200,26 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
     }
   }
 
+  /**
+   * Gets whether the entries of the json file are processed in parallel, using multiple threads.
+   */
+  public boolean isParallel() {
+    return getPropertyBool(ATTR_PARALLEL);
+  }
+
+  /**
+   * Sets whether the entries of the json file are processed in parallel.
+   *
+   * @see #isParallel()
+   */
+  public void setParallel(boolean parallel) {
+    if (parallel) {
+      setPropertyBool(ATTR_PARALLEL, parallel);
+    } else {
+      properties.remove(ATTR_PARALLEL);
+    }
+  }
+
   @Override
   public List<ICLanguageSettingEntry> getSettingEntries(ICConfigurationDescription cfgDescription, IResource rc,
       String languageId) {
@@ -175,8 +237,10 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
 
   /**
    * Parses the content of the 'compile_commands.json' file corresponding to the specified configuration, if timestamps
-   * differ.
+   * differ. Parsing is serialized per configuration, different configurations may be parsed concurrently.
    *
+   * @param cfgDescription
+   *          configuration description
    * @param enabled
    *          {@code true} if this provider is present in the project's list of settings providers, otherwise false. If
    *          {@code false}, this method will just determine the compiler-built-in processors and not perform any
@@ -184,12 +248,31 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
    * @param initializingWorkbench
    *          {@code true} if the workbench is starting up. If {@code true}, this method will not trigger UI update to
    *          show newly detected include paths nor will it complain if a "compile_commands.json" file does not exist.
+   * @param monitor
+   *          the progress monitor to check for cancellation or {@code null}
    *
    * @return {@code true} if the json file did change since the last invocation of this method (new setting entires were
    *         discoverd), ohterwise {@code false}
    * @throws CoreException
+   * @throws OperationCanceledException
+   *           if the monitor was canceled. The json file will be parsed again on the next invocation
    */
-  private boolean tryParseJson(boolean enabled, boolean initializingWorkbench) throws CoreException {
+  private boolean tryParseJson(ICConfigurationDescription cfgDescription, boolean enabled,
+      boolean initializingWorkbench, IProgressMonitor monitor) throws CoreException {
+    final TimestampedLanguageSettingsStorage store = storage.getSettingsStoreForConfig(cfgDescription);
+    synchronized (store) {
+      return tryParseJson(cfgDescription, store, enabled, initializingWorkbench, monitor);
+    }
+  }
+
+  /**
+   * Parses the content of the 'compile_commands.json' file corresponding to the specified configuration, if timestamps
+   * differ. The caller must hold the lock of the specified storage.
+   *
+   * @see #tryParseJson(ICConfigurationDescription, boolean, boolean, IProgressMonitor)
+   */
+  private boolean tryParseJson(ICConfigurationDescription cfgDescription, TimestampedLanguageSettingsStorage store,
+      boolean enabled, boolean initializingWorkbench, IProgressMonitor monitor) throws CoreException {
 
     // If getBuilderCWD() returns a workspace relative path, it is garbled.
     // It returns '${workspace_loc:/my-project-name}'. Additionally, it returns
@@ -197,7 +280,7 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
     // In contrast, getResolvedOutputDirectories() does it mostly right, it
     // returns '/my-project-name', but also stale data
     // when a user changed the build-root
-    final IPath buildRoot = currentCfgDescription.getBuildSetting().getBuilderCWD();
+    final IPath buildRoot = cfgDescription.getBuildSetting().getBuilderCWD();
     final IPath jsonPath = buildRoot.append("compile_commands.json");
     final IFile jsonFileRc = ResourcesPlugin.getWorkspace().getRoot().getFile(jsonPath);
 
@@ -207,59 +290,78 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
       if (!jsonFile.exists()) {
         // no json file was produced in the build
         final String msg = "File '" + jsonPath + "' was not created in the build. " + WORKBENCH_WILL_NOT_KNOW_ALL_MSG;
-        createMarker(jsonFileRc, msg);
+        final MarkerCollector markers = createMarkerCollector(jsonFileRc);
+        markers.add("missing", msg);
+        store.markers = markers.flush(store.markers);
         return false;
       }
       // file exists on disk...
       final long tsJsonModified = jsonFile.lastModified();
+      final long jsonSize = jsonFile.length();
 
-      final IProject project = currentCfgDescription.getProjectDescription().getProject();
-      final TimestampedLanguageSettingsStorage store = storage.getSettingsStoreForConfig(currentCfgDescription);
+      final IProject project = cfgDescription.getProjectDescription().getProject();
+      final String settingsKey = getParserSettingsKey(enabled);
+      if (!store.snapshotLoaded) {
+        // first use of the storage in this session: restore the settings of the last session, if any
+        store.snapshotLoaded = true;
+        if (store.lastModified == 0) {
+          loadSnapshot(cfgDescription, store, jsonFile, settingsKey);
+        }
+      }
 
-      if (store.lastModified < tsJsonModified) {
+      if (store.lastModified < tsJsonModified || store.jsonSize != jsonSize) {
         // must parse json file...
-        store.clear();
+        if (!settingsKey.equals(store.settingsKey)) {
+          // fingerprints of the entries are meaningless if the parser settings changed
+          store.clear();
+          store.settingsKey = settingsKey;
+        }
         // store time-stamp
         store.lastModified = tsJsonModified;
+        store.jsonSize = jsonSize;
 
-        if (!initializingWorkbench) {
-          project.deleteMarkers(MARKER_ID, false, IResource.DEPTH_INFINITE);
-        }
-        Reader in = null;
+        final ParseContext ctx = new ParseContext(cfgDescription, store, enabled, jsonFileRc, monitor);
+        boolean complete = false;
+        OperationCanceledException canceled = null;
+        FileChannel in = null;
         try {
           // parse file...
-          in = new FileReader(jsonFile);
-          Object parsed = new JSON().parse(new JSON.ReaderSource(in), false);
-          if (parsed instanceof Object[]) {
-            for (Object o : (Object[]) parsed) {
-              if (o instanceof Map) {
-                processJsonEntry(store, enabled, (Map<?, ?>) o, jsonFileRc);
-              } else {
-                // expected Map object, skipping entry.toString()
-                final String msg = "File format error: unexpected entry '" + o + "'. "
-                    + WORKBENCH_WILL_NOT_KNOW_ALL_MSG;
-                createMarker(jsonFileRc, msg);
+          in = FileChannel.open(jsonFile.toPath(), StandardOpenOption.READ);
+          // pull entries one by one to keep memory bounded, regardless of the file size
+          final Iterator<Object> parsed = new JSON().parseArrayElements(createJsonSource(in));
+          if (parsed != null) {
+            if (enabled && isParallel()) {
+              processJsonEntriesParallel(ctx, parsed);
+            } else {
+              while (parsed.hasNext()) {
+                ctx.checkCanceled();
+                final JsonEntry entry = toJsonEntry(ctx, parsed.next());
+                if (entry != null) {
+                  entry.resolveSourceFile(ctx.locations);
+                  if (entry.sourceFile != null) {
+                    entry.pdr = fastDetermineDetector(ctx, entry.getDetectionLine());
+                    mergeJsonEntry(ctx, entry);
+                  }
+                }
               }
             }
-
-            // re-index to reflect new paths and macros in editor views
-            // serializeLanguageSettings(currentCfgDescription);
-            if (!initializingWorkbench) {
-              final ICElement[] tuSelection = { CoreModel.getDefault().create(project) };
-              CCorePlugin.getIndexManager().update(tuSelection, IIndexManager.UPDATE_ALL);
-            }
-            // triggering UI update to show newly detected include paths in
-            // Includes folder is USELESS. It looks like ICProject#getIncludeReferences() is only
-            // updated when the project is opened or the user clicks 'Apply' in the
-            // Preprocessor Include Paths page.
           } else {
             // file format error
             final String msg = "File does not seem to be in JSON format. " + WORKBENCH_WILL_NOT_KNOW_ALL_MSG;
-            createMarker(jsonFileRc, msg);
+            ctx.markers.add("format", msg);
           }
+          complete = true;
         } catch (IOException ex) {
           final String msg = "Failed to read file " + jsonFile + ". " + WORKBENCH_WILL_NOT_KNOW_ALL_MSG;
-          createMarker(jsonFileRc, msg);
+          ctx.markers.add("io", msg);
+        } catch (IllegalStateException ex) {
+          // malformed JSON, entries read so far are kept
+          final String msg = "File format error: " + (ex.getMessage() == null ? "malformed JSON" : ex.getMessage())
+              + ". " + WORKBENCH_WILL_NOT_KNOW_ALL_MSG;
+          ctx.markers.add("format", msg);
+        } catch (OperationCanceledException ex) {
+          // entries processed so far are kept
+          canceled = ex;
         } finally {
           if (in != null)
             try {
@@ -267,6 +369,27 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
             } catch (IOException ignore) {
             }
         }
+        ctx.finish(complete);
+        store.markers = ctx.markers.flush(store.markers);
+        store.compact();
+        handleIncludePathEntries(store);
+
+        // re-index to reflect new paths and macros in editor views
+        // serializeLanguageSettings(currentCfgDescription);
+        if (!initializingWorkbench) {
+          IndexUpdateJob.scheduleUpdate(project, ctx.modifiedFiles);
+        }
+        if (canceled != null) {
+          // parse again next time
+          store.lastModified = 0;
+          throw canceled;
+        }
+        saveSnapshot(cfgDescription, store, jsonFile);
+        ParserDetectionCache.save();
+        // triggering UI update to show newly detected include paths in
+        // Includes folder is USELESS. It looks like ICProject#getIncludeReferences() is only
+        // updated when the project is opened or the user clicks 'Apply' in the
+        // Preprocessor Include Paths page.
         return true;
       }
     }
@@ -274,63 +397,415 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
   }
 
   /**
-   * Processes an entry from a {@code compile_commands.json} file and stores a {@link ICLanguageSettingEntry} for the
-   * file given the specified map.
+   * Creates a JSON source that decodes the content of the specified channel as UTF-8. If possible, the file is
+   * memory-mapped and decoded without intermediate buffers.
+   *
+   * @param channel
+   *          the channel to read from. Closing the channel releases the resources of the returned source.
+   */
+  /* package */ static JSON.Source createJsonSource(FileChannel channel) throws IOException {
+    final long size = channel.size();
+    // windows keeps a mapped file locked until the mapping is garbage collected; cmake would fail to re-write it
+    if (size <= Integer.MAX_VALUE && File.separatorChar != '\\') {
+      return new JSON.Utf8ByteBufferSource(channel.map(MapMode.READ_ONLY, 0, size));
+    }
+    final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    return new JSON.ReaderSource(new BufferedReader(Channels.newReader(channel, decoder, -1)));
+  }
+
+  /**
+   * Gets the file that holds the snapshot of the settings storage of the specified configuration.
+   */
+  private static File getSnapshotFile(ICConfigurationDescription cfgDescription) {
+    return getSnapshotFile(cfgDescription.getProjectDescription().getProject().getName(), cfgDescription.getId());
+  }
+
+  /**
+   * Gets the file that holds the snapshot of the settings storage of the specified project and configuration ID.
+   */
+  private static File getSnapshotFile(String projectName, String cfgId) {
+    return new File(getSnapshotFolder(projectName), toSnapshotFileName(cfgId) + ".bin");
+  }
+
+  /**
+   * Gets the folder that holds the snapshots of the specified project.
+   */
+  private static File getSnapshotFolder(String projectName) {
+    return CMakePlugin.getDefault().getStateLocation().append(SNAPSHOT_FOLDER)
+        .append(toSnapshotFileName(projectName)).toFile();
+  }
+
+  private static String toSnapshotFileName(String name) {
+    return name.replaceAll("[^\\w.-]", "_");
+  }
+
+  /**
+   * Registers the listeners that delete the snapshots of projects and configurations when these are removed, unless
+   * already registered.
+   */
+  private static void registerSnapshotCleanup() {
+    if (snapshotCleanupRegistered.compareAndSet(false, true)) {
+      ResourcesPlugin.getWorkspace().addResourceChangeListener(CompileCommandsJsonParser::projectsChanged,
+          IResourceChangeEvent.POST_CHANGE);
+      CoreModel.getDefault().addCProjectDescriptionListener(CompileCommandsJsonParser::projectDescriptionChanged,
+          CProjectDescriptionEvent.APPLIED);
+    }
+  }
+
+  /**
+   * Deletes the snapshots of projects that were deleted or renamed.
+   */
+  private static void projectsChanged(IResourceChangeEvent event) {
+    final IResourceDelta delta = event.getDelta();
+    if (delta == null)
+      return;
+    for (IResourceDelta projectDelta : delta.getAffectedChildren(IResourceDelta.REMOVED)) {
+      deleteSnapshots(getSnapshotFolder(projectDelta.getResource().getName()));
+    }
+  }
+
+  /**
+   * Deletes the snapshots of configurations that were removed from a project.
+   */
+  private static void projectDescriptionChanged(CProjectDescriptionEvent event) {
+    final ICProjectDescription oldDescription = event.getOldCProjectDescription();
+    if (oldDescription == null)
+      return;
+    final ICProjectDescription newDescription = event.getNewCProjectDescription();
+    final String projectName = event.getProject().getName();
+    for (ICConfigurationDescription cfg : oldDescription.getConfigurations()) {
+      if (newDescription == null || newDescription.getConfigurationById(cfg.getId()) == null) {
+        getSnapshotFile(projectName, cfg.getId()).delete();
+      }
+    }
+  }
+
+  /**
+   * Deletes the snapshots of projects that were removed while this plugin was not active, and snapshots written in the
+   * former layout without per-project folders.
+   *
+   * @param projects
+   *          all projects of the workspace
+   */
+  private static void deleteStaleSnapshots(IProject[] projects) {
+    final File[] files = CMakePlugin.getDefault().getStateLocation().append(SNAPSHOT_FOLDER).toFile().listFiles();
+    if (files == null)
+      return;
+    final Set<String> names = new HashSet<>();
+    for (IProject project : projects) {
+      names.add(toSnapshotFileName(project.getName()));
+    }
+    for (File file : files) {
+      if (!file.isDirectory()) {
+        file.delete();
+      } else if (!names.contains(file.getName())) {
+        deleteSnapshots(file);
+      }
+    }
+  }
+
+  /**
+   * Deletes the specified folder of snapshots.
+   */
+  private static void deleteSnapshots(File folder) {
+    final File[] files = folder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    folder.delete();
+  }
+
+  /**
+   * Restores the settings storage of the specified configuration from the snapshot written by the last session. If the
+   * snapshot was taken from a different version of the json file, its entries and their fingerprints are restored, but
+   * the time-stamp is not, so that the json file gets parsed again, incrementally.
    *
-   * @param storage
-   *          where to store language settings
-   * @param enabled
-   *          {@code true} if this provider is present in the project's list of settings providers, otherwise false. If
-   *          {@code false}, this method will just determine the compiler-built-in processors and not perform any
-   *          command line parsing
-   * @param sourceFileInfo
-   *          a Map of type Map<String,String>
    * @param jsonFile
-   *          the JSON file being parsed (for marker creation only)
-   * @throws CoreException
-   *           if marker creation failed
+   *          the compile_commands.json file on disk
+   * @param settingsKey
+   *          the current parser settings, see {@link #getParserSettingsKey}
+   */
+  private static void loadSnapshot(ICConfigurationDescription cfgDescription, TimestampedLanguageSettingsStorage store,
+      File jsonFile, String settingsKey) {
+    registerSnapshotCleanup();
+    final File snapshotFile = getSnapshotFile(cfgDescription);
+    try {
+      DataStreamUtil.readFile(snapshotFile, SNAPSHOT_MAGIC, SNAPSHOT_VERSION, in -> {
+        final String jsonPath = DataStreamUtil.readString(in);
+        final long lastModified = in.readLong();
+        final long jsonSize = in.readLong();
+        if (!jsonPath.equals(jsonFile.getAbsolutePath()) || !settingsKey.equals(DataStreamUtil.readString(in)))
+          return;
+        store.readEntries(in, cfgDescription);
+        store.settingsKey = settingsKey;
+        if (lastModified == jsonFile.lastModified() && jsonSize == jsonFile.length()) {
+          store.lastModified = lastModified;
+          store.jsonSize = jsonSize;
+        }
+      });
+    } catch (IOException | RuntimeException ex) {
+      // corrupt snapshot, parse the json file
+      store.clear();
+      log.log(new Status(IStatus.WARNING, CMakePlugin.PLUGIN_ID, "Ignoring settings snapshot " + snapshotFile, ex));
+    }
+  }
+
+  /**
+   * Writes a snapshot of the settings storage of the specified configuration to the plugin's state location, from
+   * where it is restored by {@link #loadSnapshot} when the workbench starts up next time.
+   *
+   * @param jsonFile
+   *          the compile_commands.json file on disk the storage was populated from
    */
-  private void processJsonEntry(TimestampedLanguageSettingsStorage storage, boolean enabled, Map<?, ?> sourceFileInfo,
-      IFile jsonFile) throws CoreException {
+  private static void saveSnapshot(ICConfigurationDescription cfgDescription, TimestampedLanguageSettingsStorage store,
+      File jsonFile) {
+    registerSnapshotCleanup();
+    final File snapshotFile = getSnapshotFile(cfgDescription);
+    try {
+      DataStreamUtil.writeFile(snapshotFile, SNAPSHOT_MAGIC, SNAPSHOT_VERSION, out -> {
+        DataStreamUtil.writeString(out, jsonFile.getAbsolutePath());
+        out.writeLong(store.lastModified);
+        out.writeLong(store.jsonSize);
+        DataStreamUtil.writeString(out, store.settingsKey);
+        store.writeEntries(out);
+      });
+    } catch (IOException ex) {
+      log.log(new Status(IStatus.WARNING, CMakePlugin.PLUGIN_ID, "Failed to write settings snapshot " + snapshotFile,
+          ex));
+    }
+  }
 
-    if (sourceFileInfo.containsKey("file") && sourceFileInfo.containsKey("command")
-        && sourceFileInfo.containsKey("directory")) {
+  /**
+   * Converts an entry from a {@code compile_commands.json} file. Creates a marker if the entry is not recognized.
+   *
+   * @param ctx
+   *          the state of the current parse
+   * @param o
+   *          the object parsed from the json file
+   * @return the entry or {@code null} if the entry is not recognized
+   */
+  private static JsonEntry toJsonEntry(ParseContext ctx, Object o) {
+    if (!(o instanceof Map)) {
+      // expected Map object, skipping entry.toString()
+      final String msg = "File format error: unexpected entry '" + o + "'. " + WORKBENCH_WILL_NOT_KNOW_ALL_MSG;
+      ctx.markers.add("format-entry", msg);
+      return null;
+    }
+    final Map<?, ?> sourceFileInfo = (Map<?, ?>) o;
+    if (sourceFileInfo.containsKey("file") && sourceFileInfo.containsKey("directory")) {
       final String file = sourceFileInfo.get("file").toString();
       if (file != null && !file.isEmpty()) {
-        final String cmdLine = sourceFileInfo.get("command").toString();
-        if (cmdLine != null && !cmdLine.isEmpty()) {
-          final IFile[] files = ResourcesPlugin.getWorkspace().getRoot()
-              .findFilesForLocationURI(new File(file).toURI());
-          if (files.length > 0) {
-            ParserDetection.ParserDetectionResult pdr = fastDetermineDetector(cmdLine);
-            if (pdr != null) {
-              // found a matching command-line parser
-              final IToolCommandlineParser parser = pdr.getDetectorWithMethod().getDetector().getParser();
-              // cwdStr is the absolute working directory of the compiler in
-              // CMake-notation (fileSep are forward slashes)
-              final String cwdStr = sourceFileInfo.get("directory").toString();
-              IPath cwd = cwdStr != null ? Path.fromOSString(cwdStr) : new Path("");
-              if (enabled)
-                processCommandLine(storage, parser, files[0], cwd, pdr.getReducedCommandLine());
-
-              CompilerBuiltinsDetector detector = new CompilerBuiltinsDetector(currentCfgDescription,
-                  parser.getLanguageId(), parser.getBuiltinDetectionType(), pdr.getCommandLine().getCommand());
-
-              storage.addBuiltinsDetector(detector);
-            } else {
-              // no matching parser found
-              String message = "No parser for command '" + cmdLine + "'. " + WORKBENCH_WILL_NOT_KNOW_ALL_MSG;
-              createMarker(jsonFile, message);
-            }
+        // cwdStr is the absolute working directory of the compiler in
+        // CMake-notation (fileSep are forward slashes)
+        final String cwdStr = sourceFileInfo.get("directory").toString();
+        final Object command = sourceFileInfo.get("command");
+        if (command != null) {
+          final String cmdLine = command.toString();
+          if (!cmdLine.isEmpty()) {
+            return new JsonEntry(file, cmdLine, cwdStr, ctx.responseFiles);
+          }
+        } else {
+          // the 'arguments' form, already tokenized
+          final List<String> arguments = toArgumentList(sourceFileInfo.get("arguments"));
+          if (arguments != null && !arguments.isEmpty()) {
+            return new JsonEntry(file, arguments, cwdStr, ctx.responseFiles);
           }
-          return;
         }
       }
     }
     // unrecognized entry, skipping
-    final String msg = "File format error: " + ": 'file', 'command' or 'directory' missing in JSON object. "
+    final String msg = "File format error: "
+        + ": 'file', 'command' or 'arguments' or 'directory' missing in JSON object. "
         + WORKBENCH_WILL_NOT_KNOW_ALL_MSG;
-    createMarker(jsonFile, msg);
+    ctx.markers.add("format-keys", msg);
+    return null;
+  }
+
+  /**
+   * Converts the value of the {@code arguments} key of an entry from a {@code compile_commands.json} file.
+   *
+   * @param o
+   *          the array parsed from the json file
+   * @return the arguments or {@code null} if the value is not an array
+   */
+  private static List<String> toArgumentList(Object o) {
+    final Object[] values;
+    if (o instanceof Object[]) {
+      values = (Object[]) o;
+    } else if (o instanceof Collection) {
+      values = ((Collection<?>) o).toArray();
+    } else {
+      return null;
+    }
+    final String[] arguments = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null)
+        return null;
+      arguments[i] = values[i].toString();
+    }
+    return Arrays.asList(arguments);
+  }
+
+  /**
+   * Processes the entries from a {@code compile_commands.json} file in parallel. Parser detection is done in the
+   * calling thread, while workspace file look-up and command line parsing is done by the threads of the common
+   * {@link ForkJoinPool}. The results are stored in the order of the entries in the json file.
+   *
+   * @param ctx
+   *          the state of the current parse
+   * @param parsed
+   *          the objects parsed from the json file
+   */
+  private void processJsonEntriesParallel(ParseContext ctx, Iterator<Object> parsed) {
+    final ForkJoinPool pool = ForkJoinPool.commonPool();
+    // bound the number of entries in memory
+    final int maxPending = 2 * Math.max(1, pool.getParallelism());
+    final Deque<JsonEntriesTask> pending = new ArrayDeque<>(maxPending);
+    try {
+      List<JsonEntry> chunk = new ArrayList<>(JsonEntriesTask.CHUNK_SIZE);
+      while (parsed.hasNext()) {
+        ctx.checkCanceled();
+        final JsonEntry entry = toJsonEntry(ctx, parsed.next());
+        if (entry != null) {
+          entry.pdr = fastDetermineDetector(ctx, entry.getDetectionLine());
+          chunk.add(entry);
+          if (chunk.size() == JsonEntriesTask.CHUNK_SIZE) {
+            final JsonEntriesTask task = new JsonEntriesTask(ctx, chunk, 0, chunk.size());
+            pool.execute(task);
+            pending.add(task);
+            chunk = new ArrayList<>(JsonEntriesTask.CHUNK_SIZE);
+            if (pending.size() >= maxPending) {
+              mergeJsonEntries(ctx, pending.remove());
+            }
+          }
+        }
+      }
+      if (!chunk.isEmpty()) {
+        final JsonEntriesTask task = new JsonEntriesTask(ctx, chunk, 0, chunk.size());
+        pool.execute(task);
+        pending.add(task);
+      }
+      while (!pending.isEmpty()) {
+        mergeJsonEntries(ctx, pending.remove());
+      }
+    } finally {
+      for (JsonEntriesTask task : pending) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Waits for the specified task to complete and stores its results.
+   */
+  private void mergeJsonEntries(ParseContext ctx, JsonEntriesTask task) {
+    task.join();
+    for (JsonEntry entry : task.entries) {
+      mergeJsonEntry(ctx, entry);
+    }
+  }
+
+  /**
+   * Stores the {@link ICLanguageSettingEntry language settings entries} for an entry from a
+   * {@code compile_commands.json} file. The command line of the entry is parsed only if the entry was added or changed
+   * since the last parse and has not already been parsed.
+   *
+   * @param ctx
+   *          the state of the current parse
+   * @param entry
+   *          the entry with its source file resolved and its parser detected
+   */
+  private void mergeJsonEntry(ParseContext ctx, JsonEntry entry) {
+    if (entry.sourceFile == null) {
+      // not a file in the workspace
+      return;
+    }
+    final ParserDetection.ParserDetectionResult pdr = entry.pdr;
+    if (pdr != null) {
+      // found a matching command-line parser
+      final IToolCommandlineParser parser = pdr.getDetectorWithMethod().getDetector().getParser();
+      final String rcPath = entry.sourceFile.getProjectRelativePath().toString();
+      if (ctx.enabled) {
+        if (!ctx.isEntryUnchanged(rcPath, entry.hash)) {
+          if (entry.entries == null) {
+            entry.entries = parseCommandLine(ctx, parser, entry);
+          }
+          int count = 0;
+          if (entry.entries.size() > 0) {
+            // attach settings to sourceFile resource...
+            ctx.store.addSettingEntries(entry.sourceFile, parser.getLanguageId(), entry.entries);
+            count = entry.entries.size();
+          }
+          ctx.addEntryFingerprint(rcPath, new EntryFingerprint(entry.hash, parser.getLanguageId(), count));
+        }
+      }
+
+      // compilations with different flags that affect the built-ins need a detector each
+      final List<String> flags = CompilerBuiltinsDetector.getSignatureFlags(parser.getBuiltinDetectionType(),
+          entry.arguments != null ? entry.arguments : Arrays.asList(WS_PATTERN.split(entry.cmdLine.trim())));
+      CompilerBuiltinsDetector detector = new CompilerBuiltinsDetector(ctx.cfgDescription,
+          parser.getLanguageId(), parser.getBuiltinDetectionType(), pdr.getCommandLine().getCommand(), flags);
+
+      ctx.store.addBuiltinsDetector(detector, rcPath);
+    } else {
+      // no matching parser found
+      String message = "No parser for command '" + entry.cmdLine + "'. " + WORKBENCH_WILL_NOT_KNOW_ALL_MSG;
+      // aggregate by the command, many entries use the same unsupported tool
+      final String command = entry.arguments != null ? entry.arguments.get(0)
+          : ToolCommandlineParser.trimLeadingWS(entry.cmdLine).split("\\s", 2)[0];
+      ctx.markers.add("no-parser:" + command, message);
+    }
+  }
+
+  /**
+   * Computes the fingerprint of an entry from a {@code compile_commands.json} file (64-bit FNV-1a hash). Since a build
+   * tool may rewrite a response file without changing the command line (Ninja does so for the include directories of a
+   * target), the fingerprint includes the state of the response files referenced by the command line.
+   *
+   * @param directory
+   *          the working directory of the compiler
+   * @param cmdLine
+   *          the command line of the compiler, ignored if {@code arguments} is given
+   * @param arguments
+   *          the arguments of the compiler for the {@code arguments} form, or {@code null} for the {@code command} form
+   * @param responseFiles
+   *          the cache for the response files referenced by the command line
+   */
+  /* package */ static long fingerprint(String directory, String cmdLine, List<String> arguments,
+      ResponseFileCache responseFiles) {
+    // arguments may contain spaces, separate them by a character that cannot occur in an argument
+    final String line = arguments != null ? String.join("\0", arguments) : cmdLine;
+    long hash = 0xcbf29ce484222325L;
+    final String[] parts = { directory, line };
+    for (String part : parts) {
+      for (int i = 0; i < part.length(); i++) {
+        hash ^= part.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      // separator
+      hash ^= 0xffff;
+      hash *= 0x100000001b3L;
+    }
+    if (line.indexOf('@') != -1) {
+      hash ^= responseFiles.getStateHash(directory,
+          arguments != null ? arguments : Arrays.asList(WS_PATTERN.split(cmdLine.trim())));
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * Gets a key that describes the settings of this provider that affect the language settings entries detected from a
+   * {@code compile_commands.json} file.
+   *
+   * @param enabled
+   *          {@code true} if this provider is present in the project's list of settings providers, otherwise false
+   */
+  private String getParserSettingsKey(boolean enabled) {
+    return enabled + "|" + (isVersionPatternEnabled() ? getVersionPattern() : "");
   }
 
   /**
@@ -346,15 +821,22 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
    * @param initializingWorkbench
    *          {@code true} if the workbench is starting up. If {@code true}, this method will not trigger UI update to
    *          show newly detected include paths nor will it complain if a "compile_commands.json" file does not exist.
-   * @return the detectors to run or {@code null} if the json file did not change since the last invocation of this
-   *         method
+   * @param monitor
+   *          the progress monitor to check for cancellation or {@code null}
+   * @return the detectors to run, each with the project-relative paths of the source files compiled with its command
+   *         and flags, or {@code null} if the json file did not change since the last invocation of this method
    * @throws CoreException
+   * @throws OperationCanceledException
+   *           if the monitor was canceled
    */
-  /* package */ Iterable<CompilerBuiltinsDetector> determineBuiltinDetectors(ICConfigurationDescription cfgDescription,
-      boolean enabled, boolean initializingWorkbench) throws CoreException {
-    currentCfgDescription = Objects.requireNonNull(cfgDescription, "cfgDescription");
-    if (tryParseJson(enabled, initializingWorkbench))
-      return storage.getSettingsStoreForConfig(cfgDescription).getBuiltinsDetectors();
+  /* package */ Map<CompilerBuiltinsDetector, Set<String>> determineBuiltinDetectors(ICConfigurationDescription cfgDescription,
+      boolean enabled, boolean initializingWorkbench, IProgressMonitor monitor) throws CoreException {
+    Objects.requireNonNull(cfgDescription, "cfgDescription");
+    final TimestampedLanguageSettingsStorage store = storage.getSettingsStoreForConfig(cfgDescription);
+    synchronized (store) {
+      if (tryParseJson(cfgDescription, store, enabled, initializingWorkbench, monitor))
+        return store.getBuiltinsDetectors();
+    }
     return null;
   }
 
@@ -363,29 +845,24 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
    *
    * @param cfgDescription
    *          configuration description
-   * @return the detectors to run or {@code null} if {@link #determineBuiltinDetectors} has not been invoked prior
+   * @return the detectors to run, each with the project-relative paths of the source files compiled with its command
+   *         and flags, or {@code null} if {@link #determineBuiltinDetectors} has not been invoked prior
    */
-  /* package */ Iterable<CompilerBuiltinsDetector> getBuiltinDetectors(ICConfigurationDescription cfgDescription) {
-    return storage.getSettingsStoreForConfig(cfgDescription).getBuiltinsDetectors();
+  /* package */ Map<CompilerBuiltinsDetector, Set<String>> getBuiltinDetectors(ICConfigurationDescription cfgDescription) {
+    final TimestampedLanguageSettingsStorage store = storage.getSettingsStoreForConfig(cfgDescription);
+    synchronized (store) {
+      return store.getBuiltinsDetectors();
+    }
   }
 
-  private static void createMarker(IFile file, String message) throws CoreException {
-    IMarker marker;
-    try {
-      marker = file.createMarker(MARKER_ID);
-    } catch (CoreException ex) {
-      // resource is not (yet) known by the workbench
-      try {
-        file.refreshLocal(IResource.DEPTH_ZERO, new NullProgressMonitor());
-        marker = file.createMarker(MARKER_ID);
-      } catch (CoreException ex2) {
-        // resource is not known by the workbench, use project instead of file
-        marker = file.getProject().createMarker(MARKER_ID);
-      }
-    }
-    marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_INFO);
-    marker.setAttribute(IMarker.MESSAGE, message);
-    marker.setAttribute(IMarker.LOCATION, CompileCommandsJsonParser.class.getName());
+  /**
+   * Creates a collector for the problem markers of this provider.
+   *
+   * @param jsonFile
+   *          the file to create the markers on
+   */
+  private static MarkerCollector createMarkerCollector(IFile jsonFile) {
+    return new MarkerCollector(jsonFile, MARKER_ID, CompileCommandsJsonParser.class.getName());
   }
 
   /**
@@ -393,6 +870,8 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
    * Tries to be fast: That is, it tries the last known working detector first and will perform expensive detection
    * required under windows only if needed.
    *
+   * @param ctx
+   *          the state of the current parse, holds the last known working detector
    * @param line
    *          the command line to process
    *
@@ -400,75 +879,193 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
    *         Otherwise, if the tool name matches, a {@code ParserDetectionResult} holding the de-composed command-line
    *         is returned.
    */
-  private ParserDetection.ParserDetectionResult fastDetermineDetector(String line) {
+  private ParserDetection.ParserDetectionResult fastDetermineDetector(ParseContext ctx, String line) {
+    final String versionPattern = isVersionPatternEnabled() ? getVersionPattern() : null;
     // try last known matching detector first...
+    final ParserDetection.DetectorWithMethod lastDetector = ctx.lastDetector;
     if (lastDetector != null) {
-      MarchResult cmdline = null;
-      final ParserDetection.ParserDetector detector = lastDetector.getDetector();
-      switch (lastDetector.getHow()) {
-      case BASENAME:
-        cmdline = detector.basenameMatches(line);
-        break;
-      case WITH_EXTENSION:
-        cmdline = ((ParserDetection.ParserDetectorExt) detector).basenameWithExtensionMatches(line);
-        break;
-      case WITH_VERSION:
-        if (isVersionPatternEnabled()) {
-          cmdline = detector.basenameWithVersionMatches(line, getVersionPattern());
-        }
-        break;
-      case WITH_VERSION_EXTENSION:
-        if (isVersionPatternEnabled()) {
-          cmdline = ((ParserDetection.ParserDetectorExt) detector).basenameWithVersionAndExtensionMatches(line,
-              getVersionPattern());
-        }
-        break;
-      default:
-        break;
-      }
+      final MarchResult cmdline = lastDetector.matches(line, versionPattern);
       if (cmdline != null) {
         return new ParserDetection.ParserDetectionResult(lastDetector, cmdline);
       } else {
-        lastDetector = null; // invalidate last working detector
+        ctx.lastDetector = null; // invalidate last working detector
       }
     }
 
-    // no working detector found, determine a new one...
-    String versionPattern = isVersionPatternEnabled() ? getVersionPattern() : null;
-    ParserDetection.ParserDetectionResult result = ParserDetection.determineDetector(line, versionPattern,
+    // no working detector found, look up the detector of the executable or determine a new one...
+    ParserDetection.ParserDetectionResult result = ParserDetectionCache.determineDetector(line, versionPattern,
         File.separatorChar == '\\');
     if (result != null) {
       // cache last working detector
-      lastDetector = result.getDetectorWithMethod();
+      ctx.lastDetector = result.getDetectorWithMethod();
     }
     return result;
   }
 
   /**
-   * Processes the command-line of an entry from a {@code compile_commands.json} file by trying the specified detector
-   * and stores a {@link ICLanguageSettingEntry} for the file found in the specified map.
+   * Processes the command-line of an entry from a {@code compile_commands.json} file by trying the specified detector.
+   * Results are memoized for the current parse, so that the command-line of source files that are compiled with the
+   * same flags is parsed only once. May be invoked by multiple threads concurrently.
    *
-   * @param storage
-   *          where to store language settings
+   * @param ctx
+   *          the state of the current parse, holds the memoized results
    * @param cmdlineParser
    *          the tool detector and its tool option parsers
-   * @param sourceFile
-   *          the source file resource corresponding to the source file being processed by the tool
    * @param cwd
    *          the current working directory of the compiler at its invocation
    * @param line
    *          the command line to process
+   * @param sourceFile
+   *          the name of the source file to compile as given in the json file
+   * @return the language settings entries for the source file, never {@code null}. The returned list is unmodifiable
+   *         and may be shared with other source files.
+   */
+  private static List<ICLanguageSettingEntry> parseCommandLine(ParseContext ctx, IToolCommandlineParser cmdlineParser,
+      IPath cwd, String line, String sourceFile) {
+    final String cmdLine = ToolCommandlineParser.trimLeadingWS(line);
+    final String key = getCommandLineKey(cwd, cmdLine, sourceFile);
+    return parseCommandLine(ctx, cmdlineParser, key,
+        () -> parseCommandLine(cmdlineParser, cwd, cmdLine, ctx.responseFiles));
+  }
+
+  /**
+   * Processes the command-line of an entry from a {@code compile_commands.json} file by trying the specified detector.
+   * An entry in the {@code arguments} form is parsed argument by argument, without tokenizing it again.
+   *
+   * @param ctx
+   *          the state of the current parse, holds the memoized results
+   * @param cmdlineParser
+   *          the tool detector and its tool option parsers
+   * @param entry
+   *          the entry whose command line is parsed
+   * @return the language settings entries for the source file, never {@code null}. The returned list is unmodifiable
+   *         and may be shared with other source files.
+   */
+  private static List<ICLanguageSettingEntry> parseCommandLine(ParseContext ctx, IToolCommandlineParser cmdlineParser,
+      JsonEntry entry) {
+    if (entry.arguments == null) {
+      return parseCommandLine(ctx, cmdlineParser, entry.getCwd(), entry.pdr.getReducedCommandLine(), entry.file);
+    }
+    final IPath cwd = entry.getCwd();
+    // the first argument is the tool
+    final List<String> args = entry.arguments.subList(1, entry.arguments.size());
+    final String key = getCommandLineKey(cwd, args, entry.file);
+    return parseCommandLine(ctx, cmdlineParser, key, () -> {
+      final List<ICLanguageSettingEntry> entries = cmdlineParser.processArgs(cwd, args, ctx.responseFiles);
+      return entries == null || entries.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(entries);
+    });
+  }
+
+  /**
+   * Gets the memoized result of parsing a command-line or parses the command-line and memoizes the result.
+   *
+   * @param key
+   *          the memoization key of the command-line or {@code null} if the result must not be memoized
+   * @param parse
+   *          parses the command-line
+   */
+  private static List<ICLanguageSettingEntry> parseCommandLine(ParseContext ctx, IToolCommandlineParser cmdlineParser,
+      String key, Supplier<List<ICLanguageSettingEntry>> parse) {
+    if (key == null) {
+      return parse.get();
+    }
+    final Map<String, List<ICLanguageSettingEntry>> parsed = ctx.parsedCommandLines.computeIfAbsent(cmdlineParser,
+        k -> new ConcurrentHashMap<>());
+    List<ICLanguageSettingEntry> entries = parsed.get(key);
+    if (entries == null) {
+      entries = parse.get();
+      final List<ICLanguageSettingEntry> other = parsed.putIfAbsent(key, entries);
+      if (other != null) {
+        // parsed concurrently by another thread, share its result
+        entries = other;
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Processes the command-line of an entry from a {@code compile_commands.json} file by trying the specified detector.
+   *
+   * @param cmdlineParser
+   *          the tool detector and its tool option parsers
+   * @param cwd
+   *          the current working directory of the compiler at its invocation
+   * @param line
+   *          the command line to process, without leading whitespace
+   * @param responseFiles
+   *          the cache for the response files referenced by the command line
+   * @return the language settings entries for the source file, never {@code null}. The returned list is unmodifiable.
+   */
+  private static List<ICLanguageSettingEntry> parseCommandLine(IToolCommandlineParser cmdlineParser, IPath cwd,
+      String line, ResponseFileCache responseFiles) {
+    final List<ICLanguageSettingEntry> entries = cmdlineParser.processArgs(cwd, line, responseFiles);
+    return entries == null || entries.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Gets the key to memoize the result of parsing the specified command-line. Arguments that differ for each source
+   * file of a target (the source file, the object file and the dependency file names) are removed, so that the command
+   * lines of all source files that are compiled with the same flags map to the same key.
+   *
+   * @param cwd
+   *          the current working directory of the compiler at its invocation
+   * @param line
+   *          the command line arguments
+   * @param sourceFile
+   *          the name of the source file to compile
+   * @return the key or {@code null} if the command line contains quoted or escaped arguments, which would require the
+   *         command line to be tokenized the way the shell does
+   */
+  /* package */ static String getCommandLineKey(IPath cwd, String line, String sourceFile) {
+    if (line.indexOf('"') != -1 || line.indexOf('\'') != -1 || line.contains("\\ ")) {
+      return null;
+    }
+    return getCommandLineKey(cwd, Arrays.asList(line.split("\\s+")), sourceFile);
+  }
+
+  /**
+   * Gets the key to memoize the result of parsing the specified command-line arguments.
+   *
+   * @param cwd
+   *          the current working directory of the compiler at its invocation
+   * @param args
+   *          the command line arguments, one element per argument
+   * @param sourceFile
+   *          the name of the source file to compile
+   * @return the key, never {@code null}
+   * @see #getCommandLineKey(IPath, String, String)
    */
-  private void processCommandLine(TimestampedLanguageSettingsStorage storage, IToolCommandlineParser cmdlineParser,
-      IFile sourceFile, IPath cwd, String line) {
-    line = ToolCommandlineParser.trimLeadingWS(line);
-    final List<ICLanguageSettingEntry> entries = cmdlineParser.processArgs(cwd, line);
-    final String languageId = cmdlineParser.getLanguageId();
-    if (entries != null && entries.size() > 0) {
-      handleIncludePathEntries(storage, entries, languageId);
-      // attach settings to sourceFile resource...
-      storage.addSettingEntries(sourceFile, languageId, entries);
+  /* package */ static String getCommandLineKey(IPath cwd, List<String> args, String sourceFile) {
+    final String sourceName = lastSegment(sourceFile);
+    final StringBuilder key = new StringBuilder(cwd.toString());
+    for (int i = 0; i < args.size(); i++) {
+      final String arg = args.get(i);
+      switch (arg) {
+      case "-o":
+      case "-MF":
+      case "-MT":
+      case "-MQ":
+        // skip option and its file name argument
+        i++;
+        continue;
+      case "-c":
+        continue;
+      default:
+        if (arg.startsWith("/Fo") || arg.startsWith("-Fo") || arg.startsWith("-MF") || !arg.startsWith("-")
+            && lastSegment(arg).equals(sourceName)) {
+          continue;
+        }
+      }
+      key.append('\0').append(arg);
     }
+    return key.toString();
+  }
+
+  /**
+   * Gets the last segment of the specified file name, regardless of the separator used.
+   */
+  private static String lastSegment(String fileName) {
+    return fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1);
   }
 
   /**
@@ -477,27 +1074,27 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
    * in a docker container.
    *
    * @param storage
-   * @param entries
-   * @param languageId
    */
-  private void handleIncludePathEntries(TimestampedLanguageSettingsStorage storage,
-      final List<ICLanguageSettingEntry> entries, final String languageId) {
+  private void handleIncludePathEntries(TimestampedLanguageSettingsStorage storage) {
     /*
      * compile_commands.json holds entries per-file only and does not contain per-project or per-folder entries. For
      * include dirs, ALSO add these entries to the project resource to make them show up in the UI in the includes
-     * folder...
+     * folder. Since unchanged files are not re-parsed, these are re-built from the entries of all files...
      */
     Predicate<ICLanguageSettingEntry> isInclDir = e -> e.getKind() == ICSettingEntry.INCLUDE_PATH;
-    List<ICLanguageSettingEntry> newEntries = entries.stream().filter(isInclDir).collect(Collectors.toList());
-
-    List<ICLanguageSettingEntry> oldEntries = storage.getSettingEntries(null, languageId);
-    // add new items only, maintain list order
-    if (oldEntries != null) {
-      // filter duplicates by using a Set...
-      Set<ICLanguageSettingEntry> oldSet = new HashSet<>(oldEntries);
-      newEntries = newEntries.stream().filter(e -> !oldSet.contains(e)).collect(Collectors.toList());
+    final List<String> languageIds = storage.getLanguages();
+    for (String languageId : languageIds) {
+      // filter duplicates by using a Set, maintain list order
+      Set<ICLanguageSettingEntry> inclDirs = new LinkedHashSet<>();
+      for (String rcPath : storage.fingerprints.keySet()) {
+        List<ICLanguageSettingEntry> entries = storage.getSettingEntries(rcPath, languageId);
+        if (entries != null) {
+          entries.stream().filter(isInclDir).forEachOrdered(inclDirs::add);
+        }
+      }
+      // also tells the CommandLauncherManager (since CDT 9.4) so it can translate paths from docker container
+      storage.setSettingEntries((String) null, languageId, inclDirs.isEmpty() ? null : new ArrayList<>(inclDirs));
     }
-    storage.addSettingEntries(null, languageId, newEntries);
   }
 
   /*
@@ -518,7 +1115,7 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
   @Override
   public void startup(ICConfigurationDescription cfgDescription, IWorkingDirectoryTracker cwdTracker)
       throws CoreException {
-    currentCfgDescription = cfgDescription;
+    currentCfgDescription.set(cfgDescription);
   }
 
   /**
@@ -536,31 +1133,40 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
    */
   @Override
   public void shutdown() {
-    try {
-      tryParseJson(true, false);
-    } catch (CoreException ex) {
-      log.log(new Status(IStatus.ERROR, CMakePlugin.PLUGIN_ID, "shutdown()", ex));
+    final ICConfigurationDescription cfgDescription = currentCfgDescription.get();
+    if (cfgDescription != null) {
+      // parse in the background, do not keep the build waiting
+      ConfigurationJob.schedule(PROVIDER_ID,
+          "Parsing compile_commands.json of " + cfgDescription.getProjectDescription().getProject().getName(),
+          cfgDescription, (cfg, monitor) -> tryParseJson(cfg, true, false, monitor));
     }
     // release resources for garbage collector
-    currentCfgDescription = null;
+    currentCfgDescription.remove();
   }
 
   @Override
   public CompileCommandsJsonParser clone() throws CloneNotSupportedException {
-    return (CompileCommandsJsonParser) super.clone();
+    final CompileCommandsJsonParser clone = (CompileCommandsJsonParser) super.clone();
+    clone.currentCfgDescription = new ThreadLocal<>();
+    return clone;
   }
 
   @Override
   public CompileCommandsJsonParser cloneShallow() throws CloneNotSupportedException {
-    return (CompileCommandsJsonParser) super.cloneShallow();
+    final CompileCommandsJsonParser clone = (CompileCommandsJsonParser) super.cloneShallow();
+    clone.currentCfgDescription = new ThreadLocal<>();
+    return clone;
   }
 
   @Override
   public LanguageSettingsStorage copyStorage() {
-    if (currentCfgDescription == null)
+    final ICConfigurationDescription cfgDescription = currentCfgDescription.get();
+    if (cfgDescription == null)
       return null;
-    TimestampedLanguageSettingsStorage st = storage.getSettingsStoreForConfig(currentCfgDescription);
-    return st.clone();
+    TimestampedLanguageSettingsStorage st = storage.getSettingsStoreForConfig(cfgDescription);
+    synchronized (st) {
+      return st.clone();
+    }
   }
 
   /**
@@ -571,9 +1177,8 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
   public void registerListener(ICConfigurationDescription cfgDescription) {
     if (cfgDescription != null) {
       // per-project or null if the user just added this provider on the provider tab
-      currentCfgDescription = cfgDescription;
       try {
-        tryParseJson(true, true);
+        tryParseJson(cfgDescription, true, true, null);
       } catch (CoreException ex) {
         log.log(new Status(IStatus.ERROR, CMakePlugin.PLUGIN_ID, "registerListener()", ex));
       }
@@ -581,6 +1186,7 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
       // per workspace (to populate on startup)
       IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
       IProject[] projects = workspaceRoot.getProjects();
+      deleteStaleSnapshots(projects);
       CCorePlugin ccp = CCorePlugin.getDefault();
       // parse JSOn file for any opened project that has a ScannerConfigNature...
       for (IProject project : projects) {
@@ -594,8 +1200,7 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
                     .getLanguageSettingProviders();
                 for (ILanguageSettingsProvider lsp : lsps) {
                   if (CompileCommandsJsonParser.PROVIDER_ID.equals(lsp.getId())) {
-                    currentCfgDescription = activeConfiguration;
-                    tryParseJson(true, true);
+                    tryParseJson(activeConfiguration, true, true, null);
                     break;
                   }
                 }
@@ -607,8 +1212,6 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
         }
       }
     }
-    // release resources for garbage collector
-    currentCfgDescription = null;
   }
 
   /*-
@@ -621,11 +1224,152 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
   ////////////////////////////////////////////////////////////////////
   // inner classes
   ////////////////////////////////////////////////////////////////////
-  private static class TimestampedLanguageSettingsStorage extends LanguageSettingsStorage {
+  /* package */ static class TimestampedLanguageSettingsStorage extends LanguageSettingsStorage {
     /** cached file modification time-stamp of last parse */
     long lastModified = 0;
+    /** cached file size of last parse */
+    long jsonSize = -1;
+    /** whether restoring the storage from the snapshot of the last session was tried */
+    boolean snapshotLoaded;
+
+    /** the parser settings the entries were detected with, see {@link CompileCommandsJsonParser#getParserSettingsKey} */
+    String settingsKey;
+
+    /**
+     * The fingerprints of the compile_commands.json entries each source file's settings entries stem from, in order of
+     * appearance in the json file. Key is the project-relative path of the source file.
+     */
+    private Map<String, List<EntryFingerprint>> fingerprints = new LinkedHashMap<>();
+
+    /**
+     * The detectors for compiler built-ins. Value is the set of project-relative paths of the source files compiled with
+     * the command and flags of the detector.
+     */
+    private Map<CompilerBuiltinsDetector, Set<String>> builtinDetectors;
+
+    /** the problem markers created by the last parse or {@code null} if unknown */
+    private List<IMarker> markers;
+
+    /**
+     * Marks a source file in {@link #fStorage} whose settings entries are the same as those of the nearest folder in
+     * {@link #folderEntries}.
+     */
+    private static final List<ICLanguageSettingEntry> INHERITED = Collections.unmodifiableList(new ArrayList<>(0));
+
+    /**
+     * The settings entries shared by the source files in a folder, see {@link #compact()}. Key of the outer map is the
+     * language id, key of the inner map is the project-relative path of the folder (the empty string for the project
+     * itself). Guarded by the lock of {@link #fStorage}.
+     */
+    private Map<String, Map<String, List<ICLanguageSettingEntry>>> folderEntries = new HashMap<>();
+
+    /**
+     * Gets the settings entries of the specified source file, resolving inherited entries through the folder hierarchy.
+     */
+    @Override
+    public List<ICLanguageSettingEntry> getSettingEntries(String rcPath, String languageId) {
+      synchronized (fStorage) {
+        final Map<String, List<ICLanguageSettingEntry>> langMap = fStorage.get(languageId);
+        final List<ICLanguageSettingEntry> entries = langMap == null ? null : langMap.get(rcPath);
+        if (entries != INHERITED)
+          return entries;
+        return getFolderEntries(folderEntries.get(languageId), getParentFolder(rcPath));
+      }
+    }
 
-    private Set<CompilerBuiltinsDetector> builtinDetectors;
+    /**
+     * Gets the entries of the specified folder or of its nearest ancestor folder that has entries.
+     *
+     * @param folders
+     *          the entries per folder of a language or {@code null}
+     * @return the entries or {@code null} if neither the folder nor its ancestors have entries
+     */
+    private static List<ICLanguageSettingEntry> getFolderEntries(Map<String, List<ICLanguageSettingEntry>> folders,
+        String folder) {
+      if (folders == null)
+        return null;
+      while (true) {
+        final List<ICLanguageSettingEntry> entries = folders.get(folder);
+        if (entries != null || folder.isEmpty())
+          return entries;
+        folder = getParentFolder(folder);
+      }
+    }
+
+    /**
+     * Gets the project-relative path of the folder that contains the specified file or folder.
+     */
+    private static String getParentFolder(String rcPath) {
+      final int idx = rcPath.lastIndexOf('/');
+      return idx == -1 ? "" : rcPath.substring(0, idx);
+    }
+
+    /**
+     * Stores the settings entries that are shared by the source files of a folder once on the folder. For each folder
+     * (parents first), the entry list that most of the folder's source files have is stored on the folder, unless the
+     * folder inherits the same list from an ancestor. The source files having that list just reference it, only
+     * source files having a different list keep their own.
+     */
+    void compact() {
+      synchronized (fStorage) {
+        final Map<String, Map<String, List<ICLanguageSettingEntry>>> compacted = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<ICLanguageSettingEntry>>> langEntry : fStorage.entrySet()) {
+          final Map<String, List<ICLanguageSettingEntry>> langMap = langEntry.getValue();
+          final Map<String, List<ICLanguageSettingEntry>> oldFolders = folderEntries.get(langEntry.getKey());
+          // group source files by folder; sorted, so that parent folders come before their children
+          final Map<String, List<String>> filesByFolder = new TreeMap<>();
+          for (Iterator<Map.Entry<String, List<ICLanguageSettingEntry>>> iter = langMap.entrySet().iterator(); iter
+              .hasNext();) {
+            final Map.Entry<String, List<ICLanguageSettingEntry>> rcEntry = iter.next();
+            final String rcPath = rcEntry.getKey();
+            if (rcPath != null) {
+              if (rcEntry.getValue() == INHERITED) {
+                // resolve with the folder entries of the last compaction
+                final List<ICLanguageSettingEntry> entries = getFolderEntries(oldFolders, getParentFolder(rcPath));
+                if (entries == null) {
+                  iter.remove();
+                  continue;
+                }
+                rcEntry.setValue(entries);
+              }
+              filesByFolder.computeIfAbsent(getParentFolder(rcPath), k -> new ArrayList<>()).add(rcPath);
+            }
+          }
+          final Map<String, List<ICLanguageSettingEntry>> folders = new HashMap<>();
+          for (Map.Entry<String, List<String>> folderEntry : filesByFolder.entrySet()) {
+            final String folder = folderEntry.getKey();
+            final List<ICLanguageSettingEntry> inherited = folder.isEmpty() ? null
+                : getFolderEntries(folders, getParentFolder(folder));
+            // determine the most common entry list of the folder's files
+            final Map<List<ICLanguageSettingEntry>, Integer> counts = new HashMap<>();
+            List<ICLanguageSettingEntry> shared = null;
+            int sharedCount = 1;
+            for (String rcPath : folderEntry.getValue()) {
+              final List<ICLanguageSettingEntry> entries = langMap.get(rcPath);
+              final int count = counts.merge(entries, 1, Integer::sum);
+              if (count > sharedCount) {
+                shared = entries;
+                sharedCount = count;
+              }
+            }
+            if (shared != null && !shared.equals(inherited)) {
+              folders.put(folder, shared);
+            } else {
+              shared = inherited;
+            }
+            if (shared != null) {
+              for (String rcPath : folderEntry.getValue()) {
+                if (shared.equals(langMap.get(rcPath)))
+                  langMap.put(rcPath, INHERITED);
+              }
+            }
+          }
+          if (!folders.isEmpty())
+            compacted.put(langEntry.getKey(), folders);
+        }
+        folderEntries = compacted;
+      }
+    }
 
     /**
      * Adds the specified language settings entries for this storages.
@@ -649,7 +1393,7 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
       if (rc != null && rc.getType() == IResource.FILE) {
         rcPath = rc.getProjectRelativePath().toString();
       }
-      List<ICLanguageSettingEntry> sentries = super.getSettingEntries(rcPath, languageId);
+      List<ICLanguageSettingEntry> sentries = getSettingEntries(rcPath, languageId);
       if (sentries != null) {
         // make list mutable
         List<ICLanguageSettingEntry> tmp = new ArrayList<>(sentries);
@@ -660,21 +1404,265 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
       super.setSettingEntries(rcPath, languageId, entries);
     }
 
-    private void addBuiltinsDetector(CompilerBuiltinsDetector detector) {
+    /**
+     * Gets the settings entries of the specified source file.
+     *
+     * @param rcPath
+     *          project-relative path of the source file
+     * @return the settings entries by language id, never {@code null}
+     */
+    private Map<String, List<ICLanguageSettingEntry>> getFileEntries(String rcPath) {
+      final Map<String, List<ICLanguageSettingEntry>> entries = new HashMap<>(2, 1.0f);
+      synchronized (fStorage) {
+        for (String languageId : fStorage.keySet()) {
+          final List<ICLanguageSettingEntry> langEntries = getSettingEntries(rcPath, languageId);
+          if (langEntries != null)
+            entries.put(languageId, langEntries);
+        }
+      }
+      return entries;
+    }
+
+    /**
+     * Removes the settings entries of the specified source file that do not stem from the specified leading
+     * compile_commands.json entries.
+     *
+     * @param rcPath
+     *          project-relative path of the source file
+     * @param retained
+     *          the fingerprints of the entries to retain settings for
+     */
+    private void retainSettingEntries(String rcPath, List<EntryFingerprint> retained) {
+      Map<String, Integer> counts = new HashMap<>(2, 1.0f);
+      for (EntryFingerprint fp : retained) {
+        if (fp.count > 0)
+          counts.merge(fp.languageId, fp.count, Integer::sum);
+      }
+      synchronized (fStorage) {
+        for (String languageId : getLanguages()) {
+          List<ICLanguageSettingEntry> entries = getSettingEntries(rcPath, languageId);
+          if (entries != null) {
+            int keep = counts.getOrDefault(languageId, 0);
+            if (keep == 0) {
+              super.setSettingEntries(rcPath, languageId, null);
+            } else if (keep < entries.size()) {
+              super.setSettingEntries(rcPath, languageId, new ArrayList<>(entries.subList(0, keep)));
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Removes the settings entries of all source files, except for the specified files. Project-level entries are
+     * retained.
+     *
+     * @param rcPaths
+     *          project-relative paths of the source files to retain settings for
+     */
+    private void retainFiles(Set<String> rcPaths) {
+      synchronized (fStorage) {
+        for (Map<String, List<ICLanguageSettingEntry>> langMap : fStorage.values()) {
+          langMap.keySet().removeIf(rcPath -> rcPath != null && !rcPaths.contains(rcPath));
+        }
+        fStorage.values().removeIf(Map::isEmpty);
+      }
+    }
+
+    /**
+     * Adds a detector for compiler built-ins.
+     *
+     * @param rcPath
+     *          project-relative path of the source file compiled with the command and flags of the detector
+     */
+    void addBuiltinsDetector(CompilerBuiltinsDetector detector, String rcPath) {
       if (builtinDetectors == null)
-        builtinDetectors = new HashSet<>(3, 1.0f);
-      builtinDetectors.add(detector);
+        builtinDetectors = new HashMap<>(3, 1.0f);
+      builtinDetectors.computeIfAbsent(detector, k -> new HashSet<>()).add(rcPath);
+    }
+
+    /**
+     * Gets a snapshot of the detectors for compiler built-in include paths and symbols.
+     */
+    Map<CompilerBuiltinsDetector, Set<String>> getBuiltinsDetectors() {
+      return builtinDetectors == null ? Collections.emptyMap()
+          : Collections.unmodifiableMap(new HashMap<>(builtinDetectors));
+    }
+
+    /**
+     * Writes the settings entries, the fingerprints and the built-in detectors of this storage.
+     */
+    void writeEntries(DataOutputStream out) throws IOException {
+      synchronized (fStorage) {
+        // settings entries are shared by many files, write each distinct entry once
+        final Map<ICLanguageSettingEntry, Integer> entryIds = new HashMap<>();
+        final List<ICLanguageSettingEntry> distinct = new ArrayList<>();
+        for (Map<String, Map<String, List<ICLanguageSettingEntry>>> map : Arrays.asList(fStorage, folderEntries)) {
+          for (Map<String, List<ICLanguageSettingEntry>> langMap : map.values()) {
+            for (List<ICLanguageSettingEntry> entries : langMap.values()) {
+              for (ICLanguageSettingEntry entry : entries) {
+                if (entryIds.putIfAbsent(entry, distinct.size()) == null)
+                  distinct.add(entry);
+              }
+            }
+          }
+        }
+        out.writeInt(distinct.size());
+        for (ICLanguageSettingEntry entry : distinct) {
+          out.writeInt(entry.getKind());
+          out.writeInt(entry.getFlags());
+          DataStreamUtil.writeString(out, entry.getName());
+          DataStreamUtil.writeNullableString(out, entry.getKind() == ICSettingEntry.MACRO ? entry.getValue() : null);
+        }
+        writeEntryLists(out, fStorage, entryIds);
+        writeEntryLists(out, folderEntries, entryIds);
+      }
+      out.writeInt(fingerprints.size());
+      for (Map.Entry<String, List<EntryFingerprint>> fpEntry : fingerprints.entrySet()) {
+        DataStreamUtil.writeString(out, fpEntry.getKey());
+        out.writeInt(fpEntry.getValue().size());
+        for (EntryFingerprint fp : fpEntry.getValue()) {
+          out.writeLong(fp.hash);
+          DataStreamUtil.writeNullableString(out, fp.languageId);
+          out.writeInt(fp.count);
+        }
+      }
+      final Map<CompilerBuiltinsDetector, Set<String>> detectors = builtinDetectors == null ? Collections.emptyMap()
+          : builtinDetectors;
+      out.writeInt(detectors.size());
+      for (Map.Entry<CompilerBuiltinsDetector, Set<String>> dEntry : detectors.entrySet()) {
+        final CompilerBuiltinsDetector detector = dEntry.getKey();
+        DataStreamUtil.writeString(out, detector.getLanguageId());
+        DataStreamUtil.writeString(out, detector.getBuiltinDetectionType().name());
+        DataStreamUtil.writeString(out, detector.getCommand());
+        out.writeInt(detector.getFlags().size());
+        for (String flag : detector.getFlags()) {
+          DataStreamUtil.writeString(out, flag);
+        }
+        out.writeInt(dEntry.getValue().size());
+        for (String rcPath : dEntry.getValue()) {
+          DataStreamUtil.writeString(out, rcPath);
+        }
+      }
+    }
+
+    /**
+     * Writes the entry lists per language and resource path of the specified map as indices into the distinct entries.
+     * An {@link #INHERITED} list is written with a length of -1.
+     */
+    private static void writeEntryLists(DataOutputStream out, Map<String, Map<String, List<ICLanguageSettingEntry>>> map,
+        Map<ICLanguageSettingEntry, Integer> entryIds) throws IOException {
+      out.writeInt(map.size());
+      for (Map.Entry<String, Map<String, List<ICLanguageSettingEntry>>> langEntry : map.entrySet()) {
+        DataStreamUtil.writeString(out, langEntry.getKey());
+        out.writeInt(langEntry.getValue().size());
+        for (Map.Entry<String, List<ICLanguageSettingEntry>> rcEntry : langEntry.getValue().entrySet()) {
+          DataStreamUtil.writeNullableString(out, rcEntry.getKey());
+          if (rcEntry.getValue() == INHERITED) {
+            out.writeInt(-1);
+          } else {
+            out.writeInt(rcEntry.getValue().size());
+            for (ICLanguageSettingEntry entry : rcEntry.getValue()) {
+              out.writeInt(entryIds.get(entry));
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Reads the settings entries, the fingerprints and the built-in detectors written by {@link #writeEntries} into
+     * this storage.
+     *
+     * @param cfgDescription
+     *          the configuration the built-in detectors run for
+     */
+    void readEntries(DataInputStream in, ICConfigurationDescription cfgDescription) throws IOException {
+      final ICLanguageSettingEntry[] distinct = new ICLanguageSettingEntry[in.readInt()];
+      for (int i = 0; i < distinct.length; i++) {
+        final int kind = in.readInt();
+        final int flags = in.readInt();
+        final String name = DataStreamUtil.readString(in);
+        final String value = DataStreamUtil.readNullableString(in);
+        distinct[i] = (ICLanguageSettingEntry) CDataUtil.createEntry(kind, name, value, null, flags);
+      }
+      synchronized (fStorage) {
+        for (int nLangs = in.readInt(); nLangs > 0; nLangs--) {
+          final String languageId = DataStreamUtil.readString(in);
+          for (int nFiles = in.readInt(); nFiles > 0; nFiles--) {
+            final String rcPath = DataStreamUtil.readNullableString(in);
+            final List<ICLanguageSettingEntry> entries = readEntryList(in, distinct);
+            if (entries == INHERITED) {
+              fStorage.computeIfAbsent(languageId, k -> new HashMap<>()).put(rcPath, INHERITED);
+            } else {
+              super.setSettingEntries(rcPath, languageId, entries);
+            }
+          }
+        }
+        for (int nLangs = in.readInt(); nLangs > 0; nLangs--) {
+          final String languageId = DataStreamUtil.readString(in);
+          final Map<String, List<ICLanguageSettingEntry>> folders = new HashMap<>();
+          for (int nFolders = in.readInt(); nFolders > 0; nFolders--) {
+            final String folder = DataStreamUtil.readNullableString(in);
+            folders.put(folder, Collections.unmodifiableList(readEntryList(in, distinct)));
+          }
+          folderEntries.put(languageId, folders);
+        }
+      }
+      for (int nFiles = in.readInt(); nFiles > 0; nFiles--) {
+        final String rcPath = DataStreamUtil.readString(in);
+        final List<EntryFingerprint> fps = new ArrayList<>();
+        for (int n = in.readInt(); n > 0; n--) {
+          final long hash = in.readLong();
+          final String languageId = DataStreamUtil.readNullableString(in);
+          fps.add(new EntryFingerprint(hash, languageId, in.readInt()));
+        }
+        fingerprints.put(rcPath, fps);
+      }
+      for (int n = in.readInt(); n > 0; n--) {
+        final String languageId = DataStreamUtil.readString(in);
+        final BuiltinDetectionType type = BuiltinDetectionType.valueOf(DataStreamUtil.readString(in));
+        final String command = DataStreamUtil.readString(in);
+        final List<String> flags = new ArrayList<>();
+        for (int nFlags = in.readInt(); nFlags > 0; nFlags--) {
+          flags.add(DataStreamUtil.readString(in));
+        }
+        final CompilerBuiltinsDetector detector = new CompilerBuiltinsDetector(cfgDescription, languageId, type,
+            command, flags);
+        for (int nFiles = in.readInt(); nFiles > 0; nFiles--) {
+          addBuiltinsDetector(detector, DataStreamUtil.readString(in));
+        }
+      }
     }
 
-    private Iterable<CompilerBuiltinsDetector> getBuiltinsDetectors() {
-      return builtinDetectors == null ? builtinDetectors = Collections.emptySet()
-          : Collections.unmodifiableCollection(builtinDetectors);
+    /**
+     * Reads an entry list written by {@link #writeEntryLists}.
+     */
+    private static List<ICLanguageSettingEntry> readEntryList(DataInputStream in, ICLanguageSettingEntry[] distinct)
+        throws IOException {
+      int n = in.readInt();
+      if (n == -1)
+        return INHERITED;
+      final List<ICLanguageSettingEntry> entries = new ArrayList<>(n);
+      for (; n > 0; n--) {
+        entries.add(distinct[in.readInt()]);
+      }
+      return entries;
     }
 
     public TimestampedLanguageSettingsStorage clone() {
       TimestampedLanguageSettingsStorage cloned = new TimestampedLanguageSettingsStorage();
+      synchronized (fStorage) {
+        // share the lists, these are replaced on modification
+        for (Map.Entry<String, Map<String, List<ICLanguageSettingEntry>>> langEntry : fStorage.entrySet()) {
+          cloned.fStorage.put(langEntry.getKey(), new HashMap<>(langEntry.getValue()));
+        }
+        cloned.folderEntries = copyFolderEntries();
+      }
       cloned.lastModified = this.lastModified;
-      cloned.fStorage.putAll(super.fStorage);
+      cloned.jsonSize = this.jsonSize;
+      cloned.settingsKey = this.settingsKey;
+      cloned.fingerprints.putAll(this.fingerprints);
       return cloned;
     }
 
@@ -682,18 +1670,46 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
     public void clear() {
       synchronized (fStorage) {
         super.clear();
+        folderEntries.clear();
         lastModified = 0;
+        jsonSize = -1;
+        fingerprints.clear();
       }
     }
 
+    /**
+     * Gets a copy of {@link #folderEntries}, taken under the lock of {@link #fStorage}. The lists are shared, these are
+     * replaced on modification.
+     */
+    Map<String, Map<String, List<ICLanguageSettingEntry>>> copyFolderEntries() {
+      synchronized (fStorage) {
+        final Map<String, Map<String, List<ICLanguageSettingEntry>>> copy = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<ICLanguageSettingEntry>>> langEntry : folderEntries.entrySet()) {
+          copy.put(langEntry.getKey(), new HashMap<>(langEntry.getValue()));
+        }
+        return copy;
+      }
+    }
+
+    /**
+     * Includes the {@link #folderEntries}, since the source files marked {@link #INHERITED} in {@link #fStorage} get
+     * their entries from there.
+     */
     @Override
     public int hashCode() {
       final int prime = 31;
       int result = super.hashCode();
       result = prime * result + (int) (lastModified ^ (lastModified >>> 32));
+      synchronized (fStorage) {
+        result = prime * result + folderEntries.hashCode();
+      }
       return result;
     }
 
+    /**
+     * Includes the {@link #folderEntries}, since the source files marked {@link #INHERITED} in {@link #fStorage} get
+     * their entries from there.
+     */
     @Override
     public boolean equals(Object obj) {
       if (this == obj)
@@ -705,11 +1721,291 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
       TimestampedLanguageSettingsStorage other = (TimestampedLanguageSettingsStorage) obj;
       if (lastModified != other.lastModified)
         return false;
-      return true;
+      // copy one side, never hold both locks at once
+      return other.copyFolderEntries().equals(copyFolderEntries());
     }
 
   } // TimestampedLanguageSettingsStorage
 
+  /**
+   * The fingerprint of an entry from a {@code compile_commands.json} file and the number of language settings entries
+   * it contributed to its source file.
+   */
+  /* package */ static class EntryFingerprint {
+    private final long hash;
+    /** the language the settings entries were stored for or {@code null} if {@link #count} is 0 */
+    private final String languageId;
+    private final int count;
+
+    EntryFingerprint(long hash, String languageId, int count) {
+      this.hash = hash;
+      this.languageId = count > 0 ? languageId : null;
+      this.count = count;
+    }
+  } // EntryFingerprint
+
+  /**
+   * The state of a single parse of a {@code compile_commands.json} file. Tracks which entries changed since the last
+   * parse, so that only these have to be processed again.
+   */
+  /* package */ static class ParseContext {
+    private final ICConfigurationDescription cfgDescription;
+    private final TimestampedLanguageSettingsStorage store;
+    /**
+     * {@code true} if this provider is present in the project's list of settings providers. If {@code false}, only the
+     * compiler-built-in processors are determined and no command line parsing is performed
+     */
+    private final boolean enabled;
+    /** collects the problems found in the JSON file being parsed */
+    private final MarkerCollector markers;
+    /** the progress monitor to check for cancellation */
+    private final IProgressMonitor monitor;
+    /** maps the locations of source files to workspace files */
+    private final ResourceLocationIndex locations;
+    /** the fingerprints of the entries seen in this parse */
+    private final Map<String, List<EntryFingerprint>> fingerprints = new LinkedHashMap<>();
+    /** the source files whose settings entries are being re-built in this parse */
+    private final Set<String> changedFiles = new HashSet<>();
+    /** the settings entries per language of the {@link #changedFiles} before they were re-built */
+    private final Map<String, Map<String, List<ICLanguageSettingEntry>>> previousEntries = new HashMap<>();
+    /**
+     * the source files whose settings entries differ from the last parse, including the files that vanished from the
+     * json file. Valid after {@link #finish}
+     */
+    final Set<String> modifiedFiles = new HashSet<>();
+    /**
+     * the results of parsing command lines in this parse, per command-line parser. Key of the inner map is the
+     * normalized command line, see {@link CompileCommandsJsonParser#getCommandLineKey}
+     */
+    private final Map<IToolCommandlineParser, Map<String, List<ICLanguageSettingEntry>>> parsedCommandLines = new ConcurrentHashMap<>();
+    /** the response files read in this parse and the entries parsed from them */
+    private final ResponseFileCache responseFiles = new ResponseFileCache();
+    /**
+     * last known working tool detector and its tool option parsers or {@code null}, if unknown (to speed up parsing)
+     */
+    private ParserDetection.DetectorWithMethod lastDetector;
+
+    ParseContext(ICConfigurationDescription cfgDescription, TimestampedLanguageSettingsStorage store, boolean enabled,
+        IFile jsonFile, IProgressMonitor monitor) {
+      this.cfgDescription = cfgDescription;
+      this.store = store;
+      this.enabled = enabled;
+      this.markers = createMarkerCollector(jsonFile);
+      this.monitor = monitor != null ? monitor : new NullProgressMonitor();
+      this.locations = ResourceLocationIndex.get();
+      // detectors are determined from all entries again
+      store.builtinDetectors = null;
+    }
+
+    /**
+     * Throws an {@link OperationCanceledException} if this parse was canceled.
+     */
+    void checkCanceled() {
+      if (monitor.isCanceled())
+        throw new OperationCanceledException();
+    }
+
+    /**
+     * Gets whether the specified entry of a source file is the same as in the last parse. If not, the settings entries
+     * that stem from this and any subsequent entry of the file are removed, and the caller must process the entry and
+     * report the result through {@link #addEntryFingerprint}.
+     *
+     * @param rcPath
+     *          project-relative path of the source file
+     * @param hash
+     *          the fingerprint of the entry
+     * @return {@code true} if the entry is unchanged and its settings entries are still valid
+     */
+    boolean isEntryUnchanged(String rcPath, long hash) {
+      List<EntryFingerprint> seen = fingerprints.computeIfAbsent(rcPath, k -> new ArrayList<>(1));
+      if (!changedFiles.contains(rcPath)) {
+        List<EntryFingerprint> last = store.fingerprints.get(rcPath);
+        final int idx = seen.size();
+        if (last != null && idx < last.size() && last.get(idx).hash == hash) {
+          seen.add(last.get(idx));
+          return true;
+        }
+        previousEntries.put(rcPath, store.getFileEntries(rcPath));
+        store.retainSettingEntries(rcPath, seen);
+        changedFiles.add(rcPath);
+      }
+      return false;
+    }
+
+    /**
+     * Gets whether the specified entry of a source file was present in the last parse. Does not modify any state, so it
+     * may be invoked by multiple threads concurrently.
+     *
+     * @param rcPath
+     *          project-relative path of the source file
+     * @param hash
+     *          the fingerprint of the entry
+     */
+    boolean isEntryKnown(String rcPath, long hash) {
+      final List<EntryFingerprint> last = store.fingerprints.get(rcPath);
+      if (last != null) {
+        for (EntryFingerprint fp : last) {
+          if (fp.hash == hash)
+            return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Records the fingerprint of a processed entry.
+     *
+     * @param rcPath
+     *          project-relative path of the source file
+     */
+    void addEntryFingerprint(String rcPath, EntryFingerprint fingerprint) {
+      fingerprints.get(rcPath).add(fingerprint);
+    }
+
+    /**
+     * Finishes this parse.
+     *
+     * @param complete
+     *          {@code true} if all entries of the json file were processed. If {@code false}, the settings entries of
+     *          source files that were not reached are retained
+     */
+    void finish(boolean complete) {
+      if (complete) {
+        // remove settings of entries and of files that vanished from the json file
+        for (Map.Entry<String, List<EntryFingerprint>> entry : fingerprints.entrySet()) {
+          final String rcPath = entry.getKey();
+          List<EntryFingerprint> last = store.fingerprints.get(rcPath);
+          if (last != null && last.size() > entry.getValue().size() && !changedFiles.contains(rcPath)) {
+            store.retainSettingEntries(rcPath, entry.getValue());
+            modifiedFiles.add(rcPath);
+          }
+        }
+        for (String rcPath : store.fingerprints.keySet()) {
+          if (!fingerprints.containsKey(rcPath))
+            modifiedFiles.add(rcPath);
+        }
+        store.retainFiles(fingerprints.keySet());
+        store.fingerprints = fingerprints;
+      } else {
+        store.fingerprints.putAll(fingerprints);
+      }
+      // re-built files whose settings did not change need no re-indexing
+      for (String rcPath : changedFiles) {
+        if (!store.getFileEntries(rcPath).equals(previousEntries.get(rcPath)))
+          modifiedFiles.add(rcPath);
+      }
+    }
+  } // ParseContext
+
+  /**
+   * An entry from a {@code compile_commands.json} file and the results of processing it.
+   */
+  private static class JsonEntry {
+    private final String file;
+    /** the command line, for the {@code arguments} form the arguments joined by spaces */
+    private final String cmdLine;
+    /** the arguments for the {@code arguments} form, or {@code null} for the {@code command} form */
+    private final List<String> arguments;
+    private final String cwdStr;
+    /** the fingerprint of the entry */
+    private final long hash;
+    /** the source file in the workspace or {@code null} if the file is not in the workspace */
+    private IFile sourceFile;
+    /** the detected command-line parser or {@code null} if none matched */
+    private ParserDetection.ParserDetectionResult pdr;
+    /** the parsed language settings entries or {@code null} if the command line has not been parsed */
+    private List<ICLanguageSettingEntry> entries;
+
+    JsonEntry(String file, String cmdLine, String cwdStr, ResponseFileCache responseFiles) {
+      this.file = file;
+      this.cmdLine = cmdLine;
+      this.arguments = null;
+      this.cwdStr = cwdStr;
+      this.hash = fingerprint(cwdStr, cmdLine, null, responseFiles);
+    }
+
+    JsonEntry(String file, List<String> arguments, String cwdStr, ResponseFileCache responseFiles) {
+      this.file = file;
+      this.cmdLine = String.join(" ", arguments);
+      this.arguments = arguments;
+      this.cwdStr = cwdStr;
+      this.hash = fingerprint(cwdStr, null, arguments, responseFiles);
+    }
+
+    /**
+     * Gets the string to detect the tool from. For the {@code arguments} form, this is the tool only, since the
+     * arguments are not parsed from the detected command line.
+     */
+    String getDetectionLine() {
+      return arguments != null ? arguments.get(0) + " " : cmdLine;
+    }
+
+    /**
+     * Looks up the source file in the workspace. A relative file name is resolved against the working directory of the
+     * compiler.
+     *
+     * @param locations
+     *          maps the locations of source files to workspace files
+     */
+    void resolveSourceFile(ResourceLocationIndex locations) {
+      IPath location = Path.fromOSString(file);
+      if (!location.isAbsolute()) {
+        location = getCwd().append(location);
+      }
+      sourceFile = locations.findFile(location);
+    }
+
+    /**
+     * Gets the current working directory of the compiler at its invocation.
+     */
+    IPath getCwd() {
+      return cwdStr != null ? Path.fromOSString(cwdStr) : new Path("");
+    }
+  } // JsonEntry
+
+  /**
+   * Looks up the source files and parses the command lines of a chunk of entries from a {@code compile_commands.json}
+   * file. Forks sub-tasks for large chunks.
+   */
+  private static class JsonEntriesTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    /** number of entries handed to a task by the thread that reads the json file */
+    static final int CHUNK_SIZE = 256;
+    /** number of entries below which a task does not fork */
+    private static final int THRESHOLD = 16;
+
+    private final transient ParseContext ctx;
+    private final transient List<JsonEntry> entries;
+    private final int from;
+    private final int to;
+
+    JsonEntriesTask(ParseContext ctx, List<JsonEntry> entries, int from, int to) {
+      this.ctx = ctx;
+      this.entries = entries;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > THRESHOLD) {
+        final int mid = (from + to) >>> 1;
+        invokeAll(new JsonEntriesTask(ctx, entries, from, mid), new JsonEntriesTask(ctx, entries, mid, to));
+      } else {
+        for (int i = from; i < to; i++) {
+          final JsonEntry entry = entries.get(i);
+          entry.resolveSourceFile(ctx.locations);
+          final ParserDetection.ParserDetectionResult pdr = entry.pdr;
+          // unchanged entries are most likely not parsed again
+          if (entry.sourceFile != null && pdr != null
+              && !ctx.isEntryKnown(entry.sourceFile.getProjectRelativePath().toString(), entry.hash)) {
+            entry.entries = parseCommandLine(ctx, pdr.getDetectorWithMethod().getDetector().getParser(), entry);
+          }
+        }
+      }
+    }
+  } // JsonEntriesTask
+
   private static class PerConfigLanguageSettingsStorage implements Cloneable {
 
     /**
@@ -718,11 +2014,13 @@ public class CompileCommandsJsonParser extends LanguageSettingsSerializableProvi
     private Map<String, TimestampedLanguageSettingsStorage> storages = new WeakHashMap<>();
 
     /**
-     * Gets the settings storage for the specified configuration. Creates a new settings storage, if none exists.
+     * Gets the settings storage for the specified configuration. Creates a new settings storage, if none exists.<br>
+     * The returned storage also serves as the lock that serializes parsing for its configuration.
      *
      * @return the storage, never {@code null}
      */
-    private TimestampedLanguageSettingsStorage getSettingsStoreForConfig(ICConfigurationDescription cfgDescription) {
+    private synchronized TimestampedLanguageSettingsStorage getSettingsStoreForConfig(
+        ICConfigurationDescription cfgDescription) {
       TimestampedLanguageSettingsStorage store = storages.get(cfgDescription.getId());
       if (store == null) {
         store = new TimestampedLanguageSettingsStorage();
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package de.marw.cmake.cdt.language.settings.providers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import de.marw.cmake.CMakePlugin;
+
+/**
+ * Runs a task of a language settings provider for a configuration in the background, after the build finished. There
+ * is at most one job per provider and configuration: Triggering a job that is waiting to run has no effect, triggering a
+ * running job makes it run once more after it finished.<br>
+ * The job holds a scheduling rule on the build folder of the configuration, so it does not run while a build writes to
+ * that folder.
+ *
+ * @author Martin Weber
+ */
+class ConfigurationJob extends Job {
+
+  /**
+   * The jobs by provider ID, project name and configuration ID. A job is removed when it finished and was not
+   * triggered again meanwhile, so that jobs of removed projects and configurations do not stay.
+   */
+  private static final Map<String, ConfigurationJob> jobs = new HashMap<>();
+
+  /** the key of this job in {@link #jobs} */
+  private final String key;
+  /** the task of the latest trigger, guarded by {@code this} */
+  private Task task;
+  /** the configuration description of the latest trigger, guarded by {@code this} */
+  private ICConfigurationDescription cfgDescription;
+  /** the number of triggers, guarded by {@code this} */
+  private int triggers;
+
+  private ConfigurationJob(String name, String key) {
+    super(name);
+    this.key = key;
+  }
+
+  /**
+   * Schedules the specified task for the specified configuration, unless it is already waiting to run.
+   *
+   * @param providerId
+   *          the ID of the language settings provider the task belongs to
+   * @param name
+   *          the name of the job as shown to the user
+   * @param cfgDescription
+   *          the configuration to run the task for
+   * @param task
+   *          the task to run
+   */
+  static void schedule(String providerId, String name, ICConfigurationDescription cfgDescription, Task task) {
+    final String key = providerId + "|" + cfgDescription.getProjectDescription().getProject().getName() + "|"
+        + cfgDescription.getId();
+    final ConfigurationJob job;
+    synchronized (jobs) {
+      job = jobs.computeIfAbsent(key, k -> new ConfigurationJob(name, k));
+      if (job.getState() == Job.NONE) {
+        job.setRule(getBuildFolder(cfgDescription));
+      }
+      synchronized (job) {
+        job.task = task;
+        job.cfgDescription = cfgDescription;
+        job.triggers++;
+      }
+    }
+    job.schedule();
+  }
+
+  /**
+   * Gets the build folder of the specified configuration.
+   *
+   * @return the folder or project or {@code null} if the configuration has no build folder
+   */
+  private static IResource getBuildFolder(ICConfigurationDescription cfgDescription) {
+    final IPath buildRoot = cfgDescription.getBuildSetting().getBuilderCWD();
+    if (buildRoot == null || buildRoot.segmentCount() == 0)
+      return null;
+    final IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+    return buildRoot.segmentCount() == 1 ? root.getProject(buildRoot.segment(0)) : root.getFolder(buildRoot);
+  }
+
+  @Override
+  protected IStatus run(IProgressMonitor monitor) {
+    final Task task;
+    final ICConfigurationDescription cfg;
+    final int seenTriggers;
+    synchronized (this) {
+      task = this.task;
+      cfg = cfgDescription;
+      seenTriggers = triggers;
+    }
+    try {
+      task.run(cfg, monitor);
+    } catch (OperationCanceledException ex) {
+      return Status.CANCEL_STATUS;
+    } catch (CoreException ex) {
+      return new Status(IStatus.ERROR, CMakePlugin.PLUGIN_ID, getName(), ex);
+    } finally {
+      release(seenTriggers);
+    }
+    return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+  }
+
+  /**
+   * Removes this job from {@link #jobs} and drops its references to the task and the configuration, unless it was
+   * triggered again while it ran.
+   *
+   * @param seenTriggers
+   *          the number of triggers when this job started to run
+   */
+  private void release(int seenTriggers) {
+    synchronized (jobs) {
+      synchronized (this) {
+        if (triggers == seenTriggers) {
+          jobs.remove(key, this);
+          task = null;
+          cfgDescription = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * A task of a language settings provider that runs for a configuration.
+   */
+  @FunctionalInterface
+  interface Task {
+    /**
+     * Runs the task.
+     *
+     * @param cfgDescription
+     *          the configuration to run the task for
+     * @param monitor
+     *          the progress monitor to report progress to and to check for cancellation
+     * @throws CoreException
+     */
+    void run(ICConfigurationDescription cfgDescription, IProgressMonitor monitor) throws CoreException;
+  }
+}
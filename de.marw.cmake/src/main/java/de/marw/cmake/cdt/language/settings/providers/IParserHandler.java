@@ -11,6 +11,9 @@
 
 package de.marw.cmake.cdt.language.settings.providers;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 import org.eclipse.core.runtime.IPath;
 
 /**
@@ -29,6 +32,20 @@ interface IParserHandler {
    */
   void parseArguments(String args);
 
+  /**
+   * Parses the arguments in the given response file with the first parser that
+   * can handle each argument. The default implementation reads the file and
+   * passes its content to {@link #parseArguments(String)}.
+   *
+   * @param file
+   *          the absolute name of the response file
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  default void parseResponseFile(Path file) throws IOException {
+    parseArguments(ResponseFileCache.readContent(file));
+  }
+
   /**
    * Gets the current working directory of the compiler at the time of its
    * invocation.
@@ -11,6 +11,8 @@
 
 package de.marw.cmake.cdt.language.settings.providers;
 
+import java.util.List;
+
 /**
  * Parses a 'response file' tool argument and its content.
  *
@@ -26,13 +28,49 @@ interface IResponseFileArgumentParser {
    *          the handler to parse the arguments in the response-file`s content
    * @param argsLine
    *          the arguments passed to the tool, as they appear in the build
-   *          output. Implementers may safely assume that the specified value
-   *          does not contain leading whitespace characters, but trailing WS
-   *          may occur.
-   * @return the number of characters from {@code argsLine} that has been
-   *         processed. Return a value of {@code zero} or less, if this tool
-   *         argument parser cannot process the first argument from the input.
+   *          output. Implementers must not copy the remainder of the sequence,
+   *          since the whole command-line is passed for each argument.
+   * @param start
+   *          the index of the first character of the argument to parse in
+   *          {@code argsLine}. Implementers may safely assume that the
+   *          character at this index is not a whitespace character, but
+   *          trailing WS may occur.
+   * @return the number of characters from {@code argsLine}, counted from
+   *         {@code start}, that has been processed. Return a value of
+   *         {@code zero} or less, if this tool argument parser cannot process
+   *         the argument at {@code start}.
+   */
+  int process(IParserHandler parserHandler, CharSequence argsLine, int start);
+
+  /**
+   * Detects whether an argument of an already tokenized command-line denotes a
+   * response file and parses that file. The default implementation detects the
+   * argument with {@link #process(IParserHandler, CharSequence, int)}.
+   *
+   * @param parserHandler
+   *          the handler to parse the arguments in the response-file`s content
+   * @param args
+   *          the arguments passed to the tool, one element per argument, with
+   *          quotes and escapes already removed
+   * @param index
+   *          the index of the argument in {@code args} to parse
+   * @return the number of arguments from {@code args} that have been
+   *         processed. Return a value of {@code zero} or less, if this parser
+   *         cannot process the argument at {@code index}.
    */
-  int process(IParserHandler parserHandler, String argsLine);
+  default int process(IParserHandler parserHandler, List<String> args, int index) {
+    return process(parserHandler, args.get(index), 0) > 0 ? 1 : 0;
+  }
 
+  /**
+   * Gets the name of the option that denotes a response file, e.g. {@code @}.
+   * Callers may use the name to skip this parser on arguments that do not
+   * start with the name.
+   *
+   * @return the option name or {@code null} if this parser is to be tried on
+   *         any argument
+   */
+  default String getOptionName() {
+    return null;
+  }
 }
@@ -16,7 +16,8 @@ import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
 import org.eclipse.core.runtime.IPath;
 
 /**
- * Converts tool arguments into LanguageSettings objects.
+ * Converts tool arguments into LanguageSettings objects. Implementations must
+ * be safe to be invoked by multiple threads concurrently.
  *
  * @author Martin Weber
  */
@@ -32,12 +33,67 @@ public interface IToolArgumentParser {
    *          the current working directory of the compiler at its invocation
    * @param argsLine
    *        the arguments passed to the tool, as they appear in the build
-   *        output. Implementers may safely assume that the specified value does
-   *        not contain leading whitespace characters, but trailing WS may
+   *        output. Implementers must not copy the remainder of the sequence,
+   *        since the whole command-line is passed for each argument.
+   * @param start
+   *        the index of the first character of the argument to parse in
+   *        {@code argsLine}. Implementers may safely assume that the character
+   *        at this index is not a whitespace character, but trailing WS may
    *        occur.
+   * @return the number of characters from {@code argsLine}, counted from
+   *         {@code start}, that has been processed. Return a value of
+   *         {@code zero} or less, if this tool argument parser cannot process
+   *         the argument at {@code start}.
+   */
+  int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, CharSequence argsLine, int start);
+
+  /**
+   * Parses the first command-line argument and extracts all detected
+   * LanguageSettings objects.
+   *
+   * @param returnedEntries
+   *        the buffer that receives the new {@code LanguageSettings}
+   * @param cwd
+   *          the current working directory of the compiler at its invocation
+   * @param argsLine
+   *        the arguments passed to the tool, without leading whitespace
    * @return the number of characters from {@code argsLine} that has been
-   *         processed. Return a value of {@code zero} or less, if this tool
-   *         argument parser cannot process the first argument from the input.
+   *         processed
+   * @see #processArgument(List, IPath, CharSequence, int)
+   */
+  default int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine) {
+    return processArgument(returnedEntries, cwd, argsLine, 0);
+  }
+
+  /**
+   * Parses the next argument of an already tokenized command-line and extracts all detected LanguageSettings objects.
+   * The default implementation parses the argument with {@link #processArgument(List, IPath, String)}, so it handles
+   * options whose value is part of the argument only.
+   *
+   * @param returnedEntries
+   *          the buffer that receives the new {@code LanguageSettings}
+   * @param cwd
+   *          the current working directory of the compiler at its invocation
+   * @param args
+   *          the arguments passed to the tool, one element per argument, with quotes and escapes already removed
+   * @param index
+   *          the index of the argument in {@code args} to parse
+   * @return the number of arguments from {@code args} that have been processed. Return a value of {@code zero} or
+   *         less, if this tool argument parser cannot process the argument at {@code index}.
+   */
+  default int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args, int index) {
+    return processArgument(returnedEntries, cwd, args.get(index)) > 0 ? 1 : 0;
+  }
+
+  /**
+   * Gets the name of the option that this parser handles, e.g. {@code -I}.
+   * Callers may use the name to select the parsers to try on an argument,
+   * this parser is not tried on arguments that do not start with the name.
+   *
+   * @return the option name or {@code null} if this parser is to be tried on
+   *         any argument
    */
-  int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine);
-}
\ No newline at end of file
+  default String getOptionName() {
+    return null;
+  }
+}
@@ -19,7 +19,8 @@ import de.marw.cmake.cdt.language.settings.providers.builtins.BuiltinDetectionTy
 
 /**
  * Parses the command-line produced by a specific tool invocation and detects
- * LanguageSettings.
+ * LanguageSettings. Implementations must be safe to be invoked by multiple
+ * threads concurrently.
  *
  * @author Martin Weber
  */
@@ -38,7 +39,72 @@ interface IToolCommandlineParser {
    * @throws NullPointerException
    *           if any of the arguments is {@code null}
    */
-  public List<ICLanguageSettingEntry> processArgs(IPath cwd, String args);
+  public default List<ICLanguageSettingEntry> processArgs(IPath cwd, String args) {
+    return processArgs(cwd, args, null);
+  }
+
+  /**
+   * Parses all arguments given to the tool.
+   *
+   * @param cwd
+   *          the current working directory of the compiler at the time of its
+   *          invocation
+   * @param args
+   *          the command line arguments to process
+   * @param responseFiles
+   *          the cache for the response files referenced by the arguments or
+   *          {@code null} to read each response file when it is referenced
+   *
+   * @return the language setting entries produced or {@code null} or an empty
+   *         list if no entries where produced
+   * @throws NullPointerException
+   *           if {@code cwd} or {@code args} is {@code null}
+   */
+  public List<ICLanguageSettingEntry> processArgs(IPath cwd, String args, ResponseFileCache responseFiles);
+
+  /**
+   * Parses all arguments given to the tool, as an already tokenized
+   * command-line. Unlike {@link #processArgs(IPath, String)}, arguments are not
+   * split at whitespace and need not be unquoted, so an argument may contain
+   * whitespace or quote characters.
+   *
+   * @param cwd
+   *          the current working directory of the compiler at the time of its
+   *          invocation
+   * @param args
+   *          the command line arguments to process, one element per argument,
+   *          excluding the tool name
+   *
+   * @return the language setting entries produced or {@code null} or an empty
+   *         list if no entries where produced
+   * @throws NullPointerException
+   *           if any of the arguments is {@code null}
+   */
+  public default List<ICLanguageSettingEntry> processArgs(IPath cwd, List<String> args) {
+    return processArgs(cwd, args, null);
+  }
+
+  /**
+   * Parses all arguments given to the tool, as an already tokenized
+   * command-line.
+   *
+   * @param cwd
+   *          the current working directory of the compiler at the time of its
+   *          invocation
+   * @param args
+   *          the command line arguments to process, one element per argument,
+   *          excluding the tool name
+   * @param responseFiles
+   *          the cache for the response files referenced by the arguments or
+   *          {@code null} to read each response file when it is referenced
+   *
+   * @return the language setting entries produced or {@code null} or an empty
+   *         list if no entries where produced
+   * @throws NullPointerException
+   *           if {@code cwd} or {@code args} is {@code null}
+   * @see #processArgs(IPath, List)
+   */
+  public List<ICLanguageSettingEntry> processArgs(IPath cwd, List<String> args, ResponseFileCache responseFiles);
 
   /**
    * Gets the language ID of the language that the tool compiles.
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package de.marw.cmake.cdt.language.settings.providers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.index.IIndexManager;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.model.ICElement;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import de.marw.cmake.CMakePlugin;
+
+/**
+ * Re-indexes the translation units whose language settings changed. Requests from several configurations and projects
+ * that arrive within a short time, for example during a build of several projects, are coalesced into a single request
+ * to the index manager.
+ *
+ * @author Martin Weber
+ */
+class IndexUpdateJob extends Job {
+  /** delay in milliseconds to wait for further requests */
+  private static final long DELAY = 1000;
+  /**
+   * the number of changed files in a project above which the whole project is re-indexed rather than the files
+   */
+  private static final int MAX_FILES = 1000;
+
+  private static final IndexUpdateJob INSTANCE = new IndexUpdateJob();
+
+  /**
+   * the pending requests. Key is the project, value is the set of project-relative paths of the files to re-index or
+   * {@code null} if the whole project is to be re-indexed. Guarded by {@code this}.
+   */
+  private Map<IProject, Set<String>> pending = new LinkedHashMap<>();
+
+  private IndexUpdateJob() {
+    super("Updating index for changed compiler settings");
+    setSystem(true);
+  }
+
+  /**
+   * Requests re-indexing of the specified files of a project.
+   *
+   * @param project
+   *          the project
+   * @param rcPaths
+   *          the project-relative paths of the files whose language settings changed or {@code null} to re-index the
+   *          whole project
+   */
+  static void scheduleUpdate(IProject project, Collection<String> rcPaths) {
+    if (rcPaths != null && rcPaths.isEmpty())
+      return;
+    synchronized (INSTANCE) {
+      final Map<IProject, Set<String>> pending = INSTANCE.pending;
+      Set<String> files = pending.get(project);
+      if (files == null && pending.containsKey(project)) {
+        // whole project already requested
+      } else if (rcPaths == null) {
+        pending.put(project, null);
+      } else {
+        if (files == null) {
+          files = new HashSet<>();
+          pending.put(project, files);
+        }
+        files.addAll(rcPaths);
+        if (files.size() > MAX_FILES) {
+          // too many files, the index manager handles the project faster
+          pending.put(project, null);
+        }
+      }
+    }
+    INSTANCE.schedule(DELAY);
+  }
+
+  @Override
+  protected IStatus run(IProgressMonitor monitor) {
+    final Map<IProject, Set<String>> requests;
+    synchronized (this) {
+      requests = pending;
+      pending = new LinkedHashMap<>();
+    }
+    final CoreModel coreModel = CoreModel.getDefault();
+    final List<ICElement> elements = new ArrayList<>();
+    for (Map.Entry<IProject, Set<String>> request : requests.entrySet()) {
+      final IProject project = request.getKey();
+      if (!project.isAccessible())
+        continue;
+      if (request.getValue() == null) {
+        elements.add(coreModel.create(project));
+      } else {
+        for (String rcPath : request.getValue()) {
+          final ICElement element = coreModel.create(project.getFile(rcPath));
+          if (element != null)
+            elements.add(element);
+        }
+      }
+    }
+    if (!elements.isEmpty()) {
+      try {
+        CCorePlugin.getIndexManager().update(elements.toArray(new ICElement[elements.size()]),
+            IIndexManager.UPDATE_ALL);
+      } catch (CoreException ex) {
+        return new Status(IStatus.ERROR, CMakePlugin.PLUGIN_ID, "Failed to update index", ex);
+      }
+    }
+    return Status.OK_STATUS;
+  }
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package de.marw.cmake.cdt.language.settings.providers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * Collects the problems found while parsing a file and reports them as problem markers on that file. Problems are
+ * aggregated by their cause and their number is capped. All markers are written in a single workspace operation, and
+ * the markers written last time are deleted individually, so no resource tree walk is needed.<br>
+ * Methods to collect problems may be invoked by multiple threads concurrently.
+ *
+ * @author Martin Weber
+ */
+class MarkerCollector {
+  /** the maximum number of distinct problems to create markers for */
+  private static final int MAX_MARKERS = 50;
+
+  private final IFile file;
+  private final String markerType;
+  /** value of the {@link IMarker#LOCATION} attribute of the markers */
+  private final String location;
+
+  /** the problems by cause, in order of first occurrence */
+  private final Map<String, Problem> problems = new LinkedHashMap<>();
+  /** the number of problems not collected due to the cap */
+  private int omitted;
+
+  /**
+   * @param file
+   *          the file the problems are reported on
+   * @param markerType
+   *          the type of the markers to create
+   * @param location
+   *          the value of the {@link IMarker#LOCATION} attribute of the markers
+   */
+  MarkerCollector(IFile file, String markerType, String location) {
+    this.file = file;
+    this.markerType = markerType;
+    this.location = location;
+  }
+
+  /**
+   * Adds a problem. A problem with a cause that was already added is counted only.
+   *
+   * @param cause
+   *          the cause of the problem, problems with equal causes result in a single marker
+   * @param message
+   *          the message of the marker
+   */
+  synchronized void add(String cause, String message) {
+    final Problem problem = problems.get(cause);
+    if (problem != null) {
+      problem.count++;
+    } else if (problems.size() < MAX_MARKERS) {
+      problems.put(cause, new Problem(message));
+    } else {
+      omitted++;
+    }
+  }
+
+  /**
+   * Replaces the markers created by the previous invocation of this method with markers for the collected problems.
+   *
+   * @param previous
+   *          the markers returned by the previous invocation or {@code null} if unknown. If {@code null}, all markers of
+   *          the marker type on the file and on its project are deleted
+   * @return the markers created, never {@code null}
+   * @throws CoreException
+   *           if a marker could not be deleted or created
+   */
+  synchronized List<IMarker> flush(List<IMarker> previous) throws CoreException {
+    final List<IMarker> created = new ArrayList<>(problems.size() + 1);
+    if ((previous == null || previous.isEmpty()) && problems.isEmpty()) {
+      if (previous == null) {
+        deleteAll();
+      }
+      return created;
+    }
+    final IWorkspaceRunnable runnable = monitor -> {
+      if (previous == null) {
+        deleteAll();
+      } else {
+        for (IMarker marker : previous) {
+          marker.delete();
+        }
+      }
+      if (!problems.isEmpty()) {
+        final IResource rc = getMarkerResource();
+        for (Problem problem : problems.values()) {
+          final String message = problem.count > 1
+              ? problem.message + " (" + problem.count + " occurrences)"
+              : problem.message;
+          created.add(createMarker(rc, message));
+        }
+        if (omitted > 0) {
+          created.add(createMarker(rc, omitted + " more problems not shown."));
+        }
+      }
+    };
+    ResourcesPlugin.getWorkspace().run(runnable, null, IWorkspace.AVOID_UPDATE, null);
+    problems.clear();
+    omitted = 0;
+    return created;
+  }
+
+  /**
+   * Deletes the markers of the marker type on the file and on its project (not on their members).
+   */
+  private void deleteAll() throws CoreException {
+    if (file.exists()) {
+      file.deleteMarkers(markerType, false, IResource.DEPTH_ZERO);
+    }
+    if (file.getProject().isAccessible()) {
+      file.getProject().deleteMarkers(markerType, false, IResource.DEPTH_ZERO);
+    }
+  }
+
+  /**
+   * Gets the resource to create markers on: The file or, if the file is not known by the workbench, its project.
+   */
+  private IResource getMarkerResource() {
+    if (!file.exists()) {
+      try {
+        // resource is not (yet) known by the workbench
+        file.refreshLocal(IResource.DEPTH_ZERO, new NullProgressMonitor());
+      } catch (CoreException ignore) {
+      }
+    }
+    return file.exists() ? file : file.getProject();
+  }
+
+  private IMarker createMarker(IResource rc, String message) throws CoreException {
+    final IMarker marker = rc.createMarker(markerType);
+    marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_INFO);
+    marker.setAttribute(IMarker.MESSAGE, message);
+    marker.setAttribute(IMarker.LOCATION, location);
+    return marker;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // inner classes
+  ////////////////////////////////////////////////////////////////////
+  private static class Problem {
+    private final String message;
+    private int count = 1;
+
+    Problem(String message) {
+      this.message = message;
+    }
+  } // Problem
+}
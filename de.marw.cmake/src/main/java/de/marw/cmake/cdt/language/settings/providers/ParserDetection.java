@@ -13,7 +13,11 @@ package de.marw.cmake.cdt.language.settings.providers;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,8 +40,9 @@ class ParserDetection {
 
   /**
    * tool detectors and their tool option parsers for each tool of interest that
-   * takes part in the current build. The Matcher detects whether a command line
-   * is an invocation of the tool.
+   * takes part in the current build. The Pattern detects whether a command line
+   * is an invocation of the tool. The detectors are stateless and may be used by
+   * multiple threads concurrently.
    */
   private static final List<ParserDetector> parserDetectors = new ArrayList<>(22);
   /**
@@ -47,6 +52,15 @@ class ParserDetection {
    */
   static final List<ParserDetector> parserDetectorsWin32 = new ArrayList<>(16);
 
+  /**
+   * the detectors of {@link #parserDetectors} and {@link #parserDetectorsWin32}
+   * combined into a single pattern each, by detector list and version suffix
+   * pattern. See {@link #getCombinedDetector}.
+   */
+  private static final Map<String, CombinedDetector> combinedDetectors = new ConcurrentHashMap<>();
+  /** the number of combined detectors above which these are built again */
+  private static final int MAX_COMBINED_DETECTORS = 16;
+
   static {
     /** Names of known tools along with their command line argument parsers */
     final IToolArgumentParser[] posix_cc_args = { new ToolArgumentParsers.IncludePath_C_POSIX(),
@@ -146,6 +160,19 @@ class ParserDetection {
   private ParserDetection() {
   }
 
+  /**
+   * Gets all tool detectors, the detectors for ms windows OS last. Detectors are identified by their index in the
+   * returned list.
+   *
+   * @return an unmodifiable list of the detectors
+   */
+  static List<ParserDetector> getAllDetectors() {
+    final List<ParserDetector> all = new ArrayList<>(parserDetectors.size() + parserDetectorsWin32.size());
+    all.addAll(parserDetectors);
+    all.addAll(parserDetectorsWin32);
+    return Collections.unmodifiableList(all);
+  }
+
   /**
    * Determines the parser detector that can parse the specified command-line.
    *
@@ -203,43 +230,28 @@ class ParserDetection {
    */
   private static ParserDetectionResult determineDetector(String commandLine, List<ParserDetector> detectors,
       String versionSuffixRegex) {
-    MarchResult cmdline;
-    // try basenames
-    for (ParserDetector pd : detectors) {
-      if ((cmdline = pd.basenameMatches(commandLine)) != null) {
-        return new ParserDetectionResult(new DetectorWithMethod(pd, DetectorWithMethod.DetectionMethod.BASENAME),
-            cmdline);
-      }
-    }
-    if (versionSuffixRegex != null) {
-      // try with version pattern
-      for (ParserDetector pd : detectors) {
-        if ((cmdline = pd.basenameWithVersionMatches(commandLine, versionSuffixRegex)) != null) {
-          return new ParserDetectionResult(new DetectorWithMethod(pd, DetectorWithMethod.DetectionMethod.WITH_VERSION),
-              cmdline);
-        }
-      }
-    }
-    // try with extension
-    for (ParserDetector pd : detectors) {
-      if (pd instanceof ParserDetectorExt
-          && (cmdline = ((ParserDetectorExt) pd).basenameWithExtensionMatches(commandLine)) != null) {
-        return new ParserDetectionResult(new DetectorWithMethod(pd, DetectorWithMethod.DetectionMethod.WITH_EXTENSION),
-            cmdline);
-      }
-    }
-    if (versionSuffixRegex != null) {
-      // try with extension and version
-      for (ParserDetector pd : detectors) {
-        if (pd instanceof ParserDetectorExt && (cmdline = ((ParserDetectorExt) pd)
-            .basenameWithVersionAndExtensionMatches(commandLine, versionSuffixRegex)) != null) {
-          return new ParserDetectionResult(
-              new DetectorWithMethod(pd, DetectorWithMethod.DetectionMethod.WITH_VERSION_EXTENSION), cmdline);
-        }
+    if (commandLine == null)
+      return null;
+    return getCombinedDetector(detectors, versionSuffixRegex).determineDetector(commandLine);
+  }
+
+  /**
+   * Gets the combined detector for the specified detectors and version suffix
+   * pattern. Builds it, if not already done.
+   */
+  private static CombinedDetector getCombinedDetector(List<ParserDetector> detectors, String versionSuffixRegex) {
+    final String key = (detectors == parserDetectorsWin32 ? "win32:" : "posix:")
+        + (versionSuffixRegex == null ? "" : "v:" + versionSuffixRegex);
+    CombinedDetector combined = combinedDetectors.get(key);
+    if (combined == null) {
+      combined = new CombinedDetector(detectors, versionSuffixRegex);
+      if (combinedDetectors.size() >= MAX_COMBINED_DETECTORS) {
+        // version pattern was changed frequently
+        combinedDetectors.clear();
       }
+      combinedDetectors.put(key, combined);
     }
-
-    return null;
+    return combined;
   }
 
   /**
@@ -286,10 +298,10 @@ class ParserDetection {
     protected static final String REGEX_CMD_TAIL = ")\\s";
 
     /**
-     * the Matcher that matches the name of the tool (including its path, BUT
+     * the Pattern that matches the name of the tool (including its path, BUT
      * WITHOUT its filename extension) on a given command-line
      */
-    private final Matcher toolNameMatcher;
+    private final Pattern toolNamePattern;
     /**
      * the corresponding parser for the tool arguments
      */
@@ -300,6 +312,11 @@ class ParserDetection {
      * path with backSlashes
      */
     protected final boolean matchBackslash;
+    /**
+     * the Patterns that match the name of the tool with a version suffix, by
+     * version suffix regex
+     */
+    private final Map<String, Pattern> versionPatterns = new ConcurrentHashMap<>(4);
 
     /**
      * Creates a {@code ParserDetector} that matches linux paths in the tool
@@ -330,12 +347,18 @@ class ParserDetection {
      *          the corresponding parser for the tool arguments
      */
     public ParserDetector(String basenameRegex, boolean matchBackslash, IToolCommandlineParser parser) {
-      this.toolNameMatcher = matchBackslash
-          ? Pattern.compile(REGEX_CMD_HEAD_WIN + basenameRegex + REGEX_CMD_TAIL).matcher("")
-          : Pattern.compile(REGEX_CMD_HEAD + basenameRegex + REGEX_CMD_TAIL).matcher("");
       this.basenameRegex = basenameRegex;
       this.parser = parser;
       this.matchBackslash = matchBackslash;
+      this.toolNamePattern = Pattern.compile(getHead() + basenameRegex + REGEX_CMD_TAIL);
+    }
+
+    /**
+     * Gets the pattern part that matches the path of the tool, including the
+     * opening parenthesis of the group that matches the name of the tool.
+     */
+    String getHead() {
+      return matchBackslash ? REGEX_CMD_HEAD_WIN : REGEX_CMD_HEAD;
     }
 
     /**
@@ -360,14 +383,14 @@ class ParserDetection {
      *         MarchResult holding the de-composed command-line is returned.
      */
     public MarchResult basenameMatches(String commandLine) {
-      return matcherMatches(toolNameMatcher, commandLine);
+      return matcherMatches(toolNamePattern, commandLine);
     }
 
     /**
      * Gets, whether the parser for the tool arguments can properly parse the
      * specified command-line string. If so, the remaining arguments of the
-     * command-line are returned. This is time-consuming, since it creates a
-     * Matcher object on each invocation.
+     * command-line are returned. The pattern for a version suffix regex is
+     * compiled on first use only.
      *
      * @param commandLine
      *          the command-line to match
@@ -380,18 +403,50 @@ class ParserDetection {
      *         MarchResult holding the de-composed command-line is returned.
      */
     public MarchResult basenameWithVersionMatches(String commandLine, String versionRegex) {
-      Matcher matcher = Pattern.compile(REGEX_CMD_HEAD + basenameRegex + versionRegex + REGEX_CMD_TAIL).matcher("");
-      return matcherMatches(matcher, commandLine);
+      Pattern pattern = getVersionPattern("", versionRegex,
+          () -> REGEX_CMD_HEAD + getBasenameWithVersionRegex(versionRegex) + REGEX_CMD_TAIL);
+      return matcherMatches(pattern, commandLine);
     }
 
     /**
-     * Gets, whether the specified Matcher for the tool arguments can properly
+     * Gets the regular expression that matches the name of the tool with a
+     * version suffix, without the path of the tool.
+     */
+    String getBasenameWithVersionRegex(String versionRegex) {
+      return basenameRegex + versionRegex;
+    }
+
+    /**
+     * Gets the pattern for the specified version suffix regex from the cache
+     * or compiles and caches it.
+     *
+     * @param kind
+     *          distinguishes the patterns of the methods that use a version
+     *          suffix
+     */
+    protected final Pattern getVersionPattern(String kind, String versionRegex, Supplier<String> regex) {
+      final String key = kind + versionRegex;
+      Pattern pattern = versionPatterns.get(key);
+      if (pattern == null) {
+        pattern = Pattern.compile(regex.get());
+        if (versionPatterns.size() >= MAX_COMBINED_DETECTORS) {
+          // version pattern was changed frequently
+          versionPatterns.clear();
+        }
+        versionPatterns.put(key, pattern);
+      }
+      return pattern;
+    }
+
+    /**
+     * Gets, whether the specified Pattern for the tool arguments can properly
      * parse the specified command-line string. If so, the remaining arguments
-     * of the command-line are returned.
+     * of the command-line are returned. Creates a Matcher on each invocation, so
+     * that detectors may be used by multiple threads concurrently.
      *
-     * @param matcher
-     *          the matcher that performs the match a regular expression that
-     *          matches the version string in the name of the tool to detect.
+     * @param pattern
+     *          the regular expression that matches the name of the tool to
+     *          detect.
      * @param commandLine
      *          the command-line to match
      *
@@ -399,14 +454,30 @@ class ParserDetection {
      *         command-line string. Otherwise, if the tool name matches, a
      *         MarchResult holding the de-composed command-line is returned.
      */
-    protected final MarchResult matcherMatches(Matcher matcher, String commandLine) {
-      matcher.reset(commandLine);
+    protected final MarchResult matcherMatches(Pattern pattern, String commandLine) {
+      final Matcher matcher = pattern.matcher(commandLine);
       if (matcher.lookingAt()) {
         return new MarchResult(commandLine.substring(matcher.start(), matcher.end()).trim(),
             commandLine.substring(matcher.end()));
       }
       return null;
     }
+
+    /**
+     * Gets a string of the properties that determine which command-lines this detector matches and how they are parsed.
+     * A remembered detection result stays valid as long as the signatures of all detectors are unchanged.
+     */
+    String getSignature() {
+      return getClass().getName() + '\0' + basenameRegex + '\0' + matchBackslash + '\0' + parser.getClass().getName()
+          + '\0' + parser.getLanguageId() + '\0' + parser.getBuiltinDetectionType();
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + " [basenameRegex=" + basenameRegex + ", matchBackslash=" + matchBackslash
+          + ", languageId=" + parser.getLanguageId() + ", builtinDetectionType=" + parser.getBuiltinDetectionType()
+          + "]";
+    }
   } // ParserDetector
 
   /**
@@ -418,10 +489,10 @@ class ParserDetection {
    */
   static class ParserDetectorExt extends ParserDetector {
     /**
-     * the Matcher that matches the name of the tool (including its path AND its
+     * the Pattern that matches the name of the tool (including its path AND its
      * filename extension) on a given command-line or {@code null}
      */
-    private final Matcher toolNameMatcherExt;
+    private final Pattern toolNamePatternExt;
     private final String extensionRegex;
 
     /**
@@ -458,10 +529,8 @@ class ParserDetection {
     public ParserDetectorExt(String basenameRegex, boolean matchBackslash, String extensionRegex,
         IToolCommandlineParser parser) {
       super(basenameRegex, matchBackslash, parser);
-      String head = matchBackslash ? REGEX_CMD_HEAD_WIN : REGEX_CMD_HEAD;
-      this.toolNameMatcherExt = Pattern
-          .compile(head + basenameRegex + Pattern.quote(".") + extensionRegex + REGEX_CMD_TAIL).matcher("");
       this.extensionRegex = extensionRegex;
+      this.toolNamePatternExt = Pattern.compile(getHead() + getBasenameWithExtensionRegex() + REGEX_CMD_TAIL);
     }
 
     /**
@@ -476,14 +545,14 @@ class ParserDetection {
      *         MarchResult holding the de-composed command-line is returned.
      */
     public MarchResult basenameWithExtensionMatches(String commandLine) {
-      return matcherMatches(toolNameMatcherExt, commandLine);
+      return matcherMatches(toolNamePatternExt, commandLine);
     }
 
     /**
      * Gets, whether the parser for the tool arguments can properly parse the
      * specified command-line string. If so, the remaining arguments of the
-     * command-line are returned. This is time-consuming, since it creates a
-     * Matcher object on each invocation.
+     * command-line are returned. The pattern for a version suffix regex is
+     * compiled on first use only.
      *
      * @param commandLine
      *          the command-line to match
@@ -496,15 +565,140 @@ class ParserDetection {
      *         MarchResult holding the de-composed command-line is returned.
      */
     public MarchResult basenameWithVersionAndExtensionMatches(String commandLine, String versionRegex) {
-      String head = matchBackslash ? REGEX_CMD_HEAD_WIN : REGEX_CMD_HEAD;
-      Matcher matcher = Pattern
-          .compile(head + basenameRegex + versionRegex + Pattern.quote(".") + extensionRegex + REGEX_CMD_TAIL)
-          .matcher("");
-      return matcherMatches(matcher, commandLine);
+      Pattern pattern = getVersionPattern("ext:", versionRegex, () -> getHead()
+          + getBasenameWithVersionAndExtensionRegex(versionRegex) + REGEX_CMD_TAIL);
+      return matcherMatches(pattern, commandLine);
     }
 
+    /**
+     * Gets the regular expression that matches the name of the tool with its
+     * filename extension, without the path of the tool.
+     */
+    String getBasenameWithExtensionRegex() {
+      return basenameRegex + Pattern.quote(".") + extensionRegex;
+    }
+
+    /**
+     * Gets the regular expression that matches the name of the tool with a
+     * version suffix and its filename extension, without the path of the tool.
+     */
+    String getBasenameWithVersionAndExtensionRegex(String versionRegex) {
+      return basenameRegex + versionRegex + Pattern.quote(".") + extensionRegex;
+    }
+
+    @Override
+    String getSignature() {
+      return super.getSignature() + '\0' + extensionRegex;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + " [extensionRegex=" + extensionRegex + "]";
+    }
   }
 
+  /**
+   * All detectors of a list combined into a single pattern, so that a
+   * command-line is matched by a single {@code Matcher}, instead of one for each
+   * detector and detection method.<br>
+   * The pattern is an alternation with one alternative per detector and
+   * detection method. Each alternative includes the pattern part that matches
+   * the path of the tool, so the regex engine tries each alternative on all
+   * positions before it tries the next one. The alternatives are ordered by
+   * detection method first and by detector next, which gives the detector that
+   * matched the same priority as when trying the detectors one after the other.
+   * Instances are immutable and may be used by multiple threads concurrently.
+   *
+   * @author Martin Weber
+   */
+  private static class CombinedDetector {
+    private final Pattern pattern;
+    /** the number of the capturing group of each alternative */
+    private final int[] groups;
+    /** the detector and detection method of each alternative */
+    private final DetectorWithMethod[] alternatives;
+
+    /**
+     * @param detectors
+     *          the detectors to combine
+     * @param versionSuffixRegex
+     *          the regular expression to match a version suffix in the compiler
+     *          name or {@code null} to not try to detect the compiler with a
+     *          version suffix
+     */
+    CombinedDetector(List<ParserDetector> detectors, String versionSuffixRegex) {
+      final List<DetectorWithMethod> alternatives = new ArrayList<>();
+      final List<String> regexes = new ArrayList<>();
+      // try basenames
+      for (ParserDetector pd : detectors) {
+        alternatives.add(new DetectorWithMethod(pd, DetectorWithMethod.DetectionMethod.BASENAME));
+        regexes.add(pd.getHead() + pd.basenameRegex);
+      }
+      if (versionSuffixRegex != null) {
+        // try with version pattern
+        for (ParserDetector pd : detectors) {
+          alternatives.add(new DetectorWithMethod(pd, DetectorWithMethod.DetectionMethod.WITH_VERSION));
+          regexes.add(ParserDetector.REGEX_CMD_HEAD + pd.getBasenameWithVersionRegex(versionSuffixRegex));
+        }
+      }
+      // try with extension
+      for (ParserDetector pd : detectors) {
+        if (pd instanceof ParserDetectorExt) {
+          alternatives.add(new DetectorWithMethod(pd, DetectorWithMethod.DetectionMethod.WITH_EXTENSION));
+          regexes.add(pd.getHead() + ((ParserDetectorExt) pd).getBasenameWithExtensionRegex());
+        }
+      }
+      if (versionSuffixRegex != null) {
+        // try with extension and version
+        for (ParserDetector pd : detectors) {
+          if (pd instanceof ParserDetectorExt) {
+            alternatives.add(new DetectorWithMethod(pd, DetectorWithMethod.DetectionMethod.WITH_VERSION_EXTENSION));
+            regexes.add(pd.getHead()
+                + ((ParserDetectorExt) pd).getBasenameWithVersionAndExtensionRegex(versionSuffixRegex));
+          }
+        }
+      }
+
+      final StringBuilder regex = new StringBuilder("^(?:");
+      this.groups = new int[regexes.size()];
+      int group = 1;
+      for (int i = 0; i < regexes.size(); i++) {
+        final String alternative = regexes.get(i) + ParserDetector.REGEX_CMD_TAIL;
+        if (i > 0)
+          regex.append('|');
+        regex.append('(').append(alternative).append(')');
+        groups[i] = group;
+        group += 1 + Pattern.compile(alternative).matcher("").groupCount();
+      }
+      regex.append(')');
+      this.pattern = Pattern.compile(regex.toString());
+      this.alternatives = alternatives.toArray(new DetectorWithMethod[alternatives.size()]);
+    }
+
+    /**
+     * Determines the detector that matches the tool name in the specified
+     * command-line.
+     *
+     * @return {@code null} if none of the detectors matches the tool name in the
+     *         specified command-line string. Otherwise, if the tool name
+     *         matches, a {@code ParserDetectionResult} holding the de-composed
+     *         command-line is returned.
+     */
+    ParserDetectionResult determineDetector(String commandLine) {
+      final Matcher matcher = pattern.matcher(commandLine);
+      if (matcher.lookingAt()) {
+        for (int i = 0; i < groups.length; i++) {
+          if (matcher.start(groups[i]) != -1) {
+            return new ParserDetectionResult(alternatives[i],
+                new MarchResult(commandLine.substring(matcher.start(), matcher.end()).trim(),
+                    commandLine.substring(matcher.end())));
+          }
+        }
+      }
+      return null;
+    }
+  } // CombinedDetector
+
   // has package scope for unittest purposes
   static class DetectorWithMethod {
     enum DetectionMethod {
@@ -554,6 +748,34 @@ class ParserDetection {
       return how;
     }
 
+    /**
+     * Gets, whether the detector matches the name of the tool on the specified command-line, using the method that
+     * was used to match.
+     *
+     * @param commandLine
+     *          the command-line to match
+     * @param versionRegex
+     *          the regular expression to match a version suffix in the tool name or {@code null} if a version suffix
+     *          is not allowed
+     * @return {@code null} if the detector did not match the tool name in the command-line string. Otherwise, if the
+     *         tool name matches, a MarchResult holding the de-composed command-line is returned.
+     */
+    public MarchResult matches(String commandLine, String versionRegex) {
+      switch (how) {
+      case BASENAME:
+        return detector.basenameMatches(commandLine);
+      case WITH_EXTENSION:
+        return ((ParserDetectorExt) detector).basenameWithExtensionMatches(commandLine);
+      case WITH_VERSION:
+        return versionRegex == null ? null : detector.basenameWithVersionMatches(commandLine, versionRegex);
+      case WITH_VERSION_EXTENSION:
+        return versionRegex == null ? null
+            : ((ParserDetectorExt) detector).basenameWithVersionAndExtensionMatches(commandLine, versionRegex);
+      default:
+        return null;
+      }
+    }
+
   }
 
   /** The result of matching a commandline string.
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package de.marw.cmake.cdt.language.settings.providers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import de.marw.cmake.CMakePlugin;
+import de.marw.cmake.DataStreamUtil;
+import de.marw.cmake.cdt.language.settings.providers.ParserDetection.DetectorWithMethod;
+import de.marw.cmake.cdt.language.settings.providers.ParserDetection.MarchResult;
+import de.marw.cmake.cdt.language.settings.providers.ParserDetection.ParserDetectionResult;
+import de.marw.cmake.cdt.language.settings.providers.ParserDetection.ParserDetector;
+
+/**
+ * Remembers the tool detector that matched a compiler executable, so that the detectors need not be tried again for
+ * each command-line that invokes the same executable. The cache is shared by all configurations and projects and is
+ * persisted in the plugin's state location between sessions. It is discarded when the table of tool detectors
+ * changes.<br>
+ * Methods may be invoked by multiple threads concurrently.
+ *
+ * @author Martin Weber
+ */
+class ParserDetectionCache {
+  private static final ILog log = CMakePlugin.getDefault().getLog();
+
+  private static final String CACHE_FILE = "parser_detection.bin";
+  /** magic number of the cache file */
+  private static final int CACHE_MAGIC = 0x43435044;
+  private static final int CACHE_VERSION = 2;
+  /** the number of entries above which the cache is cleared */
+  private static final int MAX_ENTRIES = 4096;
+
+  private static final ParserDetectionCache INSTANCE = new ParserDetectionCache();
+
+  /**
+   * the detectors by version pattern and executable, see {@link #getKey}
+   */
+  private final Map<String, DetectorWithMethod> detectors = new ConcurrentHashMap<>();
+  /** the cache file or {@code null} to use the file in the plugin's state location, guarded by {@code this} */
+  private File cacheFile;
+  /** whether the cache file was read, guarded by {@code this} */
+  private boolean loaded;
+  /** whether the cache was modified since it was read or written */
+  private volatile boolean dirty;
+
+  private ParserDetectionCache() {
+  }
+
+  /**
+   * Determines the parser detector that can parse the specified command-line. Tries the detector that matched the
+   * executable of the command-line last time first, so the detectors are tried only for an executable not seen before.
+   *
+   * @param line
+   *          the command line to process
+   * @param versionSuffixRegex
+   *          the regular expression to match a version suffix in the compiler name or {@code null} to not try to
+   *          detect the compiler with a version suffix
+   * @param tryWindowsDectors
+   *          whether to also try the detectors for ms windows OS
+   * @return {@code null} if none of the detectors matches the tool name in the specified command-line string.
+   * @see ParserDetection#determineDetector(String, String, boolean)
+   */
+  static ParserDetectionResult determineDetector(String line, String versionSuffixRegex,
+      boolean tryWindowsDectors) {
+    final String executable = getExecutable(line);
+    if (executable.isEmpty()) {
+      return ParserDetection.determineDetector(line, versionSuffixRegex, tryWindowsDectors);
+    }
+    INSTANCE.load();
+    final String key = getKey(versionSuffixRegex, executable);
+    final DetectorWithMethod cached = INSTANCE.detectors.get(key);
+    if (cached != null) {
+      final MarchResult cmdline = cached.matches(line, versionSuffixRegex);
+      if (cmdline != null && executable.equals(cmdline.getCommand())) {
+        return new ParserDetectionResult(cached, cmdline);
+      }
+    }
+    final ParserDetectionResult result = ParserDetection.determineDetector(line, versionSuffixRegex,
+        tryWindowsDectors);
+    // remember only, if the detector matched the executable as a whole
+    if (result != null && executable.equals(result.getCommandLine().getCommand())) {
+      if (INSTANCE.detectors.size() >= MAX_ENTRIES) {
+        INSTANCE.detectors.clear();
+      }
+      INSTANCE.detectors.put(key, result.getDetectorWithMethod());
+      INSTANCE.dirty = true;
+    }
+    return result;
+  }
+
+  /**
+   * Writes the cache to the plugin's state location, if it was modified.
+   */
+  static void save() {
+    if (INSTANCE.dirty) {
+      INSTANCE.store();
+    }
+  }
+
+  /**
+   * Makes the cache use the specified file and forgets all remembered detectors. Intended for tests, which must not
+   * touch the file in the plugin's state location.
+   *
+   * @param file
+   *          the cache file or {@code null} to use the file in the plugin's state location
+   */
+  static void setCacheFile(File file) {
+    synchronized (INSTANCE) {
+      INSTANCE.cacheFile = file;
+      INSTANCE.detectors.clear();
+      INSTANCE.loaded = false;
+      INSTANCE.dirty = false;
+    }
+  }
+
+  /**
+   * Gets the executable of the specified command-line: the characters up to the first whitespace.
+   */
+  private static String getExecutable(String line) {
+    line = ToolCommandlineParser.trimLeadingWS(line);
+    int end = 0;
+    while (end < line.length() && line.charAt(end) > ' ') {
+      end++;
+    }
+    return line.substring(0, end);
+  }
+
+  private static String getKey(String versionSuffixRegex, String executable) {
+    return (versionSuffixRegex == null ? "" : versionSuffixRegex) + '\0' + executable;
+  }
+
+  /**
+   * Gets the signature of the table of tool detectors, made of the signatures of the detectors in table order. A cache
+   * file written with a different table is discarded.
+   */
+  private static String getSignature(List<ParserDetector> all) {
+    final StringBuilder sb = new StringBuilder();
+    for (ParserDetector detector : all) {
+      sb.append(detector.getSignature()).append('\n');
+    }
+    return sb.toString();
+  }
+
+  private File getCacheFile() {
+    if (cacheFile != null)
+      return cacheFile;
+    return CMakePlugin.getDefault().getStateLocation().append(CACHE_FILE).toFile();
+  }
+
+  /**
+   * Reads the cache file written by the last session, unless already read.
+   */
+  private synchronized void load() {
+    if (loaded)
+      return;
+    loaded = true;
+    final File cacheFile = getCacheFile();
+    final List<ParserDetector> all = ParserDetection.getAllDetectors();
+    final DetectorWithMethod.DetectionMethod[] methods = DetectorWithMethod.DetectionMethod.values();
+    final Map<String, DetectorWithMethod> read = new HashMap<>();
+    try {
+      DataStreamUtil.readFile(cacheFile, CACHE_MAGIC, CACHE_VERSION, in -> {
+        if (!getSignature(all).equals(DataStreamUtil.readString(in)))
+          return;
+        for (int count = in.readInt(); count > 0; count--) {
+          final String key = DataStreamUtil.readString(in);
+          final ParserDetector detector = all.get(in.readInt());
+          read.put(key, new DetectorWithMethod(detector, methods[in.readInt()]));
+        }
+      });
+    } catch (IOException | RuntimeException ex) {
+      log.log(new Status(IStatus.WARNING, CMakePlugin.PLUGIN_ID, "Ignoring parser detection cache " + cacheFile, ex));
+      return;
+    }
+    for (Map.Entry<String, DetectorWithMethod> entry : read.entrySet()) {
+      detectors.putIfAbsent(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Writes the cache file.
+   */
+  private synchronized void store() {
+    dirty = false;
+    final List<ParserDetector> all = ParserDetection.getAllDetectors();
+    final File cacheFile = getCacheFile();
+    final Map<String, DetectorWithMethod> entries = new HashMap<>(detectors);
+    try {
+      DataStreamUtil.writeFile(cacheFile, CACHE_MAGIC, CACHE_VERSION, out -> {
+        DataStreamUtil.writeString(out, getSignature(all));
+        out.writeInt(entries.size());
+        for (Map.Entry<String, DetectorWithMethod> entry : entries.entrySet()) {
+          DataStreamUtil.writeString(out, entry.getKey());
+          out.writeInt(all.indexOf(entry.getValue().getDetector()));
+          out.writeInt(entry.getValue().getHow().ordinal());
+        }
+      });
+    } catch (IOException ex) {
+      log.log(new Status(IStatus.WARNING, CMakePlugin.PLUGIN_ID, "Failed to write parser detection cache " + cacheFile,
+          ex));
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package de.marw.cmake.cdt.language.settings.providers;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Maps file system locations to files in the workspace. Holds a path trie of the locations of the open projects and
+ * of all their linked folders and linked files; a location is resolved against the container with the longest matching
+ * location, so that a location outside of the workspace is rejected in O(path length). This replaces
+ * {@link IWorkspaceRoot#findFilesForLocationURI}, which scans all projects and linked resources on each invocation.<br>
+ * The index is shared by all parses and re-built after a project was added, removed, opened or closed or after a
+ * linked resource was added or re-created. Instances may be used by multiple threads concurrently.
+ *
+ * @author Martin Weber
+ */
+class ResourceLocationIndex {
+  /** whether the file system is case-insensitive */
+  private static final boolean IGNORE_CASE = File.separatorChar == '\\';
+
+  /** the shared index or {@code null} if it must be re-built */
+  private static volatile ResourceLocationIndex current;
+  private static final AtomicBoolean listening = new AtomicBoolean();
+
+  private final Node root = new Node();
+
+  /**
+   * Creates an index of the locations of the open projects and their linked resources.
+   *
+   * @param workspaceRoot
+   *          the workspace root
+   */
+  ResourceLocationIndex(IWorkspaceRoot workspaceRoot) {
+    for (IProject project : workspaceRoot.getProjects()) {
+      if (project.isOpen()) {
+        add(project);
+        try {
+          addLinks(project);
+        } catch (CoreException ignore) {
+          // project was closed or deleted meanwhile
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the shared index of the workspace. Creates the index if the workspace changed since it was created last.
+   */
+  static ResourceLocationIndex get() {
+    final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+    if (listening.compareAndSet(false, true)) {
+      workspace.addResourceChangeListener(ResourceLocationIndex::resourceChanged, IResourceChangeEvent.POST_CHANGE);
+    }
+    ResourceLocationIndex index = current;
+    if (index == null) {
+      index = new ResourceLocationIndex(workspace.getRoot());
+      current = index;
+    }
+    return index;
+  }
+
+  /**
+   * Drops the shared index if a project was added, removed, opened or closed or if a linked resource was added or
+   * changed otherwise than in content. A removed linked resource is skipped on look-up, since it does not exist any longer.
+   */
+  private static void resourceChanged(IResourceChangeEvent event) {
+    final IResourceDelta delta = event.getDelta();
+    if (delta == null || current == null)
+      return;
+    try {
+      delta.accept(ResourceLocationIndex::visitDelta);
+    } catch (CoreException ignore) {
+      // the visitor does not throw
+    }
+  }
+
+  /**
+   * Visits a resource delta. Drops the shared index if the change affects the index.
+   *
+   * @return whether to visit the children of the delta
+   */
+  private static boolean visitDelta(IResourceDelta delta) {
+    if (current == null)
+      return false;
+    final IResource resource = delta.getResource();
+    switch (resource.getType()) {
+    case IResource.ROOT:
+      return true;
+    case IResource.PROJECT:
+      if (delta.getKind() != IResourceDelta.CHANGED
+          || (delta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION)) != 0) {
+        current = null;
+        return false;
+      }
+      return true;
+    default:
+      if (resource.isLinked()) {
+        // a re-created link may have a different location
+        if (delta.getKind() == IResourceDelta.ADDED || (delta.getFlags() & ~(IResourceDelta.CONTENT
+            | IResourceDelta.MARKERS | IResourceDelta.SYNC | IResourceDelta.ENCODING)) != 0) {
+          current = null;
+        }
+        // the members of a linked folder are found through its location
+        return false;
+      }
+      return resource.getType() != IResource.FILE;
+    }
+  }
+
+  /**
+   * Adds the locations of the linked resources below the specified project. Does not descend into linked folders, since
+   * their members are found through the location of the folder.
+   */
+  private void addLinks(IProject project) throws CoreException {
+    project.accept(this::visit, IResource.NONE);
+  }
+
+  /**
+   * Visits a resource of a project while the index is built.
+   *
+   * @return whether to visit the members of the resource
+   */
+  private boolean visit(IResourceProxy proxy) {
+    if (proxy.isLinked()) {
+      final IResource resource = proxy.requestResource();
+      if (resource.getType() == IResource.FILE) {
+        addFile((IFile) resource);
+      } else {
+        add((IContainer) resource);
+      }
+      return false;
+    }
+    return proxy.getType() != IResource.FILE;
+  }
+
+  /**
+   * Adds the location of the specified container to the index.
+   */
+  private void add(IContainer container) {
+    final Node node = getOrAddNode(container.getLocation());
+    if (node != null && node.container == null) {
+      node.container = container;
+    }
+  }
+
+  /**
+   * Adds the location of the specified linked file to the index.
+   */
+  private void addFile(IFile file) {
+    final Node node = getOrAddNode(file.getLocation());
+    if (node != null && node.file == null) {
+      node.file = file;
+    }
+  }
+
+  private Node getOrAddNode(IPath location) {
+    if (location == null)
+      return null;
+    Node node = root.getOrAddChild(getDeviceKey(location));
+    for (int i = 0; i < location.segmentCount(); i++) {
+      node = node.getOrAddChild(getSegmentKey(location.segment(i)));
+    }
+    return node;
+  }
+
+  /**
+   * Gets the workspace file for the specified file system location.
+   *
+   * @param location
+   *          the absolute location of the file in the file system
+   * @return the file or {@code null} if the location is not inside a project or a linked resource of the workspace
+   */
+  IFile findFile(IPath location) {
+    Node node = root.getChild(getDeviceKey(location));
+    IContainer container = null;
+    int matched = 0;
+    for (int i = 0; node != null && i < location.segmentCount(); i++) {
+      node = node.getChild(getSegmentKey(location.segment(i)));
+      // a removed link stays in the index until it is re-built
+      if (node != null && node.container != null && node.container.exists()) {
+        container = node.container;
+        matched = i + 1;
+      }
+    }
+    if (node != null && node.file != null && node.file.exists()) {
+      // a linked file
+      return node.file;
+    }
+    if (container != null && matched < location.segmentCount()) {
+      return container.getFile(location.removeFirstSegments(matched).setDevice(null));
+    }
+    return null;
+  }
+
+  private static String getDeviceKey(IPath location) {
+    final String device = location.getDevice();
+    return device == null ? "" : getSegmentKey(device);
+  }
+
+  private static String getSegmentKey(String segment) {
+    return IGNORE_CASE ? segment.toLowerCase(Locale.ROOT) : segment;
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // inner classes
+  ////////////////////////////////////////////////////////////////////
+  /**
+   * A node in the path trie.
+   */
+  private static class Node {
+    private Map<String, Node> children;
+    /** the container located at the path of this node or {@code null} */
+    private IContainer container;
+    /** the linked file located at the path of this node or {@code null} */
+    private IFile file;
+
+    private Node getChild(String key) {
+      return children == null ? null : children.get(key);
+    }
+
+    private Node getOrAddChild(String key) {
+      if (children == null)
+        children = new HashMap<>(4);
+      return children.computeIfAbsent(key, k -> new Node());
+    }
+  } // Node
+}
@@ -12,8 +12,8 @@
 package de.marw.cmake.cdt.language.settings.providers;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.regex.Matcher;
 
 import org.eclipse.core.runtime.IPath;
@@ -53,45 +53,64 @@ class ResponseFileArgumentParsers {
      * @see
      * de.marw.cmake.cdt.language.settings.providers.IResponseFileArgumentParser
      * #process(de.marw.cmake.cdt.language.settings.providers.IParserHandler,
-     * java.lang.String)
+     * java.lang.CharSequence, int)
      */
     @Override
-    public int process(IParserHandler parserHandler, String argsLine) {
+    public int process(IParserHandler parserHandler, CharSequence argsLine, int start) {
       for (NameOptionMatcher oMatcher : optionMatchers) {
-        final Matcher matcher = oMatcher.matcher;
-
-        matcher.reset(argsLine);
+        final Matcher matcher = oMatcher.pattern.matcher(argsLine).region(start, argsLine.length());
         if (matcher.lookingAt()) {
-          String fname = matcher.group(oMatcher.nameGroup);
-          final int consumed = matcher.end();
-          if("<<".equals(fname)) {
-            // see https://github.com/15knots/cmake4eclipse/issues/94
-            // Handle '@<< compiler-args <<' syntax: The file '<<' does not exist, arguments come from argsline.
-            // so we just do not open the non-existing file
-            return consumed;
-          }
+          parseFile(parserHandler, matcher.group(oMatcher.nameGroup));
+          return matcher.end() - start;
+        }
+      }
+      return 0;// no input consumed
+    }
 
-          IPath path = Path.fromOSString(fname);
-          if (!path.isAbsolute()) {
-            // relative path, prepend CWD
-            fname = parserHandler.getCompilerWorkingDirectory().append(path).toOSString();
-          }
+    @Override
+    public String getOptionName() {
+      return "@";
+    }
 
-          // parse file
-          java.nio.file.Path fpath = Paths.get(fname);
-          try {
-            String args2 = new String(Files.readAllBytes(fpath));
-            parserHandler.parseArguments(args2);
-          } catch (IOException e) {
-            // swallow exception for now
-            e.printStackTrace();
-          }
-          return consumed;
-        }
+    @Override
+    public int process(IParserHandler parserHandler, List<String> args, int index) {
+      final String arg = args.get(index);
+      if (arg.length() > 1 && arg.charAt(0) == '@') {
+        parseFile(parserHandler, arg.substring(1));
+        return 1;
       }
       return 0;// no input consumed
     }
 
+    /**
+     * Parses the content of the specified response file.
+     *
+     * @param fname
+     *          the name of the response file, relative names are resolved against the compiler working directory
+     */
+    private static void parseFile(IParserHandler parserHandler, String fname) {
+      if ("<<".equals(fname)) {
+        // see https://github.com/15knots/cmake4eclipse/issues/94
+        // Handle '@<< compiler-args <<' syntax: The file '<<' does not exist, arguments come from argsline.
+        // so we just do not open the non-existing file
+        return;
+      }
+
+      IPath path = Path.fromOSString(fname);
+      if (!path.isAbsolute()) {
+        // relative path, prepend CWD
+        fname = parserHandler.getCompilerWorkingDirectory().append(path).toOSString();
+      }
+
+      // parse file
+      java.nio.file.Path fpath = Paths.get(fname);
+      try {
+        parserHandler.parseResponseFile(fpath);
+      } catch (IOException e) {
+        // swallow exception for now
+        e.printStackTrace();
+      }
+    }
   }
 
 }
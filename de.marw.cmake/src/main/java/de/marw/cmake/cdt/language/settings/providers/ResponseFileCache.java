@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package de.marw.cmake.cdt.language.settings.providers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Caches the content of response files and the language settings entries parsed from them, so that a response file
+ * that is referenced by many command-lines is read and parsed once only. A response file is identified by its
+ * absolute path, its modification time and its size.<br>
+ * An instance is meant to be used for a single parse of a build output or a {@code compile_commands.json} file only.
+ * Methods may be invoked by multiple threads concurrently.
+ *
+ * @author Martin Weber
+ */
+class ResponseFileCache {
+  private static final Pattern WS_PATTERN = Pattern.compile("\\s+");
+
+  /** the contents of the response files */
+  private final Map<FileKey, String> contents = new ConcurrentHashMap<>();
+  /** the entries parsed from the response files */
+  private final Map<EntriesKey, List<ICLanguageSettingEntry>> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the key of the specified response file in its current state.
+   *
+   * @throws IOException
+   *           if the file does not exist or its attributes cannot be read
+   */
+  FileKey getFileKey(Path file) throws IOException {
+    file = file.toAbsolutePath().normalize();
+    final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+    return new FileKey(file, attrs.lastModifiedTime().toMillis(), attrs.size());
+  }
+
+  /**
+   * Gets the content of the specified response file. Reads the file, if not already done.
+   *
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  String getContent(FileKey key) throws IOException {
+    String content = contents.get(key);
+    if (content == null) {
+      content = readContent(key.file);
+      contents.putIfAbsent(key, content);
+    }
+    return content;
+  }
+
+  /**
+   * Gets a hash of the current state of the response files referenced by the specified arguments and of the response
+   * files these reference in turn. The state of a response file is its path, modification time and size.
+   *
+   * @param directory
+   *          the current working directory of the compiler, relative file names are resolved against it
+   * @param args
+   *          the command line arguments, those starting with {@code @} name a response file
+   * @return the hash, equal for equal states
+   */
+  long getStateHash(String directory, List<String> args) {
+    final Deque<String> names = new ArrayDeque<>();
+    for (String arg : args) {
+      addResponseFileName(names, arg);
+    }
+    long hash = 0;
+    final Set<Path> seen = new HashSet<>();
+    while (!names.isEmpty()) {
+      final Path file;
+      try {
+        file = Paths.get(directory).resolve(names.poll()).toAbsolutePath().normalize();
+      } catch (InvalidPathException ex) {
+        continue;
+      }
+      if (!seen.add(file))
+        continue;
+      hash = mix(hash, file.toString().hashCode());
+      try {
+        final FileKey key = getFileKey(file);
+        hash = mix(mix(hash, key.lastModified), key.size);
+        for (String arg : WS_PATTERN.split(getContent(key))) {
+          addResponseFileName(names, arg);
+        }
+      } catch (IOException ex) {
+        // a missing file differs from any existing file
+        hash = mix(hash, -1L);
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * Adds the name of the response file, if the specified argument references one.
+   */
+  private static void addResponseFileName(Deque<String> names, String arg) {
+    if (arg.length() > 1 && arg.charAt(0) == '@') {
+      String name = arg.substring(1);
+      if (name.length() > 1 && (name.charAt(0) == '"' || name.charAt(0) == '\'')
+          && name.charAt(name.length() - 1) == name.charAt(0)) {
+        name = name.substring(1, name.length() - 1);
+      }
+      // '@<<' takes the arguments from the command line, see ResponseFileArgumentParsers.At
+      if (!"<<".equals(name))
+        names.add(name);
+    }
+  }
+
+  private static long mix(long hash, long value) {
+    return (hash ^ value) * 0x100000001b3L;
+  }
+
+  /**
+   * Reads the content of a response file. The content is decoded as UTF-8.
+   */
+  static String readContent(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the entries parsed from the specified response file.
+   *
+   * @param parser
+   *          the parser that parsed the arguments in the response file
+   * @param cwd
+   *          the current working directory of the compiler, relative include paths are resolved against it
+   * @return the entries or {@code null} if the file was not parsed with the specified parser and working directory
+   */
+  List<ICLanguageSettingEntry> getEntries(FileKey key, IToolCommandlineParser parser, IPath cwd) {
+    return entries.get(new EntriesKey(key, parser, cwd));
+  }
+
+  /**
+   * Stores the entries parsed from the specified response file.
+   *
+   * @param parser
+   *          the parser that parsed the arguments in the response file
+   * @param cwd
+   *          the current working directory of the compiler, relative include paths are resolved against it
+   * @param parsed
+   *          the entries parsed from the arguments in the response file
+   */
+  void putEntries(FileKey key, IToolCommandlineParser parser, IPath cwd, List<ICLanguageSettingEntry> parsed) {
+    entries.putIfAbsent(new EntriesKey(key, parser, cwd), Collections.unmodifiableList(parsed));
+  }
+
+  ////////////////////////////////////////////////////////////////////
+  // inner classes
+  ////////////////////////////////////////////////////////////////////
+  /**
+   * Identifies a response file in a specific state.
+   */
+  static final class FileKey {
+    private final Path file;
+    private final long lastModified;
+    private final long size;
+
+    private FileKey(Path file, long lastModified, long size) {
+      this.file = file;
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+
+    @Override
+    public int hashCode() {
+      return file.hashCode() * 31 + Long.hashCode(lastModified ^ size);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof FileKey))
+        return false;
+      final FileKey other = (FileKey) obj;
+      return lastModified == other.lastModified && size == other.size && file.equals(other.file);
+    }
+  } // FileKey
+
+  /**
+   * Identifies the entries parsed from a response file.
+   */
+  private static final class EntriesKey {
+    private final FileKey file;
+    private final IToolCommandlineParser parser;
+    private final IPath cwd;
+
+    EntriesKey(FileKey file, IToolCommandlineParser parser, IPath cwd) {
+      this.file = file;
+      this.parser = parser;
+      this.cwd = cwd;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, System.identityHashCode(parser), cwd);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof EntriesKey))
+        return false;
+      final EntriesKey other = (EntriesKey) obj;
+      return parser == other.parser && file.equals(other.file) && cwd.equals(other.cwd);
+    }
+  } // EntriesKey
+}
@@ -51,17 +51,68 @@ class ToolArgumentParsers {
   private ToolArgumentParsers() {
   }
 
+  /**
+   * Gets the value of an option from an argument list. The value either immediately follows the option name in the
+   * same argument or is the next argument.
+   *
+   * @param args
+   *          the arguments passed to the tool
+   * @param index
+   *          the index of the argument to parse
+   * @param option
+   *          the name of the option, e.g. {@code -I}
+   * @return the value of the option or {@code null} if the argument is not the specified option or has no value
+   */
+  private static String getOptionValue(List<String> args, int index, String option) {
+    final String arg = args.get(index);
+    if (!arg.startsWith(option))
+      return null;
+    if (arg.length() > option.length())
+      return arg.substring(option.length());
+    return index + 1 < args.size() ? args.get(index + 1) : null;
+  }
+
+  /**
+   * Gets the number of arguments consumed by an option, as determined by {@link #getOptionValue}.
+   */
+  private static int getOptionArgCount(List<String> args, int index, String option) {
+    return args.get(index).length() > option.length() ? 1 : 2;
+  }
+
+  /**
+   * Gets the name of a macro from the argument of a define or undefine option.
+   *
+   * @param macro
+   *          the macro name, with optional macro parameter list
+   * @return the macro name without its parameter list or {@code null} if the argument is not a valid macro name
+   */
+  private static String getMacroName(String macro) {
+    macro = ToolCommandlineParser.trimLeadingWS(macro);
+    int end = 0;
+    while (end < macro.length()
+        && (Character.isLetterOrDigit(macro.charAt(end)) || macro.charAt(end) == '_' || macro.charAt(end) == '$')) {
+      end++;
+    }
+    if (end == 0)
+      return null;
+    if (end == macro.length() || macro.charAt(end) == '(' && macro.charAt(macro.length() - 1) == ')')
+      return macro.substring(0, end);
+    return null;
+  }
+
   ////////////////////////////////////////////////////////////////////
   // Matchers for options
   ////////////////////////////////////////////////////////////////////
   /**
    * A matcher for option names. Includes information of the matcher groups that
-   * hold the option name.
+   * hold the option name.<br>
+   * Holds the compiled pattern only, so it may be shared across threads; a
+   * {@code Matcher} is created for each argument being parsed.
    *
    * @author Martin Weber
    */
   static class NameOptionMatcher {
-    final Matcher matcher;
+    final Pattern pattern;
     final int nameGroup;
 
     /**
@@ -73,13 +124,13 @@ class ToolArgumentParsers {
      *        - capturing group number defining name of an entry.
      */
     public NameOptionMatcher(String pattern, int nameGroup) {
-      this.matcher = Pattern.compile(pattern).matcher("");
+      this.pattern = Pattern.compile(pattern);
       this.nameGroup = nameGroup;
     }
 
     @Override
     public String toString() {
-      return "NameOptionMatcher [matcher=" + this.matcher + ", nameGroup=" + this.nameGroup + "]";
+      return "NameOptionMatcher [pattern=" + this.pattern + ", nameGroup=" + this.nameGroup + "]";
     }
   }
 
@@ -120,7 +171,7 @@ class ToolArgumentParsers {
 
     @Override
     public String toString() {
-      return "NameValueOptionMatcher [matcher=" + this.matcher + ", nameGroup=" + this.nameGroup + ", valueGroup="
+      return "NameValueOptionMatcher [pattern=" + this.pattern + ", nameGroup=" + this.nameGroup + ", valueGroup="
           + this.valueGroup + "]";
     }
   }
@@ -134,20 +185,41 @@ class ToolArgumentParsers {
    */
   private static abstract class MacroDefineGeneric {
 
-    protected final int processArgument(List<ICLanguageSettingEntry> returnedEntries, String args,
+    /**
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(List, IPath, CharSequence,
+     *      int)
+     */
+    protected final int processArgument(List<ICLanguageSettingEntry> returnedEntries, CharSequence args, int start,
         NameValueOptionMatcher[] optionMatchers) {
       for (NameValueOptionMatcher oMatcher : optionMatchers) {
-        final Matcher matcher = oMatcher.matcher;
-
-        matcher.reset(args);
+        final Matcher matcher = oMatcher.pattern.matcher(args).region(start, args.length());
         if (matcher.lookingAt()) {
           final String name = matcher.group(oMatcher.nameGroup);
           final String value = oMatcher.valueGroup== -1? null: matcher.group(oMatcher.valueGroup);
           final ICLanguageSettingEntry entry = CDataUtil.createCMacroEntry(name, value,
               ICSettingEntry.READONLY);
           returnedEntries.add(entry);
-          final int end = matcher.end();
-          return end;
+          return matcher.end() - start;
+        }
+      }
+      return 0;// no input consumed
+    }
+
+    /**
+     * @param option
+     *          the name of the option, e.g. {@code -D}
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(List, IPath, List, int)
+     */
+    protected final int processArgument(List<ICLanguageSettingEntry> returnedEntries, List<String> args, int index,
+        String option) {
+      final String macro = getOptionValue(args, index, option);
+      if (macro != null) {
+        final int eq = macro.indexOf('=');
+        final String name = getMacroName(eq == -1 ? macro : macro.substring(0, eq));
+        if (name != null) {
+          final String value = eq == -1 ? null : macro.substring(eq + 1);
+          returnedEntries.add(CDataUtil.createCMacroEntry(name, value, ICSettingEntry.READONLY));
+          return getOptionArgCount(args, index, option);
         }
       }
       return 0;// no input consumed
@@ -159,21 +231,38 @@ class ToolArgumentParsers {
    */
   private static class MacroUndefineGeneric {
 
-    /*-
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, java.lang.String)
+    /**
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(List, IPath, CharSequence,
+     *      int)
      */
-    protected final int processArgument(List<ICLanguageSettingEntry> returnedEntries, String argsLine,
-        NameOptionMatcher optionMatcher) {
-      final Matcher oMatcher = optionMatcher.matcher;
-
-      oMatcher.reset(argsLine);
+    protected final int processArgument(List<ICLanguageSettingEntry> returnedEntries, CharSequence argsLine,
+        int start, NameOptionMatcher optionMatcher) {
+      final Matcher oMatcher = optionMatcher.pattern.matcher(argsLine).region(start, argsLine.length());
       if (oMatcher.lookingAt()) {
         final String name = oMatcher.group(1);
         final ICLanguageSettingEntry entry = CDataUtil.createCMacroEntry(name, null,
             ICSettingEntry.UNDEFINED | ICSettingEntry.READONLY);
         returnedEntries.add(entry);
-        final int end = oMatcher.end();
-        return end;
+        return oMatcher.end() - start;
+      }
+      return 0;// no input consumed
+    }
+
+    /**
+     * @param option
+     *          the name of the option, e.g. {@code -U}
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(List, IPath, List, int)
+     */
+    protected final int processArgument(List<ICLanguageSettingEntry> returnedEntries, List<String> args, int index,
+        String option) {
+      final String macro = getOptionValue(args, index, option);
+      if (macro != null) {
+        final String name = getMacroName(macro);
+        if (name != null) {
+          returnedEntries.add(
+              CDataUtil.createCMacroEntry(name, null, ICSettingEntry.UNDEFINED | ICSettingEntry.READONLY));
+          return getOptionArgCount(args, index, option);
+        }
       }
       return 0;// no input consumed
     }
@@ -186,14 +275,13 @@ class ToolArgumentParsers {
     /**
      * @param cwd
      *          the current working directory of the compiler at its invocation
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(List, IPath, String)
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(List, IPath, CharSequence,
+     *      int)
      */
     protected final int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd,
-        String argsLine, NameOptionMatcher[] optionMatchers) {
+        CharSequence argsLine, int start, NameOptionMatcher[] optionMatchers) {
       for (NameOptionMatcher oMatcher : optionMatchers) {
-        final Matcher matcher = oMatcher.matcher;
-
-        matcher.reset(argsLine);
+        final Matcher matcher = oMatcher.pattern.matcher(argsLine).region(start, argsLine.length());
         if (matcher.lookingAt()) {
           String name = matcher.group(oMatcher.nameGroup);
           // workaround for relative path by cmake bug
@@ -207,12 +295,35 @@ class ToolArgumentParsers {
           final ICLanguageSettingEntry entry = CDataUtil.createCIncludePathEntry(name,
               ICSettingEntry.READONLY);
           returnedEntries.add(entry);
-          final int end = matcher.end();
-          return end;
+          return matcher.end() - start;
         }
       }
       return 0;// no input consumed
     }
+
+    /**
+     * @param cwd
+     *          the current working directory of the compiler at its invocation
+     * @param option
+     *          the name of the option, e.g. {@code -I}
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(List, IPath, List, int)
+     */
+    protected final int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args,
+        int index, String option) {
+      String name = getOptionValue(args, index, option);
+      if (name != null && !name.isEmpty()) {
+        // workaround for relative path by cmake bug
+        // https://gitlab.kitware.com/cmake/cmake/issues/13894 : prepend cwd
+        IPath path = Path.fromOSString(name);
+        if (!path.isAbsolute()) {
+          // prepend CWD
+          name = cwd.append(path).toOSString();
+        }
+        returnedEntries.add(CDataUtil.createCIncludePathEntry(name, ICSettingEntry.READONLY));
+        return getOptionArgCount(args, index, option);
+      }
+      return 0;// no input consumed
+    }
   }
 
   ////////////////////////////////////////////////////////////////////
@@ -246,11 +357,22 @@ class ToolArgumentParsers {
         };
 
     /*-
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgs(java.lang.String)
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, IPath, CharSequence, int)
      */
     @Override
-    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine) {
-      return processArgument(returnedEntries, argsLine, optionMatchers);
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, CharSequence argsLine,
+        int start) {
+      return processArgument(returnedEntries, argsLine, start, optionMatchers);
+    }
+
+    @Override
+    public String getOptionName() {
+      return "-D";
+    }
+
+    @Override
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args, int index) {
+      return processArgument(returnedEntries, args, index, getOptionName());
     }
 
   }
@@ -266,11 +388,22 @@ class ToolArgumentParsers {
         "-U" + REGEX_MACRO_NAME_SKIP_LEADING_WS, 1);
 
     /*-
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, java.lang.String)
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, IPath, CharSequence, int)
      */
     @Override
-    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine) {
-      return processArgument(returnedEntries, argsLine, optionMatcher);
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, CharSequence argsLine,
+        int start) {
+      return processArgument(returnedEntries, argsLine, start, optionMatcher);
+    }
+
+    @Override
+    public String getOptionName() {
+      return "-U";
+    }
+
+    @Override
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args, int index) {
+      return processArgument(returnedEntries, args, index, getOptionName());
     }
   }
 
@@ -287,11 +420,22 @@ class ToolArgumentParsers {
         new NameOptionMatcher("-I" + REGEX_INCLUDEPATH_UNQUOTED_DIR, 1) };
 
     /*-
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgs(java.lang.String)
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, IPath, CharSequence, int)
      */
     @Override
-    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine) {
-      return processArgument(returnedEntries, cwd, argsLine, optionMatchers);
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, CharSequence argsLine,
+        int start) {
+      return processArgument(returnedEntries, cwd, argsLine, start, optionMatchers);
+    }
+
+    @Override
+    public String getOptionName() {
+      return "-I";
+    }
+
+    @Override
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args, int index) {
+      return processArgument(returnedEntries, cwd, args, index, getOptionName());
     }
   }
 
@@ -308,11 +452,22 @@ class ToolArgumentParsers {
         new NameOptionMatcher("-isystem" + REGEX_INCLUDEPATH_UNQUOTED_DIR, 1), };
 
     /*-
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgs(java.lang.String)
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, IPath, CharSequence, int)
      */
     @Override
-    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine) {
-      return processArgument(returnedEntries, cwd, argsLine, optionMatchers);
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, CharSequence argsLine,
+        int start) {
+      return processArgument(returnedEntries, cwd, argsLine, start, optionMatchers);
+    }
+
+    @Override
+    public String getOptionName() {
+      return "-isystem";
+    }
+
+    @Override
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args, int index) {
+      return processArgument(returnedEntries, cwd, args, index, getOptionName());
     }
   }
 
@@ -333,11 +488,22 @@ class ToolArgumentParsers {
         new NameOptionMatcher("-isystem=" + "([^\\s]+)", 1), };
 
     /*-
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgs(java.lang.String)
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, IPath, CharSequence, int)
      */
     @Override
-    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine) {
-      return processArgument(returnedEntries, cwd, argsLine, optionMatchers);
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, CharSequence argsLine,
+        int start) {
+      return processArgument(returnedEntries, cwd, argsLine, start, optionMatchers);
+    }
+
+    @Override
+    public String getOptionName() {
+      return "-isystem=";
+    }
+
+    @Override
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args, int index) {
+      return processArgument(returnedEntries, cwd, args, index, getOptionName());
     }
   }
 
@@ -361,11 +527,22 @@ class ToolArgumentParsers {
         new NameValueOptionMatcher("/D" + REGEX_MACRO_NAME_SKIP_LEADING_WS + "(?:=)((\\\\([\"']))(.*?)\\2)", 1, 2), };
 
     /*-
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgs(java.lang.String)
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, IPath, CharSequence, int)
      */
     @Override
-    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine) {
-      return processArgument(returnedEntries, argsLine, optionMatchers);
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, CharSequence argsLine,
+        int start) {
+      return processArgument(returnedEntries, argsLine, start, optionMatchers);
+    }
+
+    @Override
+    public String getOptionName() {
+      return "/D";
+    }
+
+    @Override
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args, int index) {
+      return processArgument(returnedEntries, args, index, getOptionName());
     }
 
   }
@@ -381,11 +558,22 @@ class ToolArgumentParsers {
         "/U" + REGEX_MACRO_NAME_SKIP_LEADING_WS, 1);
 
     /*-
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, java.lang.String)
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, IPath, CharSequence, int)
      */
     @Override
-    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine) {
-      return processArgument(returnedEntries, argsLine, optionMatcher);
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, CharSequence argsLine,
+        int start) {
+      return processArgument(returnedEntries, argsLine, start, optionMatcher);
+    }
+
+    @Override
+    public String getOptionName() {
+      return "/U";
+    }
+
+    @Override
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args, int index) {
+      return processArgument(returnedEntries, args, index, getOptionName());
     }
   }
 
@@ -402,11 +590,22 @@ class ToolArgumentParsers {
         new NameOptionMatcher("/I" + REGEX_INCLUDEPATH_UNQUOTED_DIR, 1), };
 
     /*-
-     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgs(java.lang.String)
+     * @see de.marw.cmake.cdt.language.settings.providers.IToolArgumentParser#processArgument(java.util.List, IPath, CharSequence, int)
      */
     @Override
-    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, String argsLine) {
-      return processArgument(returnedEntries, cwd, argsLine, optionMatchers);
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, CharSequence argsLine,
+        int start) {
+      return processArgument(returnedEntries, cwd, argsLine, start, optionMatchers);
+    }
+
+    @Override
+    public String getOptionName() {
+      return "/I";
+    }
+
+    @Override
+    public int processArgument(List<ICLanguageSettingEntry> returnedEntries, IPath cwd, List<String> args, int index) {
+      return processArgument(returnedEntries, cwd, args, index, getOptionName());
     }
   }
 
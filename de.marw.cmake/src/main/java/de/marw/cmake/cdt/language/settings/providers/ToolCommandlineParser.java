@@ -10,10 +10,13 @@
  *******************************************************************************/
 package de.marw.cmake.cdt.language.settings.providers;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
 import org.eclipse.core.runtime.IPath;
@@ -28,16 +31,23 @@ import de.marw.cmake.cdt.language.settings.providers.builtins.BuiltinDetectionTy
  */
 class ToolCommandlineParser implements IToolCommandlineParser {
 
+  /** the empty set of argument parsers */
+  private static final IToolArgumentParser[] NO_PARSERS = {};
+
   private final IToolArgumentParser[] argumentParsers;
+  /**
+   * the argument parsers that tell their option name, indexed by the first
+   * character of the option name. Parsers with the longest option name come
+   * first. Parsers for option names that do not start with an ASCII character
+   * are in {@link #undispatchedParsers}
+   */
+  private final IToolArgumentParser[][] dispatchTable = new IToolArgumentParser[128][];
+  /** the argument parsers that are tried on each argument */
+  private final IToolArgumentParser[] undispatchedParsers;
   private final String languageID;
   private final IResponseFileArgumentParser responseFileArgumentParser;
   private final BuiltinDetectionType builtinDetectionType;
 
-  /** gathers all entries */
-  private List<ICLanguageSettingEntry> entries;
-
-  private IPath cwd;
-
   /**
    * @param languageID
    *          the language ID of the language that the tool compiles
@@ -60,16 +70,76 @@ class ToolCommandlineParser implements IToolCommandlineParser {
     this.builtinDetectionType = Objects.requireNonNull(builtinDetectionType, "builtinDetectionType");
     this.argumentParsers = Objects.requireNonNull(argumentParsers, "argumentParsers");
     this.responseFileArgumentParser = responseFileArgumentParser;
+
+    // build the dispatch table
+    final List<IToolArgumentParser> undispatched = new ArrayList<>();
+    for (IToolArgumentParser tap : argumentParsers) {
+      final String option = tap.getOptionName();
+      if (option == null || option.isEmpty() || option.charAt(0) >= dispatchTable.length) {
+        undispatched.add(tap);
+      } else {
+        final IToolArgumentParser[] bucket = dispatchTable[option.charAt(0)];
+        dispatchTable[option.charAt(0)] = bucket == null ? new IToolArgumentParser[] { tap }
+            : append(bucket, tap);
+      }
+    }
+    this.undispatchedParsers = undispatched.toArray(NO_PARSERS);
   }
 
-  @Override
-  public List<ICLanguageSettingEntry> processArgs(IPath cwd, String args) {
-    this.entries = new ArrayList<>();
-    this.cwd = Objects.requireNonNull(cwd, "cwd");
+  /**
+   * Adds a parser to a bucket of the dispatch table, keeping the parsers with
+   * the longest option names first. Parsers with equal option names keep their
+   * order.
+   */
+  private static IToolArgumentParser[] append(IToolArgumentParser[] bucket, IToolArgumentParser tap) {
+    final List<IToolArgumentParser> parsers = new ArrayList<>(Arrays.asList(bucket));
+    parsers.add(tap);
+    parsers.sort((p1, p2) -> p2.getOptionName().length() - p1.getOptionName().length());
+    return parsers.toArray(NO_PARSERS);
+  }
+
+  /**
+   * Gets the argument parsers that may handle the argument at the specified
+   * index.
+   *
+   * @return the parsers whose option name is a prefix of the argument, the
+   *         parsers with the longest option name first
+   */
+  private IToolArgumentParser[] getCandidates(CharSequence args, int start) {
+    final char c = args.charAt(start);
+    final IToolArgumentParser[] bucket = c < dispatchTable.length ? dispatchTable[c] : null;
+    return bucket == null ? NO_PARSERS : bucket;
+  }
+
+  /**
+   * Gets whether the specified sequence contains the specified option name at
+   * the specified index.
+   */
+  private static boolean startsWith(CharSequence args, int start, String option) {
+    if (option == null)
+      return true;
+    final int len = option.length();
+    if (args.length() - start < len)
+      return false;
+    for (int i = 0; i < len; i++) {
+      if (args.charAt(start + i) != option.charAt(i))
+        return false;
+    }
+    return true;
+  }
 
-    ParserHandler ph = new ParserHandler();
+  @Override
+  public List<ICLanguageSettingEntry> processArgs(IPath cwd, String args, ResponseFileCache responseFiles) {
+    ParserHandler ph = new ParserHandler(Objects.requireNonNull(cwd, "cwd"), responseFiles);
     ph.parseArguments(responseFileArgumentParser, args);
-    return entries;
+    return ph.entries;
+  }
+
+  @Override
+  public List<ICLanguageSettingEntry> processArgs(IPath cwd, List<String> args, ResponseFileCache responseFiles) {
+    ParserHandler ph = new ParserHandler(Objects.requireNonNull(cwd, "cwd"), responseFiles);
+    ph.parseArguments(responseFileArgumentParser, Objects.requireNonNull(args, "args"));
+    return ph.entries;
   }
 
   @Override
@@ -107,67 +177,201 @@ class ToolCommandlineParser implements IToolCommandlineParser {
     return st > 0 ? string.substring(st, len) : string;
   }
 
+  /**
+   * Gets the index of the first non-whitespace character at or after the
+   * specified index.
+   *
+   * @param string
+   *          the string to skip whitespace in
+   * @param start
+   *          the index to start at
+   * @return the index of the first non-whitespace character or the length of
+   *         the string, if it has no more non-whitespace characters
+   */
+  private static int skipLeadingWS(CharSequence string, int start) {
+    final int len = string.length();
+    while (start < len && string.charAt(start) <= ' ') {
+      start++;
+    }
+    return start;
+  }
+
   /**
    * @param buildOutput
    *          the command line arguments to process
+   * @param start
+   *          the index of the argument to skip
    * @return the number of characters consumed
    */
-  private static int skipArgument(String buildOutput) {
-    int consumed;
-
+  private static int skipArgument(CharSequence buildOutput, int start) {
     // (blindly) advance to next whitespace
-    if ((consumed = buildOutput.indexOf(' ')) != -1) {
-      return consumed;
-    } else {
-      // non-option arg, may be a file name
-      // for now, we just clear/skip the output
-      return buildOutput.length();
+    final int len = buildOutput.length();
+    int end = start;
+    while (end < len && buildOutput.charAt(end) != ' ') {
+      end++;
     }
+    // if no whitespace follows: non-option arg, may be a file name
+    // for now, we just clear/skip the output
+    return end - start;
   }
 
   /**
-   * Handles parsing of command-line arguments.
+   * Handles parsing of command-line arguments. Holds the state of a single
+   * invocation of {@link ToolCommandlineParser#processArgs}, so that the
+   * enclosing parser may be used by several threads concurrently.
    *
    * @author Martin Weber
    */
   private class ParserHandler implements IParserHandler {
 
+    /** gathers all entries */
+    private final List<ICLanguageSettingEntry> entries = new ArrayList<>();
+
+    private final IPath cwd;
+    /** the cache for response files or {@code null} */
+    private final ResponseFileCache responseFiles;
+    /** the response files being parsed, to stop at a file that references itself */
+    private final Set<java.nio.file.Path> openResponseFiles = new HashSet<>(4);
+    /** the number of response file references skipped, since they referenced a file being parsed */
+    private int skippedResponseFiles;
+
+    /**
+     * @param cwd
+     *          the current working directory of the compiler at its invocation
+     * @param responseFiles
+     *          the cache for response files or {@code null}
+     */
+    private ParserHandler(IPath cwd, ResponseFileCache responseFiles) {
+      this.cwd = cwd;
+      this.responseFiles = responseFiles;
+    }
+
     /**
      * @param responseFileArgumentParser
      * @param args
      *          the command line arguments to process
      */
     private void parseArguments(IResponseFileArgumentParser responseFileArgumentParser, String args) {
-      // eat buildOutput string argument by argument..
-      while (!(args = ToolCommandlineParser.trimLeadingWS(args)).isEmpty()) {
-        boolean argParsed = false;
-        int consumed;
+      // eat buildOutput string argument by argument, advancing an index rather than copying the remainder..
+      final int len = args.length();
+      int pos = 0;
+      while ((pos = skipLeadingWS(args, pos)) < len) {
         // parse with first parser that can handle the first argument on the
         // command-line
-        for (IToolArgumentParser tap : argumentParsers) {
-          consumed = tap.processArgument(entries, cwd, args);
-          if (consumed > 0) {
-            args = args.substring(consumed);
-            argParsed = true;
-          }
-        }
+        int consumed = processArgument(args, pos);
 
         // try response file
-        if (responseFileArgumentParser != null) {
-          consumed = responseFileArgumentParser.process(this, args);
-          if (consumed > 0) {
-            args = args.substring(consumed);
-            argParsed = true;
-          }
+        if (consumed <= 0 && responseFileArgumentParser != null
+            && startsWith(args, pos, responseFileArgumentParser.getOptionName())) {
+          consumed = responseFileArgumentParser.process(this, args, pos);
         }
-        if (!argParsed && !args.isEmpty()) {
+        if (consumed <= 0) {
           // tried all parsers, argument is still not parsed,
           // skip argument
-          consumed = skipArgument(args);
-          if (consumed > 0) {
-            args = args.substring(consumed);
+          consumed = skipArgument(args, pos);
+        }
+        pos += consumed;
+      }
+    }
+
+    /**
+     * Parses the argument at the specified index with the first parser that can
+     * handle it. Only the parsers whose option name is a prefix of the argument
+     * are tried, so arguments of no interest are skipped without running any
+     * regular expression.
+     *
+     * @param args
+     *          the command line arguments to process
+     * @param start
+     *          the index of the argument in {@code args}
+     * @return the number of characters consumed
+     */
+    private int processArgument(CharSequence args, int start) {
+      int consumed;
+      for (IToolArgumentParser tap : getCandidates(args, start)) {
+        if (startsWith(args, start, tap.getOptionName())
+            && (consumed = tap.processArgument(entries, cwd, args, start)) > 0) {
+          return consumed;
+        }
+      }
+      for (IToolArgumentParser tap : undispatchedParsers) {
+        if ((consumed = tap.processArgument(entries, cwd, args, start)) > 0) {
+          return consumed;
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * @param responseFileArgumentParser
+     * @param args
+     *          the command line arguments to process, one element per argument
+     */
+    private void parseArguments(IResponseFileArgumentParser responseFileArgumentParser, List<String> args) {
+      for (int i = 0; i < args.size();) {
+        int consumed = 0;
+        // parse with first parser that can handle the argument
+        final String arg = args.get(i);
+        if (!arg.isEmpty()) {
+          for (IToolArgumentParser tap : getCandidates(arg, 0)) {
+            if (startsWith(arg, 0, tap.getOptionName())
+                && (consumed = tap.processArgument(entries, cwd, args, i)) > 0) {
+              break;
+            }
+          }
+        }
+        for (int j = 0; consumed <= 0 && j < undispatchedParsers.length; j++) {
+          consumed = undispatchedParsers[j].processArgument(entries, cwd, args, i);
+        }
+        // try response file
+        if (consumed <= 0 && responseFileArgumentParser != null
+            && startsWith(arg, 0, responseFileArgumentParser.getOptionName())) {
+          consumed = responseFileArgumentParser.process(this, args, i);
+        }
+        // tried all parsers, skip argument if still not parsed
+        i += Math.max(consumed, 1);
+      }
+    }
+
+    /**
+     * Parses the arguments in the given response file. The entries parsed from
+     * a response file are cached, if a cache was specified. Response files
+     * referenced by the file are parsed, too, unless they are already being
+     * parsed.
+     *
+     * @param file
+     *          the absolute name of the response file
+     */
+    @Override
+    public void parseResponseFile(java.nio.file.Path file) throws IOException {
+      file = file.toAbsolutePath().normalize();
+      if (!openResponseFiles.add(file)) {
+        // references itself, directly or through other response files
+        skippedResponseFiles++;
+        return;
+      }
+      try {
+        if (responseFiles == null) {
+          parseArguments(responseFileArgumentParser, ResponseFileCache.readContent(file));
+          return;
+        }
+        final ResponseFileCache.FileKey key = responseFiles.getFileKey(file);
+        final List<ICLanguageSettingEntry> parsed = responseFiles.getEntries(key, ToolCommandlineParser.this, cwd);
+        if (parsed != null) {
+          entries.addAll(parsed);
+        } else {
+          // nested response files are cached on their own while parsing
+          final int from = entries.size();
+          final int skipped = skippedResponseFiles;
+          parseArguments(responseFileArgumentParser, responseFiles.getContent(key));
+          if (skipped == skippedResponseFiles) {
+            // entries are complete, no reference was skipped
+            responseFiles.putEntries(key, ToolCommandlineParser.this, cwd,
+                new ArrayList<>(entries.subList(from, entries.size())));
           }
         }
+      } finally {
+        openResponseFiles.remove(file);
       }
     }
 
@@ -180,7 +384,7 @@ class ToolCommandlineParser implements IToolCommandlineParser {
      */
     @Override
     public void parseArguments(String args) {
-      parseArguments(null, args);
+      parseArguments(responseFileArgumentParser, args);
     }
 
     /*
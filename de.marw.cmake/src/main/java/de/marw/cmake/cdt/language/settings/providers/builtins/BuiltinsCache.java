@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Martin Weber.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Martin Weber - Initial implementation
+ *******************************************************************************/
+
+package de.marw.cmake.cdt.language.settings.providers.builtins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.core.settings.model.ICSettingEntry;
+import org.eclipse.cdt.core.settings.model.util.CDataUtil;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import de.marw.cmake.CMakePlugin;
+import de.marw.cmake.DataStreamUtil;
+
+/**
+ * Remembers the settings entries a {@link CompilerBuiltinsDetector} found, so that the compiler need not be started
+ * again while neither the compiler binary nor the detection command changed. The cache is shared by all configurations
+ * and projects and is persisted in the plugin's state location between sessions.<br>
+ * Methods may be invoked by multiple threads concurrently.
+ *
+ * @author Martin Weber
+ */
+public class BuiltinsCache {
+  private static final ILog log = CMakePlugin.getDefault().getLog();
+
+  private static final String CACHE_FILE = "compiler_builtins.bin";
+  /** magic number of the cache file */
+  private static final int CACHE_MAGIC = 0x43434242;
+  private static final int CACHE_VERSION = 1;
+  /** the number of entries above which the cache is cleared */
+  private static final int MAX_ENTRIES = 256;
+
+  private static final BuiltinsCache INSTANCE = new BuiltinsCache();
+
+  /**
+   * the detected entries by detection key, see {@link CompilerBuiltinsDetector}
+   */
+  private final Map<String, List<ICLanguageSettingEntry>> entries = new ConcurrentHashMap<>();
+  /** the cache file or {@code null} to use the file in the plugin's state location, guarded by {@code this} */
+  private File cacheFile;
+  /** whether the cache file was read, guarded by {@code this} */
+  private boolean loaded;
+  /** whether the cache was modified since it was read or written */
+  private volatile boolean dirty;
+
+  private BuiltinsCache() {
+  }
+
+  /**
+   * Gets the entries detected last time for the specified key.
+   *
+   * @return the unmodifiable list of entries, which is empty if the detection failed silently, or {@code null} if
+   *         nothing was detected for the key
+   */
+  /* package */ static List<ICLanguageSettingEntry> get(String key) {
+    INSTANCE.load();
+    return INSTANCE.entries.get(key);
+  }
+
+  /**
+   * Remembers the entries detected for the specified key.
+   */
+  /* package */ static void put(String key, List<ICLanguageSettingEntry> detected) {
+    INSTANCE.load();
+    if (INSTANCE.entries.size() >= MAX_ENTRIES) {
+      INSTANCE.entries.clear();
+    }
+    INSTANCE.entries.put(key, Collections.unmodifiableList(new ArrayList<>(detected)));
+    INSTANCE.dirty = true;
+  }
+
+  /**
+   * Writes the cache to the plugin's state location, if it was modified.
+   */
+  public static void save() {
+    if (INSTANCE.dirty) {
+      INSTANCE.store();
+    }
+  }
+
+  /**
+   * Makes the cache use the specified file and forgets all remembered entries. Intended for tests, which must not
+   * touch the file in the plugin's state location.
+   *
+   * @param file
+   *          the cache file or {@code null} to use the file in the plugin's state location
+   */
+  /* package */ static void setCacheFile(File file) {
+    synchronized (INSTANCE) {
+      INSTANCE.cacheFile = file;
+      INSTANCE.entries.clear();
+      INSTANCE.loaded = false;
+      INSTANCE.dirty = false;
+    }
+  }
+
+  private File getCacheFile() {
+    if (cacheFile != null)
+      return cacheFile;
+    return CMakePlugin.getDefault().getStateLocation().append(CACHE_FILE).toFile();
+  }
+
+  /**
+   * Reads the cache file written by the last session, unless already read.
+   */
+  private synchronized void load() {
+    if (loaded)
+      return;
+    loaded = true;
+    final File cacheFile = getCacheFile();
+    final Map<String, List<ICLanguageSettingEntry>> read = new HashMap<>();
+    try {
+      DataStreamUtil.readFile(cacheFile, CACHE_MAGIC, CACHE_VERSION, in -> {
+        for (int count = in.readInt(); count > 0; count--) {
+          final String key = DataStreamUtil.readString(in);
+          final List<ICLanguageSettingEntry> list = new ArrayList<>();
+          for (int n = in.readInt(); n > 0; n--) {
+            final int kind = in.readInt();
+            final int flags = in.readInt();
+            final String name = DataStreamUtil.readString(in);
+            final String value = DataStreamUtil.readNullableString(in);
+            list.add((ICLanguageSettingEntry) CDataUtil.createEntry(kind, name, value, null, flags));
+          }
+          read.put(key, Collections.unmodifiableList(list));
+        }
+      });
+    } catch (IOException | RuntimeException ex) {
+      log.log(new Status(IStatus.WARNING, CMakePlugin.PLUGIN_ID, "Ignoring compiler built-ins cache " + cacheFile, ex));
+      return;
+    }
+    for (Map.Entry<String, List<ICLanguageSettingEntry>> entry : read.entrySet()) {
+      entries.putIfAbsent(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Writes the cache file.
+   */
+  private synchronized void store() {
+    dirty = false;
+    final File cacheFile = getCacheFile();
+    final Map<String, List<ICLanguageSettingEntry>> all = new HashMap<>(entries);
+    try {
+      DataStreamUtil.writeFile(cacheFile, CACHE_MAGIC, CACHE_VERSION, out -> {
+        out.writeInt(all.size());
+        for (Map.Entry<String, List<ICLanguageSettingEntry>> entry : all.entrySet()) {
+          DataStreamUtil.writeString(out, entry.getKey());
+          out.writeInt(entry.getValue().size());
+          for (ICLanguageSettingEntry lse : entry.getValue()) {
+            out.writeInt(lse.getKind());
+            out.writeInt(lse.getFlags());
+            DataStreamUtil.writeString(out, lse.getName());
+            DataStreamUtil.writeNullableString(out, lse.getKind() == ICSettingEntry.MACRO ? lse.getValue() : null);
+          }
+        }
+      });
+    } catch (IOException ex) {
+      log.log(new Status(IStatus.WARNING, CMakePlugin.PLUGIN_ID, "Failed to write compiler built-ins cache " + cacheFile,
+          ex));
+    }
+  }
+}
@@ -13,6 +13,8 @@ package de.marw.cmake.cdt.language.settings.providers.builtins;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -34,6 +36,8 @@ import org.eclipse.cdt.core.model.LanguageManager;
 import org.eclipse.cdt.core.resources.IConsole;
 import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
 import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.managedbuilder.core.IConfiguration;
+import org.eclipse.cdt.managedbuilder.core.IOptionalBuildProperties;
 import org.eclipse.cdt.managedbuilder.core.ManagedBuildManager;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
@@ -57,6 +61,30 @@ public class CompilerBuiltinsDetector {
   private static final String CONSOLE_ID = CMakePlugin.PLUGIN_ID + ".detectorConsole";
   /** error marker ID */
   private static final String MARKER_ID = CMakePlugin.PLUGIN_ID + ".CompilerBuiltinsDetectorMarker";
+  /**
+   * the optional build properties of a configuration that tell whether and in which container image CDT runs the
+   * build, as defined by {@code org.eclipse.cdt.docker.launcher.ContainerCommandLauncher}
+   */
+  private static final String CONTAINER_BUILD_ENABLED =
+      "org.eclipse.cdt.docker.launcher.containerbuild.property.enablement";
+  private static final String CONTAINER_CONNECTION =
+      "org.eclipse.cdt.docker.launcher.containerbuild.property.connection";
+  private static final String CONTAINER_IMAGE = "org.eclipse.cdt.docker.launcher.containerbuild.property.image";
+  /**
+   * the environment variables that affect the built-in include paths or macros of a compiler and thus are part of the
+   * key in the {@link BuiltinsCache}
+   */
+  private static final Set<String> RELEVANT_ENV_VARS = new HashSet<>(Arrays.asList("PATH", "CPATH", "C_INCLUDE_PATH",
+      "CPLUS_INCLUDE_PATH", "OBJC_INCLUDE_PATH", "GCC_EXEC_PREFIX", "COMPILER_PATH", "NVCC_PREPEND_FLAGS",
+      "NVCC_APPEND_FLAGS"));
+  /** options of GNU compatible compilers with a value that affect the built-ins */
+  private static final String[] GCC_SIGNATURE_FLAG_PREFIXES = { "-std=", "--std=", "-march=", "-mcpu=", "--target=",
+      "-target=", "-stdlib=", "-fopenmp" };
+  /** options of GNU compatible compilers without a value that affect the built-ins */
+  private static final Set<String> GCC_SIGNATURE_FLAGS = new HashSet<>(Arrays.asList("-m32", "-m64", "-mx32", "-ansi",
+      "-target", "--target", "-fno-exceptions", "-fno-rtti"));
+  /** serializes marker creation of detectors running concurrently */
+  private static final Object markerLock = new Object();
 
   private ICConfigurationDescription cfgDescription;
 
@@ -69,6 +97,9 @@ public class CompilerBuiltinsDetector {
 
   private BuiltinDetectionType builtinDetectionType;
 
+  /** the compiler flags that affect the built-ins, passed to the compiler on detection */
+  private List<String> flags;
+
   /**
    * @param cfgDescription
    *          configuration description.
@@ -81,10 +112,77 @@ public class CompilerBuiltinsDetector {
    */
   public CompilerBuiltinsDetector(ICConfigurationDescription cfgDescription, String languageId,
       BuiltinDetectionType builtinDetectionType, String command) {
+    this(cfgDescription, languageId, builtinDetectionType, command, Collections.emptyList());
+  }
+
+  /**
+   * @param cfgDescription
+   *          configuration description.
+   * @param languageId
+   *          language id
+   * @param builtinDetectionType
+   *          the compiler classification
+   * @param command
+   *          the compiler command (arg 0)
+   * @param flags
+   *          the compiler flags that affect the built-ins, see {@link #getSignatureFlags}
+   */
+  public CompilerBuiltinsDetector(ICConfigurationDescription cfgDescription, String languageId,
+      BuiltinDetectionType builtinDetectionType, String command, List<String> flags) {
     this.languageId = Objects.requireNonNull(languageId, "languageId");
     this.command = Objects.requireNonNull(command, "command");
     this.builtinDetectionType = Objects.requireNonNull(builtinDetectionType, "builtinDetectionType");
     this.cfgDescription = Objects.requireNonNull(cfgDescription);
+    this.flags = flags.isEmpty() ? Collections.emptyList()
+        : Collections.unmodifiableList(new ArrayList<>(flags));
+  }
+
+  /**
+   * Gets the compiler flags from a compiler command-line that affect the built-in macros or include paths, for example
+   * {@code -std=c++11} or {@code -m32}. Compiler invocations with the same command and flags have the same built-ins.
+   *
+   * @param builtinDetectionType
+   *          the compiler classification
+   * @param args
+   *          the arguments of the compiler command-line
+   * @return the flags in order of appearance, empty if the compiler classification does not support flags
+   */
+  public static List<String> getSignatureFlags(BuiltinDetectionType builtinDetectionType, Iterable<String> args) {
+    List<String> flags = null;
+    boolean takeNext = false;
+    for (String arg : args) {
+      if (arg.length() > 1 && arg.charAt(0) == '"' && arg.charAt(arg.length() - 1) == '"') {
+        arg = arg.substring(1, arg.length() - 1);
+      }
+      if (takeNext || isSignatureFlag(builtinDetectionType, arg)) {
+        if (flags == null)
+          flags = new ArrayList<>(2);
+        flags.add(arg);
+        // clang's -target takes its value as a separate argument
+        takeNext = !takeNext && (arg.equals("-target") || arg.equals("--target"));
+      }
+    }
+    return flags == null ? Collections.emptyList() : flags;
+  }
+
+  /**
+   * Gets whether the specified compiler argument affects the built-in macros or include paths.
+   */
+  private static boolean isSignatureFlag(BuiltinDetectionType builtinDetectionType, String arg) {
+    switch (builtinDetectionType) {
+    case GCC:
+    case GCC_MAYBE:
+      for (String prefix : GCC_SIGNATURE_FLAG_PREFIXES) {
+        if (arg.startsWith(prefix))
+          return true;
+      }
+      return GCC_SIGNATURE_FLAGS.contains(arg);
+    case NVCC:
+      // host compiler flags would need -Xcompiler
+      return arg.startsWith("-std=") || arg.startsWith("--std=") || arg.equals("-m32") || arg.equals("-m64");
+    default:
+      return false;
+    }
   }
 
   /** Gets the language ID of this detector.
@@ -93,8 +191,26 @@ public class CompilerBuiltinsDetector {
     return languageId;
   }
 
+  /** Gets the compiler command (arg 0) of this detector.
+   */
+  public String getCommand() {
+    return command;
+  }
+
+  /** Gets the compiler classification of this detector.
+   */
+  public BuiltinDetectionType getBuiltinDetectionType() {
+    return builtinDetectionType;
+  }
+
+  /** Gets the compiler flags that affect the built-ins of this detector.
+   */
+  public List<String> getFlags() {
+    return flags;
+  }
+
   /**
-   * Run built-in detection command.
+   * Run built-in detection command. Different detectors may run concurrently.
    *
    * @param monitor
    *          progress monitor or {@code null}
@@ -122,15 +238,23 @@ public class CompilerBuiltinsDetector {
 
     final List<String> argList = getCompilerArguments(languageId, builtinDetectionType);
 
+    // get the launcher that runs in docker container, if any
+    final IConfiguration config = ManagedBuildManager.getConfigurationForDescription(cfgDescription);
+    ICommandLauncher launcher = config.getEditableBuilder().getCommandLauncher();
+    final String cacheKey = getCacheKey(argList, launcher, config);
+    if (cacheKey != null && !withConsole) {
+      // the user wants to see the compiler output if the console is enabled
+      final List<ICLanguageSettingEntry> cached = BuiltinsCache.get(cacheKey);
+      if (cached != null)
+        return cached;
+    }
+
     IConsole console= null;
     if (withConsole) {
       console = startOutputConsole();
     }
 
     IProject project = cfgDescription.getProjectDescription().getProject();
-    // get the launcher that runs in docker container, if any
-    ICommandLauncher launcher = ManagedBuildManager.getConfigurationForDescription(cfgDescription).getEditableBuilder()
-        .getCommandLauncher();
     launcher.setProject(project);
     launcher.showCommand(console != null);
     final Process proc = launcher.execute(new Path(command), argList.toArray(new String[argList.size()]), getEnvp(),
@@ -154,6 +278,9 @@ public class CompilerBuiltinsDetector {
           // compiler had errors...
           String errMsg = String.format("%1$s exited with status %2$d.", command, exitValue);
           createMarker(errMsg);
+        } else if (cacheKey != null) {
+          // remember silent failures, too: these would fail again on each startup
+          BuiltinsCache.put(cacheKey, exitValue == 0 ? entries : Collections.emptyList());
         }
       }
     } else {
@@ -163,6 +290,128 @@ public class CompilerBuiltinsDetector {
     return entries;
   }
 
+  /**
+   * Gets the key to look up the entries detected last time in the {@link BuiltinsCache}. The key changes if the
+   * compiler binary, the detection command or the environment variables that affect the compiler change.<br>
+   * If the compiler runs in a container, the key is made of the container image and the command instead of the
+   * compiler binary: A binary of the same name on the local file system tells nothing about the compiler in the image.
+   *
+   * @param argList
+   *          the arguments to pass to the compiler
+   * @param launcher
+   *          the launcher to run the compiler
+   * @param config
+   *          the configuration that tells whether the compiler runs in a container
+   * @return the key or {@code null} if the compiler binary cannot be found on the local file system or if it runs in a
+   *         container without a known image
+   */
+  private String getCacheKey(List<String> argList, ICommandLauncher launcher, IConfiguration config) {
+    final String[] env = getEnvp();
+    final String compiler;
+    final IOptionalBuildProperties props = config.getOptionalBuildProperties();
+    if (props != null && Boolean.parseBoolean(props.getProperty(CONTAINER_BUILD_ENABLED))) {
+      final String image = props.getProperty(CONTAINER_IMAGE);
+      if (image == null || image.isEmpty())
+        return null;
+      compiler = "container" + '\0' + props.getProperty(CONTAINER_CONNECTION) + '\0' + image + '\0' + command;
+    } else {
+      compiler = getBinaryKey(command, env);
+      if (compiler == null)
+        return null;
+    }
+    return languageId + '\0' + builtinDetectionType + '\0' + launcher.getClass().getName() + '\0'
+        + getCacheKey(compiler, argList, env);
+  }
+
+  /**
+   * Gets the part of the key in the {@link BuiltinsCache} that does not depend on how the compiler is launched.
+   *
+   * @param compiler
+   *          identifies the compiler, see {@link #getBinaryKey}
+   * @param argList
+   *          the arguments to pass to the compiler
+   * @param env
+   *          the environment variables in format "var=value"
+   */
+  /* package */ static String getCacheKey(String compiler, List<String> argList, String[] env) {
+    final StringBuilder key = new StringBuilder(compiler);
+    for (String arg : argList) {
+      key.append('\0').append(arg);
+    }
+    final List<String> vars = new ArrayList<>();
+    for (String var : env) {
+      final int eq = var.indexOf('=');
+      if (eq > 0 && RELEVANT_ENV_VARS.contains(var.substring(0, eq)))
+        vars.add(var);
+    }
+    // environment order is not significant
+    Collections.sort(vars);
+    for (String var : vars) {
+      key.append('\0').append(var);
+    }
+    return key.toString();
+  }
+
+  /**
+   * Identifies the compiler binary on the local file system by its real path, modification time and size.
+   *
+   * @param command
+   *          the compiler command, an absolute path or a name to look up in the {@code PATH}
+   * @param env
+   *          the environment variables in format "var=value"
+   * @return the key or {@code null} if the binary cannot be found
+   */
+  /* package */ static String getBinaryKey(String command, String[] env) {
+    final File binary = findBinary(command, env);
+    if (binary == null)
+      return null;
+    final java.nio.file.Path realPath;
+    final BasicFileAttributes attrs;
+    try {
+      realPath = binary.toPath().toRealPath();
+      attrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+    } catch (IOException ex) {
+      return null;
+    }
+    return command + '\0' + realPath + '\0' + attrs.lastModifiedTime().toMillis() + '\0' + attrs.size();
+  }
+
+  /**
+   * Finds the compiler binary on the local file system.
+   *
+   * @param command
+   *          the compiler command, an absolute path or a name to look up in the {@code PATH}
+   * @param env
+   *          the environment variables in format "var=value"
+   * @return the file or {@code null} if not found
+   */
+  private static File findBinary(String command, String[] env) {
+    final File file = new File(command);
+    if (file.isAbsolute()) {
+      return file.isFile() ? file : null;
+    }
+    if (command.indexOf('/') >= 0 || command.indexOf(File.separatorChar) >= 0) {
+      // relative to the unknown working directory of the launcher
+      return null;
+    }
+    for (String var : env) {
+      if (var.startsWith("PATH=")) {
+        for (String dir : var.substring(5).split(File.pathSeparator)) {
+          if (dir.isEmpty())
+            continue;
+          File candidate = new File(dir, command);
+          if (candidate.isFile())
+            return candidate;
+          candidate = new File(dir, command + ".exe");
+          if (candidate.isFile())
+            return candidate;
+        }
+        break;
+      }
+    }
+    return null;
+  }
+
   /**
    * @param entries
    *          where to place the {@code ICLanguageSettingEntry}s found during processing.
@@ -188,6 +437,7 @@ public class CompilerBuiltinsDetector {
   private List<String> getCompilerArguments(String languageId, BuiltinDetectionType builtinDetectionType) {
     List<String> args = new ArrayList<>();
     args.addAll(getDetectionTypeArguments(builtinDetectionType));
+    args.addAll(flags);
     args.add(getInputFile(languageId));
     return args;
   }
@@ -324,9 +574,11 @@ public class CompilerBuiltinsDetector {
   }
 
   private void createMarker(String message) throws CoreException {
-    IMarker marker = cfgDescription.getProjectDescription().getProject().createMarker(MARKER_ID);
-    marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_INFO);
-    marker.setAttribute(IMarker.MESSAGE, message);
+    synchronized (markerLock) {
+      IMarker marker = cfgDescription.getProjectDescription().getProject().createMarker(MARKER_ID);
+      marker.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_INFO);
+      marker.setAttribute(IMarker.MESSAGE, message);
+    }
   }
 
   /**
@@ -374,6 +626,7 @@ public class CompilerBuiltinsDetector {
     result = prime * result + builtinDetectionType.hashCode();
     result = prime * result + cfgDescription.getId().hashCode();
     result = prime * result + command.hashCode();
+    result = prime * result + flags.hashCode();
     result = prime * result + languageId.hashCode();
     return result;
   }
@@ -407,6 +660,9 @@ public class CompilerBuiltinsDetector {
     if (!command.equals(other.command)) {
       return false;
     }
+    if (!flags.equals(other.flags)) {
+      return false;
+    }
     if (!languageId.equals(other.languageId)) {
       return false;
     }
@@ -15,27 +15,17 @@ import java.util.List;
 
 import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
 import org.eclipse.cdt.core.settings.model.ICSettingEntry;
+import org.eclipse.cdt.core.settings.model.util.CDataUtil;
 
 /**
- * A {link BuiltinsOutputProcessor} for the GCC/G++ compiler.
+ * A {link BuiltinsOutputProcessor} for the GCC/G++ compiler. Scans each line once, without regular expressions, since
+ * a compiler prints several hundred macros.
  *
  * @author Martin Weber
  *
  */
 class GccOutputProcessor extends BuiltinsOutputProcessor {
-  private static final CompilerOutputLineProcessor[] macros = {
-      new CompilerOutputLineProcessor("#define\\s+(\\S+)\\s*(.*)", 1, 2, false, 0),
-      new CompilerOutputLineProcessor("#define\\s+(\\S+)\\(.*?\\)\\s*(.*)", 1, 2, false, 0),
-      };
-
-  private static final CompilerOutputLineProcessor[] localIncludes = {
-      new CompilerOutputLineProcessor(" *(\\S.*)", 1, -1, true, ICSettingEntry.LOCAL) };
-
-  private static final CompilerOutputLineProcessor[] systemIncludes = {
-      new CompilerOutputLineProcessor(" *(\\S.*)", 1, -1, true, 0) };
-
-  private static final CompilerOutputLineProcessor[] framewotks = {
-      new CompilerOutputLineProcessor(" *(\\S.*)", 1, -1, true, ICSettingEntry.FRAMEWORKS_MAC) };
+  private static final String DEFINE = "#define";
 
   private State state = State.NONE;
 
@@ -68,28 +58,80 @@ class GccOutputProcessor extends BuiltinsOutputProcessor {
     }
 
     if (state == State.EXPECTING_LOCAL_INCLUDE) {
-      for (CompilerOutputLineProcessor processor : localIncludes) {
-        if (addEntry(processor.process(line)))
-          return; // line matched
-      }
+      addEntry(parseIncludePath(line, ICSettingEntry.LOCAL));
     } else if (state == State.EXPECTING_SYSTEM_INCLUDE) {
-      for (CompilerOutputLineProcessor processor : systemIncludes) {
-        if (addEntry(processor.process(line)))
-          return; // line matched
-      }
+      addEntry(parseIncludePath(line, 0));
     } else if (state == State.EXPECTING_FRAMEWORK) {
-      for (CompilerOutputLineProcessor processor : framewotks) {
-        if (addEntry(processor.process(line)))
-          return; // line matched
-      }
+      addEntry(parseIncludePath(line, ICSettingEntry.FRAMEWORKS_MAC));
     } else {
       // macros
-      for (CompilerOutputLineProcessor processor : macros) {
-        if (addEntry(processor.process(line)))
-          return; // line matched
-      }
-//      System.err.println("NO MATCH ON LINE: '" + line + "'");
+      addEntry(parseMacro(line));
+    }
+  }
+
+  /**
+   * Parses a line of an include search list: leading spaces, followed by the path.
+   *
+   * @param extraFlag
+   *          extra-flags to add to the created language settings entry, e.g. {@link ICSettingEntry#LOCAL} or
+   *          {@link ICSettingEntry#FRAMEWORKS_MAC}.
+   * @return the include path entry or {@code null} if the line does not denote an include path
+   */
+  private static ICLanguageSettingEntry parseIncludePath(String line, int extraFlag) {
+    final int len = line.length();
+    int start = 0;
+    while (start < len && line.charAt(start) == ' ') {
+      start++;
+    }
+    if (start == len || isWhitespace(line.charAt(start)))
+      return null;
+    return createEntry(ICSettingEntry.INCLUDE_PATH, line.substring(start), null, extraFlag);
+  }
+
+  /**
+   * Parses a macro definition line: {@code #define}, whitespace, the macro name up to the next whitespace, optional
+   * whitespace, then the value up to the end of the line.
+   *
+   * @return the macro entry or {@code null} if the line does not define a macro
+   */
+  private static ICLanguageSettingEntry parseMacro(String line) {
+    if (!line.startsWith(DEFINE))
+      return null;
+    final int nameStart = skipWhitespace(line, DEFINE.length());
+    if (nameStart == DEFINE.length())
+      return null; // no whitespace after #define
+    final int len = line.length();
+    int nameEnd = nameStart;
+    while (nameEnd < len && !isWhitespace(line.charAt(nameEnd))) {
+      nameEnd++;
+    }
+    if (nameEnd == nameStart)
+      return null; // no name
+    final String value = line.substring(skipWhitespace(line, nameEnd));
+    return createEntry(ICSettingEntry.MACRO, line.substring(nameStart, nameEnd), value, 0);
+  }
+
+  /**
+   * Gets the index of the first non-whitespace character at or after the specified index.
+   */
+  private static int skipWhitespace(String line, int start) {
+    final int len = line.length();
+    while (start < len && isWhitespace(line.charAt(start))) {
+      start++;
     }
+    return start;
+  }
+
+  /**
+   * Gets whether the specified character is a whitespace character as matched by regular expression {@code \s}.
+   */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  private static ICLanguageSettingEntry createEntry(int kind, String name, String value, int extraFlag) {
+    return (ICLanguageSettingEntry) CDataUtil.createEntry(kind, name, value, null,
+        ICSettingEntry.BUILTIN | ICSettingEntry.READONLY | extraFlag);
   }
 
   private enum State {
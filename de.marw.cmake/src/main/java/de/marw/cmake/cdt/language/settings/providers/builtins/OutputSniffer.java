@@ -13,17 +13,33 @@ package de.marw.cmake.cdt.language.settings.providers.builtins;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /**
- * An OutputStream that passes each line written to it to a BuiltinsOutputProcessor.
+ * An OutputStream that passes each line written to it to a BuiltinsOutputProcessor.<br>
+ * The bytes are decoded as UTF-8, the encoding the compilers are told to use by the detector. A multi-byte sequence
+ * may be split across calls to {@code write}.
  *
  * @author Martin Weber
  */
 class OutputSniffer extends OutputStream {
 
-  private static final String SEP = System.lineSeparator();
+  /** the bytes not yet decoded, in write mode */
+  private final ByteBuffer bytes = ByteBuffer.allocate(1024);
+  /** the chars decoded from {@link #bytes} */
+  private final CharBuffer chars = CharBuffer.allocate(1024);
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+  /** the decoded chars of the current, incomplete line */
   private final StringBuilder buffer;
+  /** the number of chars at the start of {@link #buffer} that are known to contain no line separator */
+  private int scanned;
   private final BuiltinsOutputProcessor processor;
   private final OutputStream os;
 
@@ -42,8 +58,8 @@ class OutputSniffer extends OutputStream {
     if (os != null)
       os.write(c);
     synchronized (this) {
-      buffer.append(new String(new byte[] { (byte) c }));
-      splitLines();
+      bytes.put((byte) c);
+      decode(false);
     }
   }
 
@@ -52,8 +68,13 @@ class OutputSniffer extends OutputStream {
     if (os != null)
       os.write(b, off, len);
     synchronized (this) {
-      buffer.append(new String(b, off, len));
-      splitLines();
+      while (len > 0) {
+        final int n = Math.min(len, bytes.remaining());
+        bytes.put(b, off, n);
+        off += n;
+        len -= n;
+        decode(false);
+      }
     }
   }
 
@@ -62,32 +83,77 @@ class OutputSniffer extends OutputStream {
     if (os != null)
       os.flush();
     synchronized (this) {
-      splitLines();
-      // process remaining bytes
-      String line = buffer.toString();
-      buffer.setLength(0);
-      processLine(line);
+      // process remaining chars
+      if (buffer.length() > 0) {
+        String line = buffer.toString();
+        buffer.setLength(0);
+        scanned = 0;
+        processLine(line);
+      }
     }
   }
 
   @Override
   public void close() throws IOException {
+    synchronized (this) {
+      // decode an incomplete multi-byte sequence at the end
+      decode(true);
+      decoder.flush(chars);
+      appendChars();
+      decoder.reset();
+      splitLines();
+    }
     if (os != null)
       os.close();
     flush();
   }
 
   /**
-   * Splits the buffer into separate lines and sends these to the parsers.
+   * Decodes the bytes written so far and sends the complete lines to the parsers. Bytes of an incomplete multi-byte
+   * sequence are kept for the next invocation.
    *
+   * @param endOfInput
+   *          whether no more bytes will be written
+   */
+  private void decode(boolean endOfInput) {
+    bytes.flip();
+    CoderResult result;
+    do {
+      result = decoder.decode(bytes, chars, endOfInput);
+      appendChars();
+    } while (result.isOverflow());
+    bytes.compact();
+    splitLines();
+  }
+
+  /**
+   * Moves the decoded chars to the line buffer.
+   */
+  private void appendChars() {
+    chars.flip();
+    buffer.append(chars);
+    chars.clear();
+  }
+
+  /**
+   * Splits the buffer into separate lines and sends these to the parsers. Scans each char once, starting where the last
+   * invocation stopped.
    */
   private void splitLines() {
-    int idx;
-    while ((idx = buffer.indexOf(SEP)) != -1) {
-      String line = buffer.substring(0, idx);
-      buffer.delete(0, idx + SEP.length());
-      processLine(line);
+    final int len = buffer.length();
+    int start = 0;
+    for (int i = scanned; i < len; i++) {
+      if (buffer.charAt(i) == '\n') {
+        int end = i;
+        if (end > start && buffer.charAt(end - 1) == '\r')
+          end--;
+        processLine(buffer.substring(start, end));
+        start = i + 1;
+      }
     }
+    if (start > 0)
+      buffer.delete(0, start);
+    scanned = buffer.length();
   }
 
   /**
@@ -96,4 +162,4 @@ class OutputSniffer extends OutputStream {
   private void processLine(String line) {
     processor.processLine(line);
   }
-}
\ No newline at end of file
+}
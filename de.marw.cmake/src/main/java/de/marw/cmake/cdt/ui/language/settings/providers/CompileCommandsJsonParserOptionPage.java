@@ -42,6 +42,7 @@ public class CompileCommandsJsonParserOptionPage extends AbstractLanguageSetting
 
   private Text pattern;
   private Button b_versionsEnabled;
+  private Button b_parallel;
 
   @Override
   public void performApply(IProgressMonitor monitor) throws CoreException {
@@ -66,6 +67,7 @@ public class CompileCommandsJsonParserOptionPage extends AbstractLanguageSetting
   public void performDefaults() {
     // normally should be handled by LanguageSettingsProviderTab
     b_versionsEnabled.setSelection(false);
+    b_parallel.setSelection(false);
   }
 
   @Override
@@ -141,6 +143,17 @@ public class CompileCommandsJsonParserOptionPage extends AbstractLanguageSetting
       }
     });
 
+    b_parallel = createCheckbox(composite, SWT.BEGINNING, 2, "&Process entries in parallel");
+    b_parallel.setToolTipText("Uses multiple threads to parse the compile_commands.json entries");
+    b_parallel.setEnabled(enabled);
+    b_parallel.setSelection(provider.isParallel());
+    b_parallel.addSelectionListener(new SelectionAdapter() {
+      @Override
+      public void widgetSelected(SelectionEvent event) {
+        provider.setParallel(((Button) event.widget).getSelection());
+      }
+    });
+
     setControl(composite);
   }
 
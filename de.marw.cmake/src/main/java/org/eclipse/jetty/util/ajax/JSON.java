@@ -18,11 +18,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jetty.util.IO;
@@ -1026,6 +1028,85 @@ public class JSON
         throw new IllegalStateException("unexpected end of array");
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Parses a JSON array element by element instead of materializing the
+     * whole array. Each element is parsed from the source only when it is
+     * requested from the returned iterator, so at most one element is held
+     * in memory at a time.
+     *
+     * @param source the source, positioned before the opening '['
+     * @return an iterator over the elements of the array or <code>null</code>
+     *         if the source does not start with an array. Its methods throw
+     *         an {@link IllegalStateException} if the array is malformed.
+     */
+    public Iterator<Object> parseArrayElements(Source source)
+    {
+        while (source.hasNext() && Character.isWhitespace(source.peek()))
+            source.next();
+        if (!source.hasNext() || source.peek() != '[')
+            return null;
+        source.next();
+        return new ArrayElements(source);
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Pulls the elements of an array from a {@link Source}, following the
+     * same separator rules as {@link JSON#parseArray(Source)}.
+     */
+    private class ArrayElements implements Iterator<Object>
+    {
+        private final Source _source;
+        private boolean _coma = true;
+        private boolean _end;
+
+        ArrayElements(Source source)
+        {
+            _source = source;
+        }
+
+        public boolean hasNext()
+        {
+            if (_end)
+                return false;
+            while (_source.hasNext())
+            {
+                char c = _source.peek();
+                switch (c)
+                {
+                    case ']':
+                        _source.next();
+                        _end = true;
+                        return false;
+
+                    case ',':
+                        if (_coma)
+                            throw new IllegalStateException();
+                        _coma = true;
+                        _source.next();
+                        break;
+
+                    default:
+                        if (Character.isWhitespace(c))
+                            _source.next();
+                        else
+                            return true;
+                }
+            }
+
+            throw new IllegalStateException("unexpected end of array");
+        }
+
+        public Object next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            _coma = false;
+            return contextForArray().parse(_source);
+        }
+    }
+
     /* ------------------------------------------------------------ */
     protected String parseString(Source source)
     {
@@ -1551,6 +1632,137 @@ public class JSON
 
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * A {@link Source} that decodes UTF-8 directly from a {@link ByteBuffer},
+     * e.g. a memory-mapped file. A leading byte order mark is skipped,
+     * malformed input is replaced by U+FFFD.
+     */
+    public static class Utf8ByteBufferSource implements Source
+    {
+        private static final char REPLACEMENT = '\ufffd';
+
+        private final ByteBuffer _buffer;
+        private int _next = -1;
+        /** pending second half of a supplementary character or 0 */
+        private char _low;
+        private char[] scratch;
+
+        public Utf8ByteBufferSource(ByteBuffer buffer)
+        {
+            _buffer = buffer;
+            int pos = buffer.position();
+            if (buffer.remaining() >= 3 && (buffer.get(pos) & 0xff) == 0xEF && (buffer.get(pos + 1) & 0xff) == 0xBB
+                    && (buffer.get(pos + 2) & 0xff) == 0xBF)
+                buffer.position(pos + 3);
+        }
+
+        public boolean hasNext()
+        {
+            getNext();
+            if (_next < 0)
+            {
+                scratch = null;
+                return false;
+            }
+            return true;
+        }
+
+        public char next()
+        {
+            getNext();
+            char c = (char)_next;
+            _next = -1;
+            return c;
+        }
+
+        public char peek()
+        {
+            getNext();
+            return (char)_next;
+        }
+
+        private void getNext()
+        {
+            if (_next < 0)
+            {
+                if (_low != 0)
+                {
+                    _next = _low;
+                    _low = 0;
+                }
+                else if (_buffer.hasRemaining())
+                {
+                    byte b = _buffer.get();
+                    _next = b >= 0?b:decode(b & 0xff);
+                }
+            }
+        }
+
+        /**
+         * Decodes a multi-byte sequence.
+         *
+         * @param b the lead byte, already consumed
+         * @return the decoded char or the high surrogate of a supplementary
+         *         character
+         */
+        private char decode(int b)
+        {
+            int cp;
+            int n;
+            int min;
+            if ((b & 0xE0) == 0xC0)
+            {
+                cp = b & 0x1F;
+                n = 1;
+                min = 0x80;
+            }
+            else if ((b & 0xF0) == 0xE0)
+            {
+                cp = b & 0x0F;
+                n = 2;
+                min = 0x800;
+            }
+            else if ((b & 0xF8) == 0xF0)
+            {
+                cp = b & 0x07;
+                n = 3;
+                min = 0x10000;
+            }
+            else
+                return REPLACEMENT;
+
+            for (; n > 0; n--)
+            {
+                // do not consume a byte that does not continue the sequence
+                if (!_buffer.hasRemaining() || (_buffer.get(_buffer.position()) & 0xC0) != 0x80)
+                    return REPLACEMENT;
+                cp = (cp << 6) | (_buffer.get() & 0x3F);
+            }
+            if (cp < min || cp > Character.MAX_CODE_POINT || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE))
+                return REPLACEMENT;
+            if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT)
+            {
+                _low = Character.lowSurrogate(cp);
+                return Character.highSurrogate(cp);
+            }
+            return (char)cp;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "byte offset " + _buffer.position();
+        }
+
+        public char[] scratchBuffer()
+        {
+            if (scratch == null)
+                scratch = new char[1024];
+            return scratch;
+        }
+    }
+
     /* ------------------------------------------------------------ */
     /**
      * JSON Output class for use by {@link Convertible}.